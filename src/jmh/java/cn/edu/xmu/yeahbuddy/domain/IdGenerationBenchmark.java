@@ -0,0 +1,65 @@
+package cn.edu.xmu.yeahbuddy.domain;
+
+import cn.edu.xmu.yeahbuddy.Application;
+import cn.edu.xmu.yeahbuddy.domain.repo.TeamRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并发插入时的主键生成性能对比
+ * <p>
+ * {@code allocationSize=1}相当于原先每行更新一次{@code hibernate_sequence},
+ * 其余为{@link PooledSequenceGenerator}按块分配. 每次插入一个团队, 各自一个事务.
+ * 默认使用test-default配置的内存H2数据库, MySQL可用{@code -p profile=test-mysql}.
+ * 运行: {@code ./gradlew jmh}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class IdGenerationBenchmark {
+
+    @Param({"1", "50"})
+    private int allocationSize;
+
+    @Param("test-default")
+    private String profile;
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private ConfigurableApplicationContext context;
+
+    private TeamRepository teamRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                          .profiles(profile)
+                          .properties("server.port=0",
+                                  "spring.jpa.show-sql=false",
+                                  "logging.level.root=WARN",
+                                  "spring.jpa.properties." + PooledSequenceGenerator.ALLOCATION_SIZE + "=" + allocationSize)
+                          .run();
+        teamRepository = context.getBean(TeamRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int insert() {
+        int i = counter.incrementAndGet();
+        Team team = new Team("bench" + i, "");
+        team.setDisplayName("bench" + i);
+        team.setProjectName("bench");
+        team.setPhone("");
+        team.setEmail("");
+        return teamRepository.save(team).getId();
+    }
+}
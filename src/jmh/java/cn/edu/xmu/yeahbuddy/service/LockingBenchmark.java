@@ -0,0 +1,113 @@
+package cn.edu.xmu.yeahbuddy.service;
+
+import cn.edu.xmu.yeahbuddy.Application;
+import cn.edu.xmu.yeahbuddy.domain.Report;
+import cn.edu.xmu.yeahbuddy.domain.Stage;
+import cn.edu.xmu.yeahbuddy.domain.Team;
+import cn.edu.xmu.yeahbuddy.domain.repo.TeamRepository;
+import cn.edu.xmu.yeahbuddy.model.ReportDto;
+import cn.edu.xmu.yeahbuddy.model.StageDto;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NonNls;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 并发修改报告时两种加锁模式的性能对比
+ * <p>
+ * 8个线程反复保存{@code rows}份报告中随机的一份, 模拟多人同时自动保存.
+ * {@code rows=1}时所有线程争用同一行. 结束时在日志中记录{@link LockingUpdateService#getStatistics()},
+ * 冲突重试后仍失败的保存在结果中计为完成但未写入.
+ * 默认使用test-default配置的内存H2数据库, MySQL可用{@code -p profile=test-mysql}.
+ * 运行: {@code ./gradlew jmh}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class LockingBenchmark {
+
+    @NonNls
+    private static Log log = LogFactory.getLog(LockingBenchmark.class);
+
+    @Param({"pessimistic", "optimistic"})
+    private String mode;
+
+    @Param({"1", "64"})
+    private int rows;
+
+    @Param("test-default")
+    private String profile;
+
+    private ConfigurableApplicationContext context;
+
+    private ReportService reportService;
+
+    private int[] reportIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                          .profiles(profile)
+                          .properties("server.port=0",
+                                  "spring.jpa.show-sql=false",
+                                  "logging.level.root=WARN",
+                                  "logging.level." + LockingBenchmark.class.getName() + "=INFO",
+                                  "spring.jpa.properties.javax.persistence.lock.timeout=10000",
+                                  "yeahbuddy.locking.mode=" + mode)
+                          .run();
+        reportService = context.getBean(ReportService.class);
+
+        List<Team> teams = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Team team = new Team("bench" + i, "");
+            team.setDisplayName("bench" + i);
+            team.setProjectName("bench");
+            team.setPhone("");
+            team.setEmail("");
+            teams.add(team);
+        }
+        List<Integer> teamIds = context.getBean(TeamRepository.class).saveAll(teams)
+                                       .stream().map(Team::getId).collect(Collectors.toList());
+        Stage stage = context.getBean(StageService.class)
+                             .createStage(1, new StageDto()
+                                                     .setTitle("bench")
+                                                     .setStart(Timestamp.from(Instant.now()))
+                                                     .setEnd(Timestamp.from(Instant.now().plusSeconds(3600))));
+        reportIds = reportService.createReports(teamIds, stage, "bench")
+                                 .stream().mapToInt(Report::getId).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        log.info("mode=" + mode + " rows=" + rows + " " + context.getBean(LockingUpdateService.class).getStatistics());
+        context.close();
+    }
+
+    @Benchmark
+    public boolean autosave() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int id = reportIds[random.nextInt(reportIds.length)];
+        ReportDto dto = new ReportDto()
+                                .setTitle("bench " + random.nextInt())
+                                .setContent(new ArrayList<>(Collections.singletonList(Long.toHexString(random.nextLong()))));
+        try {
+            reportService.updateReport(id, dto);
+            return true;
+        } catch (ConcurrencyFailureException e) {
+            return false;
+        }
+    }
+}
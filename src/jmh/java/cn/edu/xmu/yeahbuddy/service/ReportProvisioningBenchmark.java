@@ -0,0 +1,99 @@
+package cn.edu.xmu.yeahbuddy.service;
+
+import cn.edu.xmu.yeahbuddy.Application;
+import cn.edu.xmu.yeahbuddy.domain.Report;
+import cn.edu.xmu.yeahbuddy.domain.Stage;
+import cn.edu.xmu.yeahbuddy.domain.Team;
+import cn.edu.xmu.yeahbuddy.domain.repo.TeamRepository;
+import cn.edu.xmu.yeahbuddy.model.StageDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 新建阶段时批量创建报告的性能对比
+ * <p>
+ * {@code perTeam}为原先逐个团队调用{@link ReportService#createReport}的实现,
+ * {@code bulk}为{@link ReportService#createReports}的批量实现. 每次调用都新建一个阶段.
+ * 使用test-default配置的内存H2数据库, 运行: {@code ./gradlew jmh}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ReportProvisioningBenchmark {
+
+    @Param("1000")
+    private int teamCount;
+
+    private ConfigurableApplicationContext context;
+
+    private ReportService reportService;
+
+    private TeamService teamService;
+
+    private StageService stageService;
+
+    private List<Integer> teamIds;
+
+    private int nextStageId = 1;
+
+    private Stage stage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                          .profiles("test-default")
+                          .properties("server.port=0",
+                                  "spring.jpa.show-sql=false",
+                                  "logging.level.root=WARN")
+                          .run();
+        reportService = context.getBean(ReportService.class);
+        teamService = context.getBean(TeamService.class);
+        stageService = context.getBean(StageService.class);
+
+        List<Team> teams = new ArrayList<>(teamCount);
+        for (int i = 0; i < teamCount; i++) {
+            Team team = new Team("bench" + i, "");
+            team.setDisplayName("bench" + i);
+            team.setProjectName("bench");
+            team.setPhone("");
+            team.setEmail("");
+            teams.add(team);
+        }
+        teamIds = context.getBean(TeamRepository.class).saveAll(teams)
+                         .stream().map(Team::getId).collect(Collectors.toList());
+    }
+
+    @Setup(Level.Invocation)
+    public void createStage() {
+        stage = stageService.createStage(nextStageId++, new StageDto()
+                                                                .setTitle("bench")
+                                                                .setStart(Timestamp.from(Instant.now()))
+                                                                .setEnd(Timestamp.from(Instant.now().plusSeconds(3600))));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int perTeam() {
+        teamIds.stream().map(teamService::loadById).forEach(team -> reportService.createReport(team, stage, "bench"));
+        return teamIds.size();
+    }
+
+    @Benchmark
+    public List<Report> bulk() {
+        return reportService.createReports(teamIds, stage, "bench");
+    }
+}
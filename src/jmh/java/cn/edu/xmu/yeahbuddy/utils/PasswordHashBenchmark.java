@@ -0,0 +1,63 @@
+package cn.edu.xmu.yeahbuddy.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 密码哈希性能对比
+ * <p>
+ * {@code secretKeyFactory}为原先共享{@link SecretKeyFactory}的实现, {@code pbkdf2Engine}为{@link PasswordUtils}当前使用的实现.
+ * 运行: {@code ./gradlew jmh}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PasswordHashBenchmark {
+
+    private static final int ITERATIONS = 10000;
+    private static final int KEY_LENGTH = 256;
+
+    private SecretKeyFactory skf;
+
+    private byte[] salt;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException {
+        skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512");
+        salt = PasswordUtils.generateSalt();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] secretKeyFactory() throws InvalidKeySpecException {
+        PBEKeySpec spec = new PBEKeySpec("password".toCharArray(), salt, ITERATIONS, KEY_LENGTH);
+        try {
+            return skf.generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] pbkdf2Engine() {
+        return PasswordUtils.hash("password".toCharArray(), salt);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] secretKeyFactoryContended() throws InvalidKeySpecException {
+        return secretKeyFactory();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] pbkdf2EngineContended() {
+        return pbkdf2Engine();
+    }
+}
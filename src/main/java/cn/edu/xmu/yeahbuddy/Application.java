@@ -1,6 +1,7 @@
 package cn.edu.xmu.yeahbuddy;
 
 import cn.edu.xmu.yeahbuddy.domain.*;
+import cn.edu.xmu.yeahbuddy.domain.repo.NaturalIdJpaRepository;
 import cn.edu.xmu.yeahbuddy.model.*;
 import cn.edu.xmu.yeahbuddy.service.*;
 import cn.edu.xmu.yeahbuddy.web.MainController;
@@ -12,9 +13,12 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.sql.Timestamp;
@@ -26,8 +30,13 @@ import java.util.stream.Collectors;
 
 /**
  * Spring Boot 入口类
+ * <p>
+ * 仓库基类使用{@link NaturalIdJpaRepository}, 声明在此处以便{@code @DataJpaTest}也能使用.
+ * 数据库迁移由{@link cn.edu.xmu.yeahbuddy.config.MigrationConfig}按配置启用, 不使用自动配置.
  */
-@SpringBootApplication
+@SpringBootApplication(exclude = FlywayAutoConfiguration.class)
+@EnableScheduling
+@EnableJpaRepositories(repositoryBaseClass = NaturalIdJpaRepository.class)
 public class Application extends SpringBootServletInitializer {
 
     @NonNls
@@ -1,7 +1,8 @@
 package cn.edu.xmu.yeahbuddy.config;
 
-import cn.edu.xmu.yeahbuddy.domain.Token;
 import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import cn.edu.xmu.yeahbuddy.model.SessionPrincipal;
+import cn.edu.xmu.yeahbuddy.model.ValidatedToken;
 import cn.edu.xmu.yeahbuddy.service.TokenService;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -38,15 +39,15 @@ public class AuthTokenAuthenticationProvider implements AuthenticationProvider {
      * 尝试认证当前Token
      *
      * @param authentication 待认证的令牌
-     * @return 导师与登陆Token
+     * @return 导师会话用户与登陆Token快照
      * @throws AuthenticationException 认证失败
      */
     @Override
     public PreAuthenticatedAuthenticationToken authenticate(Authentication authentication) throws AuthenticationException {
         log.info("Trying to authenticate Token " + authentication.getCredentials());
-        final Pair<Tutor, Token> tutorTokenPair = tokenService.loadAndValidateToken(authentication.getCredentials().toString());
+        final Pair<Tutor, ValidatedToken> tutorTokenPair = tokenService.authenticateToken(authentication.getCredentials().toString());
         log.info("Loaded Token " + authentication.getCredentials() + " for " + tutorTokenPair.getFirst().toString());
-        return new PreAuthenticatedAuthenticationToken(tutorTokenPair.getFirst(), tutorTokenPair.getSecond());
+        return new PreAuthenticatedAuthenticationToken(SessionPrincipal.of(tutorTokenPair.getFirst()), tutorTokenPair.getSecond());
     }
 
     /**
@@ -1,5 +1,6 @@
 package cn.edu.xmu.yeahbuddy.config;
 
+import cn.edu.xmu.yeahbuddy.model.ValidatedToken;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jetbrains.annotations.Contract;
@@ -14,6 +15,7 @@ import org.springframework.security.web.authentication.AbstractAuthenticationPro
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
+import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -31,14 +33,18 @@ public class AuthTokenFilter extends AbstractAuthenticationProcessingFilter {
     @NonNls
     private static Log log = LogFactory.getLog(AuthTokenFilter.class);
 
+    private final TokenSessionRegistry tokenSessionRegistry;
+
     /**
      * @param defaultFilterProcessesUrl Token登录URL
      * @param defaultTargetUrl          默认目标跳转URL
      * @param targetUrlCallback         目标跳转URL回调
      * @param authenticationManager     认证管理器
+     * @param tokenSessionRegistry      Token登录会话登记
      */
-    AuthTokenFilter(String defaultFilterProcessesUrl, String defaultTargetUrl, BiFunction<Authentication, Pair<HttpServletRequest, HttpServletResponse>, String> targetUrlCallback, AuthenticationManager authenticationManager) {
+    AuthTokenFilter(String defaultFilterProcessesUrl, String defaultTargetUrl, BiFunction<Authentication, Pair<HttpServletRequest, HttpServletResponse>, String> targetUrlCallback, AuthenticationManager authenticationManager, TokenSessionRegistry tokenSessionRegistry) {
         super(defaultFilterProcessesUrl);
+        this.tokenSessionRegistry = tokenSessionRegistry;
         super.setRequiresAuthenticationRequestMatcher(new AntPathRequestMatcher(defaultFilterProcessesUrl));
         setAuthenticationManager(authenticationManager);
         setAuthenticationSuccessHandler(new SimpleUrlAuthenticationSuccessHandler(defaultTargetUrl) {
@@ -101,6 +107,17 @@ public class AuthTokenFilter extends AbstractAuthenticationProcessingFilter {
         throw new BadCredentialsException("auth_token");
     }
 
+    /**
+     * 登录成功后登记会话, Token失效时一并使会话失效
+     */
+    @Override
+    protected void successfulAuthentication(HttpServletRequest request, HttpServletResponse response, FilterChain chain, Authentication authResult) throws IOException, ServletException {
+        if (authResult.getCredentials() instanceof ValidatedToken) {
+            tokenSessionRegistry.register(((ValidatedToken) authResult.getCredentials()).getTokenValue(), request.getSession());
+        }
+        super.successfulAuthentication(request, response, chain, authResult);
+    }
+
     /**
      * Token值的封装
      */
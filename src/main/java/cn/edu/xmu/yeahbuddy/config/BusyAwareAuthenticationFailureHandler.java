@@ -0,0 +1,44 @@
+package cn.edu.xmu.yeahbuddy.config;
+
+import cn.edu.xmu.yeahbuddy.utils.PasswordHashBusyException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NonNls;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 登录失败处理
+ * <p>
+ * 密码哈希线程池已满时返回503, 其余失败跳转回登录页
+ */
+public class BusyAwareAuthenticationFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+    @NonNls
+    private static Log log = LogFactory.getLog(BusyAwareAuthenticationFailureHandler.class);
+
+    /**
+     * @param defaultFailureUrl 登录失败跳转URL
+     */
+    BusyAwareAuthenticationFailureHandler(String defaultFailureUrl) {
+        super(defaultFailureUrl);
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response, AuthenticationException exception) throws IOException, ServletException {
+        if (exception instanceof PasswordHashBusyException) {
+            log.info("Login rejected on " + request.getRequestURI() + ": password hashing busy");
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        super.onAuthenticationFailure(request, response, exception);
+    }
+}
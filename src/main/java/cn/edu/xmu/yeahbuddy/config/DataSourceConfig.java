@@ -0,0 +1,104 @@
+package cn.edu.xmu.yeahbuddy.config;
+
+import cn.edu.xmu.yeahbuddy.utils.RecentWriters;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NonNls;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据源配置
+ * <p>
+ * 配置了{@code yeahbuddy.datasource.replicas}(逗号分隔的从库URL, 用户名密码与主库相同)时启用读写分离,
+ * 见{@link ReadWriteRoutingDataSource}; 否则使用Spring Boot默认的单一数据源.
+ * 事务管理器总是{@link ReadWriteTransactionManager}, 由它记录最近写入过的用户.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @NonNls
+    private static Log log = LogFactory.getLog(DataSourceConfig.class);
+
+    /**
+     * 最近写入过的用户
+     *
+     * @param windowMillis   写入后读主库的时间(毫秒)
+     * @param purgeThreshold 清理阈值
+     * @return RecentWriters
+     */
+    @Bean
+    public RecentWriters recentWriters(@Value("${yeahbuddy.datasource.read-your-writes-millis:5000}") long windowMillis,
+                                       @Value("${yeahbuddy.datasource.read-your-writes-purge-threshold:10000}") int purgeThreshold) {
+        return new RecentWriters(windowMillis, purgeThreshold);
+    }
+
+    /**
+     * 事务管理器
+     * 代替Spring Boot默认的{@link org.springframework.orm.jpa.JpaTransactionManager}
+     *
+     * @param recentWriters Autowired
+     * @param customizers   {@code spring.transaction.*}配置
+     * @return ReadWriteTransactionManager
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager(RecentWriters recentWriters,
+                                                         ObjectProvider<TransactionManagerCustomizers> customizers) {
+        ReadWriteTransactionManager transactionManager = new ReadWriteTransactionManager(recentWriters);
+        TransactionManagerCustomizers customizer = customizers.getIfAvailable();
+        if (customizer != null) {
+            customizer.customize(transactionManager);
+        }
+        return transactionManager;
+    }
+
+    /**
+     * 读写分离的数据源
+     *
+     * @param properties    主库配置
+     * @param replicaUrls   从库URL
+     * @param recentWriters Autowired
+     * @return 包装了{@link ReadWriteRoutingDataSource}的{@link LazyConnectionDataSourceProxy}
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty("yeahbuddy.datasource.replicas")
+    public DataSource dataSource(DataSourceProperties properties,
+                                 @Value("${yeahbuddy.datasource.replicas}") String[] replicaUrls,
+                                 RecentWriters recentWriters) {
+        DataSource primary = properties.initializeDataSourceBuilder().build();
+        List<DataSource> replicas = new ArrayList<>(replicaUrls.length);
+        for (String url : replicaUrls) {
+            if (url.trim().isEmpty()) {
+                continue;
+            }
+            replicas.add(DataSourceBuilder.create(properties.getClassLoader())
+                                          .driverClassName(properties.determineDriverClassName())
+                                          .url(url.trim())
+                                          .username(properties.determineUsername())
+                                          .password(properties.determinePassword())
+                                          .build());
+        }
+        if (replicas.isEmpty()) {
+            return primary;
+        }
+
+        log.info("Routing read-only transactions to " + replicas.size() + " replicas");
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicas, recentWriters);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,81 @@
+package cn.edu.xmu.yeahbuddy.config;
+
+import cn.edu.xmu.yeahbuddy.service.LoginThrottleService;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.context.MessageSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.LocaleResolver;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 登录限流过滤器
+ * <p>
+ * 放在登录与Token认证过滤器之前, 超出限额的请求直接返回429, 不再计算密码哈希或查询Token.
+ */
+public class LoginThrottlingFilter extends OncePerRequestFilter {
+
+    private final LoginThrottleService loginThrottleService;
+
+    private final MessageSource messageSource;
+
+    private final LocaleResolver localeResolver;
+
+    private final RequestMatcher requestMatcher;
+
+    @NonNls
+    private final String[] usernameParameters;
+
+    /**
+     * @param loginThrottleService 登录限流服务
+     * @param messageSource        用于本地化错误信息
+     * @param localeResolver       用于本地化错误信息
+     * @param requestMatcher       需要限流的登录请求
+     * @param usernameParameters   用户名参数, 取第一个存在的参数
+     */
+    LoginThrottlingFilter(LoginThrottleService loginThrottleService, MessageSource messageSource, LocaleResolver localeResolver,
+                          RequestMatcher requestMatcher, @NonNls String... usernameParameters) {
+        this.loginThrottleService = loginThrottleService;
+        this.messageSource = messageSource;
+        this.localeResolver = localeResolver;
+        this.requestMatcher = requestMatcher;
+        this.usernameParameters = usernameParameters;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
+        return !requestMatcher.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String address = loginThrottleService.resolveAddress(request.getRemoteAddr(), request.getHeader("X-Forwarded-For"));
+        long retryAfter = loginThrottleService.tryAcquire(address, getUsername(request));
+        if (retryAfter > 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(),
+                    messageSource.getMessage("login.throttled", new Object[]{retryAfter}, localeResolver.resolveLocale(request)));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    @Nullable
+    private String getUsername(HttpServletRequest request) {
+        for (String parameter : usernameParameters) {
+            String value = request.getParameter(parameter);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
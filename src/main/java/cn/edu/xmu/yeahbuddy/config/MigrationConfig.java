@@ -0,0 +1,69 @@
+package cn.edu.xmu.yeahbuddy.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.flywaydb.core.Flyway;
+import org.jetbrains.annotations.NonNls;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 数据库结构迁移
+ * <p>
+ * 配置{@code yeahbuddy.migration.enabled=true}时在JPA启动前执行{@code db/migration}下的版本化迁移,
+ * 此时应将{@code hibernate.hbm2ddl.auto}设为{@code validate}, 启动时不再比对并修改整个数据库结构.
+ * <p>
+ * 已由{@code hbm2ddl.auto=update}建好的数据库没有迁移记录, 首次迁移时以V1为基线, 只执行之后的迁移.
+ * 因此V1只含引入迁移之前的结构, 之后的所有结构修改都写在新的迁移中.
+ * 未启用时(开发与测试)仍由Hibernate建表, 索引见各实体的{@code @Table(indexes)}.
+ */
+@Configuration
+@ConditionalOnProperty("yeahbuddy.migration.enabled")
+public class MigrationConfig {
+
+    @NonNls
+    private static Log log = LogFactory.getLog(MigrationConfig.class);
+
+    /**
+     * 使EntityManagerFactory在迁移完成后再创建
+     *
+     * @return FlywayJpaDependency
+     */
+    @Bean
+    public static FlywayJpaDependency flywayJpaDependency() {
+        return new FlywayJpaDependency();
+    }
+
+    /**
+     * 迁移执行器, 创建时执行迁移
+     *
+     * @param dataSource        数据源, 读写分离时迁移语句不在只读事务中, 总是发往主库
+     * @param locations         迁移脚本位置
+     * @param baselineOnMigrate 没有迁移记录的非空数据库是否以V1为基线
+     * @return Flyway
+     */
+    @Bean(initMethod = "migrate")
+    public Flyway flyway(DataSource dataSource,
+                         @Value("${yeahbuddy.migration.locations:classpath:db/migration}") String[] locations,
+                         @Value("${yeahbuddy.migration.baseline-on-migrate:true}") boolean baselineOnMigrate) {
+        log.info("Migrating schema from " + String.join(", ", locations));
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(dataSource);
+        flyway.setLocations(locations);
+        flyway.setBaselineOnMigrate(baselineOnMigrate);
+        flyway.setBaselineVersionAsString("1");
+        return flyway;
+    }
+
+    static class FlywayJpaDependency extends EntityManagerFactoryDependsOnPostProcessor {
+
+        FlywayJpaDependency() {
+            super("flyway");
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package cn.edu.xmu.yeahbuddy.config;
+
+import cn.edu.xmu.yeahbuddy.utils.RecentWriters;
+import org.jetbrains.annotations.NonNls;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 读写分离的数据源
+ * <p>
+ * 只读事务轮流使用各从库, 读写事务使用主库. Spring Data的Repository方法自带只读事务,
+ * 在事务外直接调用时同样读从库; 没有任何事务的访问使用主库.
+ * 当前用户刚写入过数据时只读事务也使用主库, 见{@link RecentWriters};
+ * 结果要放入缓存的读取(如登录时读取的用户与Token)应在{@link #usePrimary(Supplier)}中执行.
+ * <p>
+ * 按事务是否只读选择, 因此须包装在{@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}中,
+ * 推迟到事务开始后第一条语句执行时才取连接.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    @NonNls
+    private static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> primaryRequired = ThreadLocal.withInitial(() -> false);
+
+    private final int replicaCount;
+
+    private final RecentWriters recentWriters;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile Runnable replicaListener = () -> {
+    };
+
+    /**
+     * @param primary       主库
+     * @param replicas      从库, 不能为空
+     * @param recentWriters 最近写入过的用户
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, RecentWriters recentWriters) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("No replica");
+        }
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        this.replicaCount = replicas.size();
+        this.recentWriters = recentWriters;
+    }
+
+    /**
+     * 在主库上读取
+     * 只对其中取得的连接生效: 所在事务此前已经取得从库连接时仍读从库
+     *
+     * @param action 读取
+     * @param <T>    返回类型
+     * @return action的返回值
+     */
+    public static <T> T usePrimary(Supplier<T> action) {
+        boolean previous = primaryRequired.get();
+        primaryRequired.set(true);
+        try {
+            return action.get();
+        } finally {
+            primaryRequired.set(previous);
+        }
+    }
+
+    /**
+     * 只读事务取得从库连接时执行, 在取得连接的线程中调用
+     *
+     * @param replicaListener 回调
+     */
+    public void setReplicaListener(Runnable replicaListener) {
+        this.replicaListener = replicaListener;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        if (primaryRequired.get() || recentWriters.isCurrentRecent()) {
+            return PRIMARY;
+        }
+        replicaListener.run();
+        return Math.floorMod(next.getAndIncrement(), replicaCount);
+    }
+}
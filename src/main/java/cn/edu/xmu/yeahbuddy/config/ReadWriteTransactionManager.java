@@ -0,0 +1,60 @@
+package cn.edu.xmu.yeahbuddy.config;
+
+import cn.edu.xmu.yeahbuddy.utils.RecentWriters;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+
+/**
+ * 配合读写分离的事务管理器
+ * <p>
+ * 读写事务提交后记录当前用户, 其后一段时间内的只读事务读主库, 见{@link RecentWriters}.
+ * 启用{@link ReadWriteRoutingDataSource}时, 读从库的事务只从二级缓存读取, 不放入从库读到的实体,
+ * 避免复制延迟期间的旧数据在缓存中保留到过期.
+ */
+public class ReadWriteTransactionManager extends JpaTransactionManager {
+
+    private static final long serialVersionUID = 5209382365637018409L;
+
+    private final transient RecentWriters recentWriters;
+
+    /**
+     * @param recentWriters 最近写入过的用户
+     */
+    public ReadWriteTransactionManager(RecentWriters recentWriters) {
+        this.recentWriters = recentWriters;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        DataSource dataSource = getDataSource();
+        while (dataSource instanceof DelegatingDataSource) {
+            dataSource = ((DelegatingDataSource) dataSource).getTargetDataSource();
+        }
+        if (dataSource instanceof ReadWriteRoutingDataSource) {
+            ((ReadWriteRoutingDataSource) dataSource).setReplicaListener(this::disableCachePuts);
+        }
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        super.doCommit(status);
+        if (!status.isReadOnly()) {
+            recentWriters.recordCurrent();
+        }
+    }
+
+    private void disableCachePuts() {
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(getEntityManagerFactory());
+        if (holder != null) {
+            holder.getEntityManager().unwrap(Session.class).setCacheMode(CacheMode.GET);
+        }
+    }
+}
@@ -1,23 +1,34 @@
 package cn.edu.xmu.yeahbuddy.config;
 
-import cn.edu.xmu.yeahbuddy.domain.Token;
+import cn.edu.xmu.yeahbuddy.model.ValidatedToken;
 import cn.edu.xmu.yeahbuddy.service.AdministratorService;
+import cn.edu.xmu.yeahbuddy.service.LoginThrottleService;
 import cn.edu.xmu.yeahbuddy.service.TeamService;
+import cn.edu.xmu.yeahbuddy.service.TokenService;
 import cn.edu.xmu.yeahbuddy.service.TutorService;
 import cn.edu.xmu.yeahbuddy.service.YbPasswordEncodeService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationProvider;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 /**
@@ -37,26 +48,49 @@ public class SecurityConfig {
 
         private final AdministratorService administratorService;
 
+        private final YbPasswordEncodeService ybPasswordEncodeService;
+
         private Environment environment;
 
+        private final LoginThrottleService loginThrottleService;
+
+        private final MessageSource messageSource;
+
+        private final LocaleResolver localeResolver;
+
         /**
-         * @param administratorService Autowired
-         * @param environment          Autowired
+         * @param administratorService    Autowired
+         * @param ybPasswordEncodeService Autowired
+         * @param environment             Autowired
+         * @param loginThrottleService    Autowired
+         * @param messageSource           Autowired
+         * @param localeResolver          Autowired
          */
         @Autowired
-        public RootAndAdministratorSecurityConfig(AdministratorService administratorService, Environment environment) {
+        public RootAndAdministratorSecurityConfig(AdministratorService administratorService, YbPasswordEncodeService ybPasswordEncodeService, Environment environment,
+                                                  LoginThrottleService loginThrottleService, MessageSource messageSource, LocaleResolver localeResolver) {
             this.administratorService = administratorService;
+            this.ybPasswordEncodeService = ybPasswordEncodeService;
             this.environment = environment;
+            this.loginThrottleService = loginThrottleService;
+            this.messageSource = messageSource;
+            this.localeResolver = localeResolver;
         }
 
         @Override
         public void configure(AuthenticationManagerBuilder auth) throws Exception {
-            auth.userDetailsService(administratorService).passwordEncoder(new YbPasswordEncodeService());
+            auth.authenticationProvider(new UpgradingDaoAuthenticationProvider(administratorService, ybPasswordEncodeService));
         }
 
         @Override
         // @formatter:off
         protected void configure(HttpSecurity http) throws Exception {
+            http
+                    .addFilterBefore(
+                        new LoginThrottlingFilter(loginThrottleService, messageSource, localeResolver,
+                                new AntPathRequestMatcher("/login", "POST"), "username"),
+                        UsernamePasswordAuthenticationFilter.class);
+
             http
                     .authorizeRequests()
                         .antMatchers("/webjars/**", "/favicon.ico", "/static/image/**", "/static/css/**", "/204", "/login/**", "/team/login/**", "/tutor/login/**")
@@ -84,6 +118,7 @@ public class SecurityConfig {
                     .formLogin()
                         .loginPage("/login")
                             .permitAll()
+                        .failureHandler(new BusyAwareAuthenticationFailureHandler("/login?error"))
                         .defaultSuccessUrl("/admin", true).and()
                     // logout
                     .logout()
@@ -111,17 +146,40 @@ public class SecurityConfig {
 
         private final TeamService teamService;
 
+        private final YbPasswordEncodeService ybPasswordEncodeService;
+
+        private final LoginThrottleService loginThrottleService;
+
+        private final MessageSource messageSource;
+
+        private final LocaleResolver localeResolver;
+
         /**
-         * @param teamService Autowired
+         * @param teamService             Autowired
+         * @param ybPasswordEncodeService Autowired
+         * @param loginThrottleService    Autowired
+         * @param messageSource           Autowired
+         * @param localeResolver          Autowired
          */
         @Autowired
-        public TeamSecurityConfig(TeamService teamService) {
+        public TeamSecurityConfig(TeamService teamService, YbPasswordEncodeService ybPasswordEncodeService,
+                                  LoginThrottleService loginThrottleService, MessageSource messageSource, LocaleResolver localeResolver) {
             this.teamService = teamService;
+            this.ybPasswordEncodeService = ybPasswordEncodeService;
+            this.loginThrottleService = loginThrottleService;
+            this.messageSource = messageSource;
+            this.localeResolver = localeResolver;
         }
 
         @Override
         // @formatter:off
         protected void configure(HttpSecurity http) throws Exception {
+            http
+                    .addFilterBefore(
+                        new LoginThrottlingFilter(loginThrottleService, messageSource, localeResolver,
+                                new AntPathRequestMatcher("/team/login", "POST"), "username"),
+                        UsernamePasswordAuthenticationFilter.class);
+
             http
                     .antMatcher("/team/**")
                         .authorizeRequests()
@@ -131,6 +189,7 @@ public class SecurityConfig {
                         .formLogin()
                             .loginPage("/team/login")
                                 .permitAll()
+                            .failureHandler(new BusyAwareAuthenticationFailureHandler("/team/login?error"))
                             .defaultSuccessUrl("/team", true).and()
                     // logout
                         .logout()
@@ -150,7 +209,53 @@ public class SecurityConfig {
 
         @Override
         public void configure(AuthenticationManagerBuilder auth) throws Exception {
-            auth.userDetailsService(teamService).passwordEncoder(new YbPasswordEncodeService());
+            auth.authenticationProvider(new UpgradingDaoAuthenticationProvider(teamService, ybPasswordEncodeService));
+        }
+    }
+
+    /**
+     * 导师签名访问链接的安全配置
+     * 只处理携带访问Token的导师请求, 每个请求单独验证, 不创建会话
+     * 未开启{@code yeahbuddy.access-token.enabled}时不注册, 携带访问Token的请求按普通导师请求处理
+     */
+    @Order(0)
+    @Configuration
+    @ConditionalOnProperty("yeahbuddy.access-token.enabled")
+    public static class TutorAccessTokenSecurityConfig extends WebSecurityConfigurerAdapter {
+
+        private final TokenService tokenService;
+
+        /**
+         * @param tokenService Autowired
+         */
+        @Autowired
+        public TutorAccessTokenSecurityConfig(TokenService tokenService) {
+            this.tokenService = tokenService;
+        }
+
+        @Override
+        // @formatter:off
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                    .requestMatcher(new AndRequestMatcher(new AntPathRequestMatcher("/tutor/**"), SignedAccessTokenFilter::hasAccessToken))
+                    .addFilterBefore(new SignedAccessTokenFilter(tokenService), UsernamePasswordAuthenticationFilter.class)
+                    .authorizeRequests()
+                        .anyRequest()
+                            .authenticated().and()
+                    .exceptionHandling()
+                        .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)).and()
+                    .sessionManagement()
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
+                    .requestCache()
+                        .disable()
+                    .csrf()
+                        .disable();
+        }
+        // @formatter:on
+
+        @Override
+        public void configure(AuthenticationManagerBuilder auth) throws Exception {
+            // 访问Token在过滤器中验证, 不经过AuthenticationManager
         }
     }
 
@@ -165,26 +270,56 @@ public class SecurityConfig {
 
         private final AuthTokenAuthenticationProvider authTokenAuthenticationProvider;
 
+        private final YbPasswordEncodeService ybPasswordEncodeService;
+
+        private final TokenSessionRegistry tokenSessionRegistry;
+
+        private final LoginThrottleService loginThrottleService;
+
+        private final MessageSource messageSource;
+
+        private final LocaleResolver localeResolver;
+
         /**
          * @param tutorService                    Autowired
          * @param authTokenAuthenticationProvider Autowired
+         * @param ybPasswordEncodeService         Autowired
+         * @param tokenSessionRegistry            Autowired
+         * @param loginThrottleService            Autowired
+         * @param messageSource                   Autowired
+         * @param localeResolver                  Autowired
          */
         @Autowired
-        public TutorSecurityConfig(TutorService tutorService, AuthTokenAuthenticationProvider authTokenAuthenticationProvider) {
+        public TutorSecurityConfig(TutorService tutorService, AuthTokenAuthenticationProvider authTokenAuthenticationProvider, YbPasswordEncodeService ybPasswordEncodeService, TokenSessionRegistry tokenSessionRegistry,
+                                   LoginThrottleService loginThrottleService, MessageSource messageSource, LocaleResolver localeResolver) {
             this.tutorService = tutorService;
             this.authTokenAuthenticationProvider = authTokenAuthenticationProvider;
+            this.ybPasswordEncodeService = ybPasswordEncodeService;
+            this.tokenSessionRegistry = tokenSessionRegistry;
+            this.loginThrottleService = loginThrottleService;
+            this.messageSource = messageSource;
+            this.localeResolver = localeResolver;
         }
 
         @Override
         // @formatter:off
         protected void configure(HttpSecurity http) throws Exception {
+            // Token登录以Token值作为限流的用户名
+            http
+                    .addFilterBefore(
+                        new LoginThrottlingFilter(loginThrottleService, messageSource, localeResolver,
+                                new OrRequestMatcher(new AntPathRequestMatcher("/tutor/login", "POST"), new AntPathRequestMatcher("/tutor/token")),
+                                "username", "auth_token"),
+                        UsernamePasswordAuthenticationFilter.class);
+
             http
                     .addFilterBefore(
                         new AuthTokenFilter(
                                 "/tutor/token",
                                 "/tutor",
-                                (authentication, pair) -> String.format("/tutor/%d/review", ((Token) authentication.getCredentials()).getTutorId()),
-                                authenticationManager()),
+                                (authentication, pair) -> String.format("/tutor/%d/review", ((ValidatedToken) authentication.getCredentials()).getTutorId()),
+                                authenticationManager(),
+                                tokenSessionRegistry),
                         UsernamePasswordAuthenticationFilter.class);
 
             http
@@ -196,6 +331,7 @@ public class SecurityConfig {
                     .formLogin()
                     .loginPage("/tutor/login")
                     .permitAll()
+                    .failureHandler(new BusyAwareAuthenticationFailureHandler("/tutor/login?error"))
                     .defaultSuccessUrl("/tutor", true).and()
                     // logout
                     .logout()
@@ -215,7 +351,7 @@ public class SecurityConfig {
 
         @Override
         public void configure(AuthenticationManagerBuilder auth) throws Exception {
-            auth.authenticationProvider(preAuthenticatedAuthenticationProvider()).authenticationProvider(authTokenAuthenticationProvider).userDetailsService(tutorService).passwordEncoder(new YbPasswordEncodeService());
+            auth.authenticationProvider(preAuthenticatedAuthenticationProvider()).authenticationProvider(authTokenAuthenticationProvider).authenticationProvider(new UpgradingDaoAuthenticationProvider(tutorService, ybPasswordEncodeService));
         }
 
         /**
@@ -0,0 +1,86 @@
+package cn.edu.xmu.yeahbuddy.config;
+
+import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import cn.edu.xmu.yeahbuddy.model.SessionPrincipal;
+import cn.edu.xmu.yeahbuddy.model.ValidatedToken;
+import cn.edu.xmu.yeahbuddy.service.TokenService;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.data.util.Pair;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 签名访问Token过滤器
+ * <p>
+ * 从{@code Authorization: Bearer}请求头或{@code access_token}参数读取访问Token,
+ * 验证通过后只为当前请求设置认证, 不创建会话, 也不查询Token表.
+ */
+public class SignedAccessTokenFilter extends OncePerRequestFilter {
+
+    @NonNls
+    private static Log log = LogFactory.getLog(SignedAccessTokenFilter.class);
+
+    @NonNls
+    private static final String BEARER = "Bearer ";
+
+    @NonNls
+    static final String PARAMETER = "access_token";
+
+    private final TokenService tokenService;
+
+    /**
+     * @param tokenService 导师登录Token服务
+     */
+    SignedAccessTokenFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    /**
+     * 请求是否携带访问Token
+     *
+     * @param request http请求
+     * @return 是否携带访问Token
+     */
+    static boolean hasAccessToken(HttpServletRequest request) {
+        return extractAccessToken(request) != null;
+    }
+
+    @Nullable
+    private static String extractAccessToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER)) {
+            return header.substring(BEARER.length()).trim();
+        }
+        return request.getParameter(PARAMETER);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String accessToken = extractAccessToken(request);
+        if (accessToken != null) {
+            try {
+                Pair<Tutor, ValidatedToken> pair = tokenService.authenticateAccessToken(accessToken);
+                SessionPrincipal tutor = SessionPrincipal.of(pair.getFirst());
+                SecurityContextHolder.getContext().setAuthentication(new PreAuthenticatedAuthenticationToken(tutor, pair.getSecond(), tutor.getAuthorities()));
+            } catch (AuthenticationException e) {
+                log.info("Access token rejected on " + request.getRequestURI() + ": " + e.getMessage());
+                SecurityContextHolder.clearContext();
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,92 @@
+package cn.edu.xmu.yeahbuddy.config;
+
+import cn.edu.xmu.yeahbuddy.service.TokenExpiredEvent;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NonNls;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token登录会话登记
+ * <p>
+ * 记录通过Token登录创建的会话, Token到期或被吊销时使这些会话失效,
+ * 避免导师在Token失效后仍能凭会话继续访问.
+ */
+@Component
+public class TokenSessionRegistry implements HttpSessionListener {
+
+    @NonNls
+    private static Log log = LogFactory.getLog(TokenSessionRegistry.class);
+
+    @NonNls
+    private static final String ATTRIBUTE = TokenSessionRegistry.class.getName() + ".TOKEN";
+
+    private final ConcurrentHashMap<String, Set<HttpSession>> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 登记Token登录的会话
+     *
+     * @param tokenValue Token值
+     * @param session    会话
+     */
+    void register(String tokenValue, HttpSession session) {
+        session.setAttribute(ATTRIBUTE, tokenValue);
+        sessions.computeIfAbsent(tokenValue, k -> ConcurrentHashMap.newKeySet()).add(session);
+    }
+
+    @Override
+    public void sessionCreated(HttpSessionEvent se) {
+    }
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+        HttpSession session = se.getSession();
+        Object tokenValue = session.getAttribute(ATTRIBUTE);
+        if (tokenValue != null) {
+            sessions.computeIfPresent(tokenValue.toString(), (k, set) -> {
+                set.remove(session);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    /**
+     * Token到期或被吊销后使对应会话失效
+     * 在事务中发布的事件在提交后处理
+     *
+     * @param event Token到期事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTokenExpired(TokenExpiredEvent event) {
+        for (String tokenValue : event.getTokenValues()) {
+            Set<HttpSession> set = sessions.remove(tokenValue);
+            if (set == null) {
+                continue;
+            }
+            for (HttpSession session : set) {
+                try {
+                    session.invalidate();
+                } catch (IllegalStateException e) {
+                    // 会话已失效
+                }
+            }
+            log.info("Invalidated " + set.size() + " session(s) of Token " + tokenValue);
+        }
+    }
+
+    /**
+     * 已登记的Token数
+     *
+     * @return Token数
+     */
+    public int size() {
+        return sessions.size();
+    }
+}
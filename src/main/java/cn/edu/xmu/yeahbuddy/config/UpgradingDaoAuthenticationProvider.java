@@ -0,0 +1,52 @@
+package cn.edu.xmu.yeahbuddy.config;
+
+import cn.edu.xmu.yeahbuddy.model.SessionPrincipal;
+import cn.edu.xmu.yeahbuddy.service.UpgradableUserDetailsService;
+import cn.edu.xmu.yeahbuddy.service.YbPasswordEncodeService;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NonNls;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * 用户名密码认证提供者
+ * <p>
+ * 认证成功后若密文为旧格式或迭代次数低于当前设置, 以本次提交的明文重新编码.
+ * 升级失败不影响本次登录.
+ * <p>
+ * 认证结果中的用户为{@link SessionPrincipal}而非实体, 会话中不保存密码与联系方式.
+ */
+public class UpgradingDaoAuthenticationProvider extends DaoAuthenticationProvider {
+
+    @NonNls
+    private static Log log = LogFactory.getLog(UpgradingDaoAuthenticationProvider.class);
+
+    private final UpgradableUserDetailsService userDetailsService;
+
+    private final YbPasswordEncodeService ybPasswordEncodeService;
+
+    /**
+     * @param userDetailsService      用户服务
+     * @param ybPasswordEncodeService 密码编码服务
+     */
+    UpgradingDaoAuthenticationProvider(UpgradableUserDetailsService userDetailsService, YbPasswordEncodeService ybPasswordEncodeService) {
+        this.userDetailsService = userDetailsService;
+        this.ybPasswordEncodeService = ybPasswordEncodeService;
+        setUserDetailsService(userDetailsService);
+        setPasswordEncoder(ybPasswordEncodeService);
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication, UserDetails user) {
+        if (authentication.getCredentials() != null && ybPasswordEncodeService.needsUpgrade(user.getPassword())) {
+            try {
+                userDetailsService.upgradePassword(user, authentication.getCredentials().toString());
+            } catch (RuntimeException e) {
+                log.warn("Failed to upgrade password hash for " + user.getUsername(), e);
+            }
+        }
+        return super.createSuccessAuthentication(SessionPrincipal.of(user), authentication, user);
+    }
+}
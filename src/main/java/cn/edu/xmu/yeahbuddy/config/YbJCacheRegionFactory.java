@@ -0,0 +1,56 @@
+package cn.edu.xmu.yeahbuddy.config;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.jcache.JCacheRegionFactory;
+import org.jetbrains.annotations.NonNls;
+import org.springframework.beans.BeanUtils;
+
+import javax.cache.CacheManager;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Properties;
+
+/**
+ * Hibernate二级缓存
+ * <p>
+ * 在{@link JCacheRegionFactory}的基础上:
+ * <ul>
+ * <li>{@code hibernate.javax.cache.uri}可以是{@code classpath:}开头的地址, 配置文件随应用一起打包.
+ * Hibernate 5.2将地址原样交给缓存实现, 而Ehcache只能读取可直接打开的地址.</li>
+ * <li>每个SessionFactory使用单独的CacheManager. JCache按配置地址共用CacheManager,
+ * 同一JVM中有多个应用上下文(如测试)时会读到彼此的条目, 且关闭其中一个会关闭所有上下文的缓存.</li>
+ * </ul>
+ */
+public class YbJCacheRegionFactory extends JCacheRegionFactory {
+
+    private static final long serialVersionUID = -2871440925342368176L;
+
+    @NonNls
+    private static final String CLASSPATH_PREFIX = "classpath:";
+
+    @Override
+    protected CacheManager getCacheManager(Properties properties) {
+        ClassLoader classLoader = getClass().getClassLoader();
+        CachingProvider cachingProvider = BeanUtils.instantiateClass(getCachingProvider(properties).getClass());
+        String uri = getProp(properties, CONFIG_URI);
+        if (uri == null) {
+            return cachingProvider.getCacheManager(cachingProvider.getDefaultURI(), classLoader);
+        }
+
+        try {
+            if (!uri.startsWith(CLASSPATH_PREFIX)) {
+                return cachingProvider.getCacheManager(new URI(uri), classLoader);
+            }
+            String path = uri.substring(CLASSPATH_PREFIX.length());
+            URL resource = classLoader.getResource(path.startsWith("/") ? path.substring(1) : path);
+            if (resource == null) {
+                throw new CacheException("Cache configuration not found: " + uri);
+            }
+            return cachingProvider.getCacheManager(resource.toURI(), classLoader);
+        } catch (URISyntaxException e) {
+            throw new CacheException("Invalid cache configuration location: " + uri, e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package cn.edu.xmu.yeahbuddy.domain;
+
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.jetbrains.annotations.Contract;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.sql.Timestamp;
+
+/**
+ * 按ID吊销的签名访问Token, 保留到访问Token过期为止
+ */
+@Table(indexes = @Index(name = "idx_access_token_revocation_expires_at", columnList = "AccessTokenRevocationExpiresAt"))
+@Entity
+public class AccessTokenRevocation {
+
+    @Id
+    @Column(name = "AccessTokenRevocationId", updatable = false, nullable = false)
+    private long id;
+
+    @Column(name = "AccessTokenRevocationExpiresAt", nullable = false)
+    private Timestamp expiresAt;
+
+    public AccessTokenRevocation() {
+    }
+
+    public AccessTokenRevocation(long id, Timestamp expiresAt) {
+        this.id = id;
+        this.expiresAt = expiresAt;
+    }
+
+    @Contract(pure = true)
+    public long getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public Timestamp getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Timestamp expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    @Contract(pure = true)
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37).append(id).toHashCode();
+    }
+
+    @Contract(value = "null -> false", pure = true)
+    @Override
+    public boolean equals(Object rhs) {
+        return rhs instanceof AccessTokenRevocation && id == ((AccessTokenRevocation) rhs).getId();
+    }
+}
@@ -2,7 +2,11 @@ package cn.edu.xmu.yeahbuddy.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -15,15 +19,23 @@ import java.util.Collection;
 import java.util.HashSet;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "yeahbuddy.administrator")
+@NaturalIdCache(region = "yeahbuddy.administrator.username")
 public final class Administrator implements UserDetails, Authentication {
 
     private static final long serialVersionUID = 6445115560332842675L;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
+    @GenericGenerator(name = PooledSequenceGenerator.NAME, strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "AdministratorId", unique = true, updatable = false, nullable = false)
     private int id = Integer.MIN_VALUE;
 
+    @Version
+    @Column(name = "AdministratorVersion", nullable = false)
+    private Integer version;
+
     @Column(name = "AdministratorPassword", nullable = false)
     @JsonIgnore
     private String password;
@@ -37,6 +49,7 @@ public final class Administrator implements UserDetails, Authentication {
     private String displayName;
 
     @ElementCollection(targetClass = AdministratorPermission.class, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "yeahbuddy.administrator.authorities")
     @JoinTable(name = "AdministratorPermissions", joinColumns = @JoinColumn(name = "AdministratorId"))
     @Column(name = "AdministratorPermission", nullable = false)
     @Enumerated(EnumType.STRING)
@@ -63,6 +76,11 @@ public final class Administrator implements UserDetails, Authentication {
         return id;
     }
 
+    @Contract(pure = true)
+    public Integer getVersion() {
+        return version;
+    }
+
     @Contract(pure = true)
     public String getDisplayName() {
         return displayName;
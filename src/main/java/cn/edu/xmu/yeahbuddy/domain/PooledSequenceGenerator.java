@@ -0,0 +1,57 @@
+package cn.edu.xmu.yeahbuddy.domain;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+import org.jetbrains.annotations.NonNls;
+
+import java.util.Properties;
+
+/**
+ * 按块分配的主键生成器
+ * <p>
+ * 仍使用原来的{@code hibernate_sequence}, 但每次从序列(MySQL上为同名的表)取一整块ID,
+ * 块内的ID在内存中分配(pooled-lo), 插入{@code allocation_size}行才访问一次序列.
+ * 原有数据不需要迁移: 序列的当前值总是大于已分配的ID.
+ * <p>
+ * 块大小由{@code spring.jpa.properties.yeahbuddy.id.allocation_size}配置, 为1时退化为每行取一次.
+ * H2等原生序列的步长在建表时确定, 修改块大小后需要重建序列.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    /**
+     * 生成器名
+     */
+    @NonNls
+    public static final String NAME = "pooled";
+
+    /**
+     * 供{@code @GenericGenerator(strategy)}使用的类名
+     */
+    @NonNls
+    public static final String STRATEGY = "cn.edu.xmu.yeahbuddy.domain.PooledSequenceGenerator";
+
+    /**
+     * 块大小配置项
+     */
+    @NonNls
+    public static final String ALLOCATION_SIZE = "yeahbuddy.id.allocation_size";
+
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        int allocationSize = ConfigurationHelper.getInt(ALLOCATION_SIZE,
+                serviceRegistry.getService(ConfigurationService.class).getSettings(), DEFAULT_ALLOCATION_SIZE);
+        if (allocationSize < 1) {
+            throw new MappingException(ALLOCATION_SIZE + " must be positive: " + allocationSize);
+        }
+        params.setProperty(SEQUENCE_PARAM, DEF_SEQUENCE_NAME);
+        params.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        params.setProperty(OPT_PARAM, allocationSize > 1 ? "pooled-lo" : "none");
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -1,32 +1,59 @@
 package cn.edu.xmu.yeahbuddy.domain;
 
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.NaturalId;
 import org.jetbrains.annotations.Contract;
 
 import javax.persistence.*;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 @Table(
         uniqueConstraints =
-        @UniqueConstraint(columnNames = {"ReportTeamId", "ReportStageId"})
+        @UniqueConstraint(columnNames = {"ReportTeamId", "ReportStageId"}),
+        indexes =
+        @Index(name = "idx_report_stage", columnList = "ReportStageId")
 )
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = Report.LIST, attributeNodes = {
+                @NamedAttributeNode("team"),
+                @NamedAttributeNode("stage")}),
+        @NamedEntityGraph(name = Report.DETAIL, attributeNodes = {
+                @NamedAttributeNode("team"),
+                @NamedAttributeNode("stage"),
+                @NamedAttributeNode(value = "body", subgraph = "body")
+        }, subgraphs = @NamedSubgraph(name = "body", attributeNodes = @NamedAttributeNode("content")))
+})
 @Entity
 public class Report {
 
+    /**
+     * 列表: 团队与阶段, 不含正文
+     */
+    public static final String LIST = "Report.list";
+
+    /**
+     * 详情: 团队, 阶段与正文
+     */
+    public static final String DETAIL = "Report.detail";
+
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
+    @GenericGenerator(name = PooledSequenceGenerator.NAME, strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "ReportId", unique = true, updatable = false, nullable = false)
     private int id = Integer.MIN_VALUE;
 
+    @Version
+    @Column(name = "ReportVersion", nullable = false)
+    private Integer version;
+
     @NaturalId
-    @ManyToOne
+    @ManyToOne(optional = false)
     @JoinColumn(name = "ReportTeamId", updatable = false, nullable = false)
     private Team team;
 
     @NaturalId
-    @ManyToOne
+    @ManyToOne(optional = false)
     @JoinColumn(name = "ReportStageId", updatable = false, nullable = false)
     private Stage stage;
 
@@ -36,11 +63,11 @@ public class Report {
     @Column(name = "ReportTitle", nullable = false)
     private String title;
 
-    @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "ReportContent")
-    private List<String> content = new ArrayList<>();
+    @OneToOne(fetch = FetchType.LAZY, optional = false, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "ReportBodyId", updatable = false, nullable = false, unique = true)
+    private ReportBody body;
 
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     @CollectionTable(name = "ReportFiles")
     private Set<String> files;
 
@@ -50,9 +77,7 @@ public class Report {
     public Report(Team team, Stage stage) {
         this.team = team;
         this.stage = stage;
-        this.content.add("");
-        this.content.add("");
-        this.content.add("");
+        this.body = new ReportBody(3);
     }
 
     @Contract(pure = true)
@@ -60,6 +85,11 @@ public class Report {
         return id;
     }
 
+    @Contract(pure = true)
+    public Integer getVersion() {
+        return version;
+    }
+
     @Contract(pure = true)
     public int getTeamId() {
         return getTeam().getId();
@@ -90,12 +120,8 @@ public class Report {
     }
 
     @Contract(pure = true)
-    public List<String> getContent() {
-        return content;
-    }
-
-    public void setContent(List<String> content) {
-        this.content = content;
+    public ReportBody getBody() {
+        return body;
     }
 
     @Contract(pure = true)
@@ -0,0 +1,60 @@
+package cn.edu.xmu.yeahbuddy.domain;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.jetbrains.annotations.Contract;
+
+import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 团队项目报告正文
+ * <p>
+ * 由{@link Report}单向引用, 只在详情与编辑页面读取, 列表查询不涉及
+ */
+@Entity
+public class ReportBody {
+
+    @Id
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
+    @GenericGenerator(name = PooledSequenceGenerator.NAME, strategy = PooledSequenceGenerator.STRATEGY)
+    @Column(name = "ReportBodyId", unique = true, updatable = false, nullable = false)
+    private int id = Integer.MIN_VALUE;
+
+    @Version
+    @Column(name = "ReportBodyVersion", nullable = false)
+    private Integer version;
+
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "ReportContent", joinColumns = @JoinColumn(name = "ReportBodyId"),
+            indexes = @Index(name = "idx_report_content_body", columnList = "ReportBodyId"))
+    private List<String> content = new ArrayList<>();
+
+    public ReportBody() {
+    }
+
+    public ReportBody(int paragraphs) {
+        for (int i = 0; i < paragraphs; i++) {
+            this.content.add("");
+        }
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public Integer getVersion() {
+        return version;
+    }
+
+    @Contract(pure = true)
+    public List<String> getContent() {
+        return content;
+    }
+
+    public void setContent(List<String> content) {
+        this.content = content;
+    }
+}
@@ -1,31 +1,63 @@
 package cn.edu.xmu.yeahbuddy.domain;
 
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.NaturalId;
 import org.jetbrains.annotations.Contract;
 
 import javax.persistence.*;
-import java.util.ArrayList;
-import java.util.List;
 
+@Table(indexes = @Index(name = "idx_result_submitted", columnList = "ResultSubmitted, ResultId"))
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = Result.LIST, attributeNodes = {
+                @NamedAttributeNode(value = "report", subgraph = "report")
+        }, subgraphs = @NamedSubgraph(name = "report", attributeNodes = {
+                @NamedAttributeNode("team"),
+                @NamedAttributeNode("stage")})),
+        @NamedEntityGraph(name = Result.DETAIL, attributeNodes = {
+                @NamedAttributeNode(value = "report", subgraph = "report"),
+                @NamedAttributeNode("body")
+        }, subgraphs = {
+                @NamedSubgraph(name = "report", attributeNodes = {
+                        @NamedAttributeNode("team"),
+                        @NamedAttributeNode("stage"),
+                        @NamedAttributeNode(value = "body", subgraph = "body")}),
+                @NamedSubgraph(name = "body", attributeNodes = @NamedAttributeNode("content"))})
+})
 @Entity
 public class Result {
 
+    /**
+     * 列表: 报告标题, 团队与阶段, 不含正文
+     */
+    public static final String LIST = "Result.list";
+
+    /**
+     * 详情: 报告正文, 结果正文的段落另行加载
+     */
+    public static final String DETAIL = "Result.detail";
+
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
+    @GenericGenerator(name = PooledSequenceGenerator.NAME, strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "ResultId", unique = true, updatable = false, nullable = false)
     private int id = Integer.MIN_VALUE;
 
+    @Version
+    @Column(name = "ResultVersion", nullable = false)
+    private Integer version;
+
     @NaturalId
-    @OneToOne(fetch = FetchType.EAGER)
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "ResultReportId", updatable = false, nullable = false, unique = true)
     private Report report;
 
     @Column(name = "ResultBrief", nullable = false)
     private String brief;
 
-    @ElementCollection(fetch = FetchType.LAZY)
-    @CollectionTable(name = "ResultContent")
-    private List<String> content = new ArrayList<>();
+    @OneToOne(fetch = FetchType.LAZY, optional = false, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "ResultBodyId", updatable = false, nullable = false, unique = true)
+    private ResultBody body;
 
     @Column(name = "ResultSubmitted", nullable = false)
     private boolean submitted;
@@ -35,13 +67,15 @@ public class Result {
     public Result(Report report, String brief) {
         this.report = report;
         this.brief = brief;
-        this.content.add("");
-        this.content.add("");
+        this.body = new ResultBody(2);
     }
 
     @Contract(pure = true)
     public int getId(){ return id; }
 
+    @Contract(pure = true)
+    public Integer getVersion(){ return version; }
+
     @Contract(pure = true)
     public Report getReport(){ return report; }
 
@@ -71,12 +105,8 @@ public class Result {
     }
 
     @Contract(pure = true)
-    public List<String> getContent() {
-        return content;
-    }
-
-    public void setContent(List<String> content) {
-        this.content = content;
+    public ResultBody getBody() {
+        return body;
     }
 
     @Contract(pure = true)
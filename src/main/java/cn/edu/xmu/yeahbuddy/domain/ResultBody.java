@@ -0,0 +1,60 @@
+package cn.edu.xmu.yeahbuddy.domain;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.jetbrains.annotations.Contract;
+
+import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 综合评审报告正文
+ * <p>
+ * 由{@link Result}单向引用, 只在详情与编辑页面读取, 列表查询不涉及
+ */
+@Entity
+public class ResultBody {
+
+    @Id
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
+    @GenericGenerator(name = PooledSequenceGenerator.NAME, strategy = PooledSequenceGenerator.STRATEGY)
+    @Column(name = "ResultBodyId", unique = true, updatable = false, nullable = false)
+    private int id = Integer.MIN_VALUE;
+
+    @Version
+    @Column(name = "ResultBodyVersion", nullable = false)
+    private Integer version;
+
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "ResultContent", joinColumns = @JoinColumn(name = "ResultBodyId"),
+            indexes = @Index(name = "idx_result_content_body", columnList = "ResultBodyId"))
+    private List<String> content = new ArrayList<>();
+
+    public ResultBody() {
+    }
+
+    public ResultBody(int paragraphs) {
+        for (int i = 0; i < paragraphs; i++) {
+            this.content.add("");
+        }
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public Integer getVersion() {
+        return version;
+    }
+
+    @Contract(pure = true)
+    public List<String> getContent() {
+        return content;
+    }
+
+    public void setContent(List<String> content) {
+        this.content = content;
+    }
+}
@@ -1,40 +1,75 @@
 package cn.edu.xmu.yeahbuddy.domain;
 
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.NaturalId;
 import org.jetbrains.annotations.Contract;
 
 import javax.persistence.*;
-import java.util.ArrayList;
-import java.util.List;
 
 @Table(
         uniqueConstraints =
-        @UniqueConstraint(columnNames = {"ReviewReportId", "ReviewViewer"})
+        @UniqueConstraint(columnNames = {"ReviewReportId", "ReviewViewer"}),
+        indexes =
+        @Index(name = "idx_review_viewer", columnList = "ReviewViewer")
 )
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = Review.LIST, attributeNodes = {
+                @NamedAttributeNode(value = "report", subgraph = "report"),
+                @NamedAttributeNode("tutor")
+        }, subgraphs = @NamedSubgraph(name = "report", attributeNodes = {
+                @NamedAttributeNode("team"),
+                @NamedAttributeNode("stage")})),
+        @NamedEntityGraph(name = Review.DETAIL, attributeNodes = {
+                @NamedAttributeNode(value = "report", subgraph = "report"),
+                @NamedAttributeNode("tutor"),
+                @NamedAttributeNode("body")
+        }, subgraphs = {
+                @NamedSubgraph(name = "report", attributeNodes = {
+                        @NamedAttributeNode("team"),
+                        @NamedAttributeNode("stage"),
+                        @NamedAttributeNode(value = "body", subgraph = "body")}),
+                @NamedSubgraph(name = "body", attributeNodes = @NamedAttributeNode("content"))})
+})
 @Entity
 public class Review {
 
+    /**
+     * 列表: 报告标题, 团队与阶段, 不含正文
+     */
+    public static final String LIST = "Review.list";
+
+    /**
+     * 详情: 报告正文与导师, 评议正文的段落另行加载
+     */
+    public static final String DETAIL = "Review.detail";
+
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
+    @GenericGenerator(name = PooledSequenceGenerator.NAME, strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "ReviewId", unique = true, updatable = false, nullable = false)
     private int id = Integer.MIN_VALUE;
 
+    @Version
+    @Column(name = "ReviewVersion", nullable = false)
+    private Integer version;
+
     @NaturalId
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "ReviewReportId", updatable = false, nullable = false)
     private Report report;
 
     @NaturalId
-    @ManyToOne
+    @ManyToOne(optional = false)
     @JoinColumn(name = "ReviewViewer", updatable = false, nullable = false)
     private Tutor tutor;
 
     @Column(name = "ReviewRank", nullable = false)
     private int rank = -1;
 
-    @ElementCollection(fetch = FetchType.LAZY)
-    @CollectionTable(name = "ReviewContent")
-    private List<String> content = new ArrayList<>();
+    @OneToOne(fetch = FetchType.LAZY, optional = false, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "ReviewBodyId", updatable = false, nullable = false, unique = true)
+    private ReviewBody body;
 
     @Column(name = "ReviewSubmitted", nullable = false)
     private boolean submitted;
@@ -45,8 +80,7 @@ public class Review {
     public Review(Report report, Tutor tutor) {
         this.report = report;
         this.tutor = tutor;
-        this.content.add("");
-        this.content.add("");
+        this.body = new ReviewBody(2);
     }
 
     @Contract(pure = true)
@@ -54,6 +88,11 @@ public class Review {
         return id;
     }
 
+    @Contract(pure = true)
+    public Integer getVersion() {
+        return version;
+    }
+
     @Contract(pure = true)
     public Report getReport() {
         return report;
@@ -94,12 +133,8 @@ public class Review {
     }
 
     @Contract(pure = true)
-    public List<String> getContent() {
-        return content;
-    }
-
-    public void setContent(List<String> content) {
-        this.content = content;
+    public ReviewBody getBody() {
+        return body;
     }
 
     @Contract(pure = true)
@@ -0,0 +1,60 @@
+package cn.edu.xmu.yeahbuddy.domain;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.jetbrains.annotations.Contract;
+
+import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 评审报告正文
+ * <p>
+ * 由{@link Review}单向引用, 只在详情与编辑页面读取, 列表查询不涉及
+ */
+@Entity
+public class ReviewBody {
+
+    @Id
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
+    @GenericGenerator(name = PooledSequenceGenerator.NAME, strategy = PooledSequenceGenerator.STRATEGY)
+    @Column(name = "ReviewBodyId", unique = true, updatable = false, nullable = false)
+    private int id = Integer.MIN_VALUE;
+
+    @Version
+    @Column(name = "ReviewBodyVersion", nullable = false)
+    private Integer version;
+
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "ReviewContent", joinColumns = @JoinColumn(name = "ReviewBodyId"),
+            indexes = @Index(name = "idx_review_content_body", columnList = "ReviewBodyId"))
+    private List<String> content = new ArrayList<>();
+
+    public ReviewBody() {
+    }
+
+    public ReviewBody(int paragraphs) {
+        for (int i = 0; i < paragraphs; i++) {
+            this.content.add("");
+        }
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public Integer getVersion() {
+        return version;
+    }
+
+    @Contract(pure = true)
+    public List<String> getContent() {
+        return content;
+    }
+
+    public void setContent(List<String> content) {
+        this.content = content;
+    }
+}
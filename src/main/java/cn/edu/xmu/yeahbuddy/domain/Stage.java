@@ -1,14 +1,22 @@
 package cn.edu.xmu.yeahbuddy.domain;
 
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.jetbrains.annotations.Contract;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import java.sql.Timestamp;
 
+@Table(indexes = @Index(name = "idx_stage_end", columnList = "StageEnd"))
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "yeahbuddy.stage")
 public class Stage {
 
     @Id
@@ -2,21 +2,30 @@ package cn.edu.xmu.yeahbuddy.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Version;
 import java.util.Collection;
 import java.util.Collections;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "yeahbuddy.team")
+@NaturalIdCache(region = "yeahbuddy.team.username")
 public class Team implements UserDetails {
 
     private static final long serialVersionUID = -7619090069297505818L;
@@ -25,10 +34,15 @@ public class Team implements UserDetails {
     private static final String ROLE_TEAM = "ROLE_TEAM";
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
+    @GenericGenerator(name = PooledSequenceGenerator.NAME, strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "TeamId", unique = true, updatable = false, nullable = false)
     private int id = Integer.MIN_VALUE;
 
+    @Version
+    @Column(name = "TeamVersion", nullable = false)
+    private Integer version;
+
     @Column(name = "TeamPassword", nullable = false)
     @JsonIgnore
     private String password;
@@ -65,6 +79,11 @@ public class Team implements UserDetails {
         return id;
     }
 
+    @Contract(pure = true)
+    public Integer getVersion() {
+        return version;
+    }
+
     @Contract(pure = true)
     public String getDisplayName() {
         return displayName;
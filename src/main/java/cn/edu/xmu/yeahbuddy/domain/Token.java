@@ -1,7 +1,9 @@
 package cn.edu.xmu.yeahbuddy.domain;
 
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.CreationTimestamp;
 import org.jetbrains.annotations.Contract;
+import org.springframework.data.domain.Persistable;
 
 import javax.persistence.*;
 import java.sql.Timestamp;
@@ -11,14 +13,37 @@ import java.util.stream.Collectors;
 
 
 //TODO: 每个阶段每个导师是否至多一个token？
+@Table(indexes = @Index(name = "idx_token_end_time", columnList = "TokenEndTime, TokenValue"))
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = Token.LIST, attributeNodes = @NamedAttributeNode("tutor")),
+        @NamedEntityGraph(name = Token.DETAIL, attributeNodes = {
+                @NamedAttributeNode("tutor"),
+                @NamedAttributeNode(value = "reviews", subgraph = "reviews")
+        }, subgraphs = {
+                @NamedSubgraph(name = "reviews", attributeNodes = @NamedAttributeNode(value = "report", subgraph = "report")),
+                @NamedSubgraph(name = "report", attributeNodes = {
+                        @NamedAttributeNode("team"),
+                        @NamedAttributeNode("stage")})})
+})
 @Entity
-public class Token {
+public class Token implements Persistable<String> {
+
+    /**
+     * 列表: 导师
+     */
+    public static final String LIST = "Token.list";
+
+    /**
+     * 详情: 导师与评议(含报告团队与阶段), 用于认证与签发访问Token
+     */
+    public static final String DETAIL = "Token.detail";
+
 
     @Id
     @Column(name = "TokenValue", updatable = false, nullable = false)
     private String tokenValue;
 
-    @ManyToOne
+    @ManyToOne(optional = false)
     @JoinColumn(name = "TokenTutorId", updatable = false, nullable = false)
     private Tutor tutor;
 
@@ -29,9 +54,15 @@ public class Token {
     @Column(name = "TokenEndTime", nullable = false)
     private Timestamp end;
 
-    @OneToMany(fetch = FetchType.EAGER)
+    @OneToMany(fetch = FetchType.LAZY)
     private Set<Review> reviews;
 
+    /**
+     * 主键由应用生成, 用此标记区分新建与已持久化的Token, 新建时直接persist而不先按主键查询
+     */
+    @Transient
+    private boolean persisted;
+
     public Token() {
     }
 
@@ -47,6 +78,24 @@ public class Token {
         return tokenValue;
     }
 
+    @Override
+    @Contract(pure = true)
+    public String getId() {
+        return tokenValue;
+    }
+
+    @Override
+    @Contract(pure = true)
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
     @Contract(pure = true)
     public Tutor getTutor() {
         return tutor;
@@ -87,6 +136,9 @@ public class Token {
 
     @Override
     public String toString() {
+        if (!Hibernate.isInitialized(reviews)) {
+            return String.format("tokenValue:%s tutor:%s", tokenValue, tutor);
+        }
         return String.format("tokenValue:%s tutor:%s reviews:[%s]", tokenValue, tutor, reviews.stream().map(Object::toString).collect(Collectors.joining(", ")));
     }
 }
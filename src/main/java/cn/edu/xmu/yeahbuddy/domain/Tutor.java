@@ -2,7 +2,11 @@ package cn.edu.xmu.yeahbuddy.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.springframework.security.core.GrantedAuthority;
@@ -14,6 +18,9 @@ import java.util.Collection;
 import java.util.Collections;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "yeahbuddy.tutor")
+@NaturalIdCache(region = "yeahbuddy.tutor.username")
 public class Tutor implements UserDetails {
 
     private static final long serialVersionUID = -3232545785012376249L;
@@ -22,10 +29,15 @@ public class Tutor implements UserDetails {
     private static final String ROLE_TUTOR = "ROLE_TUTOR";
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledSequenceGenerator.NAME)
+    @GenericGenerator(name = PooledSequenceGenerator.NAME, strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "TutorId", unique = true, updatable = false, nullable = false)
     private int id;
 
+    @Version
+    @Column(name = "TutorVersion", nullable = false)
+    private Integer version;
+
     @Column(name = "TutorPassword", nullable = false)
     @JsonIgnore
     private String password;
@@ -62,6 +74,11 @@ public class Tutor implements UserDetails {
         return id;
     }
 
+    @Contract(pure = true)
+    public Integer getVersion() {
+        return version;
+    }
+
     @Contract(pure = true)
     public Collection<Token> getTokens() {
         return tokens;
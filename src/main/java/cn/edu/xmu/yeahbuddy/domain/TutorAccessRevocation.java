@@ -0,0 +1,57 @@
+package cn.edu.xmu.yeahbuddy.domain;
+
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.jetbrains.annotations.Contract;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.sql.Timestamp;
+
+/**
+ * 按导师吊销的签名访问Token, 该时间点及之前签发的访问Token全部失效, 每位导师一行
+ */
+@Entity
+public class TutorAccessRevocation {
+
+    @Id
+    @Column(name = "TutorAccessRevocationTutorId", updatable = false, nullable = false)
+    private int tutorId;
+
+    @Column(name = "TutorAccessRevocationBefore", nullable = false)
+    private Timestamp before;
+
+    public TutorAccessRevocation() {
+    }
+
+    public TutorAccessRevocation(int tutorId, Timestamp before) {
+        this.tutorId = tutorId;
+        this.before = before;
+    }
+
+    @Contract(pure = true)
+    public int getTutorId() {
+        return tutorId;
+    }
+
+    @Contract(pure = true)
+    public Timestamp getBefore() {
+        return before;
+    }
+
+    public void setBefore(Timestamp before) {
+        this.before = before;
+    }
+
+    @Contract(pure = true)
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37).append(tutorId).toHashCode();
+    }
+
+    @Contract(value = "null -> false", pure = true)
+    @Override
+    public boolean equals(Object rhs) {
+        return rhs instanceof TutorAccessRevocation && tutorId == ((TutorAccessRevocation) rhs).getTutorId();
+    }
+}
@@ -0,0 +1,23 @@
+package cn.edu.xmu.yeahbuddy.domain.repo;
+
+import cn.edu.xmu.yeahbuddy.domain.AccessTokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public interface AccessTokenRevocationRepository extends JpaRepository<AccessTokenRevocation, Long> {
+
+    List<AccessTokenRevocation> findByExpiresAtAfter(Timestamp now);
+
+    @Modifying
+    @Transactional
+    @Query("delete from AccessTokenRevocation r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Timestamp now);
+}
@@ -2,7 +2,6 @@ package cn.edu.xmu.yeahbuddy.domain.repo;
 
 import cn.edu.xmu.yeahbuddy.domain.Administrator;
 import org.jetbrains.annotations.NotNull;
-import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Repository;
 
@@ -10,10 +9,18 @@ import javax.persistence.LockModeType;
 import java.util.Optional;
 
 @Repository
-public interface AdministratorRepository extends JpaRepository<Administrator, Integer> {
+public interface AdministratorRepository extends NaturalIdRepository<Administrator, Integer> {
 
+    /**
+     * 按用户名查找, 经过自然主键缓存
+     *
+     * @param username 用户名
+     * @return 用户
+     */
     @NotNull
-    Optional<Administrator> findByUsername(String username);
+    default Optional<Administrator> findByUsername(String username) {
+        return findBySimpleNaturalId(username);
+    }
 
     @NotNull
     @Lock(LockModeType.PESSIMISTIC_WRITE)
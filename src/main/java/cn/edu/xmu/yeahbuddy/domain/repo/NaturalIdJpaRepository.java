@@ -0,0 +1,39 @@
+package cn.edu.xmu.yeahbuddy.domain.repo;
+
+import org.hibernate.Session;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Optional;
+
+/**
+ * 仓库基类
+ * <p>
+ * 在{@link SimpleJpaRepository}的基础上实现{@link NaturalIdRepository}.
+ * 派生查询{@code findByUsername}总是执行SQL, 不经过Hibernate的自然主键缓存,
+ * 因此按自然主键查找改用{@link Session#bySimpleNaturalId(Class)}.
+ *
+ * @param <T>  实体类型
+ * @param <ID> 主键类型
+ */
+@Transactional(readOnly = true)
+public class NaturalIdJpaRepository<T, ID> extends SimpleJpaRepository<T, ID> implements NaturalIdRepository<T, ID> {
+
+    private final EntityManager entityManager;
+
+    public NaturalIdJpaRepository(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
+        super(entityInformation, entityManager);
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @NotNull
+    public Optional<T> findBySimpleNaturalId(Object naturalId) {
+        return Optional.ofNullable(entityManager.unwrap(Session.class)
+                                                .bySimpleNaturalId(getDomainClass())
+                                                .load(naturalId));
+    }
+}
@@ -0,0 +1,28 @@
+package cn.edu.xmu.yeahbuddy.domain.repo;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.util.Optional;
+
+/**
+ * 带有{@code @NaturalId}的实体的仓库
+ *
+ * @param <T>  实体类型
+ * @param <ID> 主键类型
+ * @see NaturalIdJpaRepository
+ */
+@NoRepositoryBean
+public interface NaturalIdRepository<T, ID> extends JpaRepository<T, ID> {
+
+    /**
+     * 按自然主键查找
+     * 依次查找当前会话, 自然主键缓存与二级缓存, 都未命中时才查询数据库
+     *
+     * @param naturalId 自然主键
+     * @return 实体
+     */
+    @NotNull
+    Optional<T> findBySimpleNaturalId(Object naturalId);
+}
@@ -3,20 +3,49 @@ package cn.edu.xmu.yeahbuddy.domain.repo;
 import cn.edu.xmu.yeahbuddy.domain.Report;
 import cn.edu.xmu.yeahbuddy.domain.Stage;
 import cn.edu.xmu.yeahbuddy.domain.Team;
+import cn.edu.xmu.yeahbuddy.model.ReportListItem;
+import cn.edu.xmu.yeahbuddy.model.TeamSummary;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ReportRepository extends JpaRepository<Report, Integer> {
 
+    @EntityGraph(Report.LIST)
     List<Report> findByStage(Stage stage);
 
+    @Query("select new cn.edu.xmu.yeahbuddy.model.ReportListItem(rep.id, rep.title, rep.submitted, t.id, t.displayName, t.projectName) " +
+                   "from Report rep join rep.team t where rep.stage.id = :stageId order by rep.id")
+    List<ReportListItem> findListItemsByStageId(@Param("stageId") int stageId);
+
+    @EntityGraph(Report.LIST)
+    List<Report> findByStageAndTeam_IdIn(Stage stage, Collection<Integer> teamIds);
+
+    @NotNull
+    @EntityGraph(Report.DETAIL)
+    Optional<Report> findDetailById(int id);
+
+    @Query("select new cn.edu.xmu.yeahbuddy.model.TeamSummary(t.id, t.displayName) " +
+                   "from Report rep join rep.team t " +
+                   "where rep.stage.id = :stageId " +
+                   "and not exists (select r.id from Review r where r.report = rep) " +
+                   "and exists (select res.id from Result res where res.report = rep and res.submitted = false) " +
+                   "order by t.id")
+    List<TeamSummary> findTeamsAwaitingReview(@Param("stageId") int stageId);
+
+    @Query("select rep.team.id from Report rep where rep.stage = :stage and rep.team.id in :teamIds")
+    List<Integer> findTeamIdsByStage(@Param("stage") Stage stage, @Param("teamIds") Collection<Integer> teamIds);
+
     @NotNull
     Optional<Report> findByTeamAndStage(Team team, Stage stage);
 
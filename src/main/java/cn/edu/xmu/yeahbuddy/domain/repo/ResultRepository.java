@@ -3,9 +3,14 @@ package cn.edu.xmu.yeahbuddy.domain.repo;
 import cn.edu.xmu.yeahbuddy.domain.Report;
 import cn.edu.xmu.yeahbuddy.domain.Result;
 import cn.edu.xmu.yeahbuddy.domain.Team;
+import cn.edu.xmu.yeahbuddy.model.ResultSummary;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import javax.persistence.LockModeType;
 import java.util.List;
@@ -16,11 +21,26 @@ public interface ResultRepository extends JpaRepository<Result, Integer> {
     @NotNull
     Optional<Result> findByReport(Report report);
 
+    @EntityGraph(Result.LIST)
     List<Result> findByReport_Team(Team team);
 
+    @EntityGraph(Result.LIST)
     List<Result> findBySubmittedFalse();
 
-    List<Result> findBySubmittedTrue();
+    @Query("select new cn.edu.xmu.yeahbuddy.model.ResultSummary(res.id, res.brief, res.submitted, rep.title, st.title, st.end) " +
+                   "from Result res join res.report rep join rep.stage st where res.submitted = false order by res.id")
+    List<ResultSummary> findSummariesBySubmittedFalse();
+
+    /**
+     * 已提交的综合评审报告中主键小于before的一页, 按主键从新到旧
+     */
+    @Query("select new cn.edu.xmu.yeahbuddy.model.ResultSummary(res.id, res.brief, res.submitted, rep.title, st.title, st.end) " +
+                   "from Result res join res.report rep join rep.stage st where res.submitted = true and res.id < :before order by res.id desc")
+    List<ResultSummary> findSummariesBySubmittedTrueBefore(@Param("before") int before, Pageable pageable);
+
+    @NotNull
+    @EntityGraph(Result.DETAIL)
+    Optional<Result> findDetailById(int id);
 
     default List<Result> findByTeam(Team team) {
         return findByReport_Team(team);
@@ -3,12 +3,17 @@ package cn.edu.xmu.yeahbuddy.domain.repo;
 import cn.edu.xmu.yeahbuddy.domain.Report;
 import cn.edu.xmu.yeahbuddy.domain.Review;
 import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import cn.edu.xmu.yeahbuddy.model.ReviewProgress;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,8 +22,32 @@ public interface ReviewRepository extends JpaRepository<Review, Integer> {
 
     List<Review> findByReport(Report report);
 
+    @EntityGraph(Review.LIST)
     List<Review> findByTutor(Tutor tutor);
 
+    @EntityGraph(Review.LIST)
+    List<Review> findByTutorId(int tutorId);
+
+    @NotNull
+    @EntityGraph(Review.DETAIL)
+    Optional<Review> findDetailById(int id);
+
+    @EntityGraph(Review.LIST)
+    List<Review> findByIdIn(Collection<Integer> ids);
+
+    /**
+     * 报告已提交的评审报告, 同时读出导师与评审正文
+     */
+    @Query("select distinct r from Review r join fetch r.tutor join fetch r.body b left join fetch b.content " +
+                   "where r.report.id = :reportId and r.submitted = true order by r.id")
+    List<Review> findSubmittedByReportId(@Param("reportId") int reportId);
+
+    /**
+     * 已存在的(报告ID, 导师ID)对
+     */
+    @Query("select r.report.id, r.tutor.id from Review r where r.report in :reports and r.tutor in :tutors")
+    List<Object[]> findReportAndTutorIds(@Param("reports") Collection<Report> reports, @Param("tutors") Collection<Tutor> tutors);
+
     @NotNull
     Optional<Review> findByReportAndTutor(Report report, Tutor tutor);
 
@@ -27,6 +56,15 @@ public interface ReviewRepository extends JpaRepository<Review, Integer> {
         return findByReportAndTutor(report, tutor);
     }
 
+    /**
+     * 所有未完成的综合评审报告的导师评审进度, 没有评审报告的记为0/0
+     */
+    @Query("select new cn.edu.xmu.yeahbuddy.model.ReviewProgress(res.id, " +
+                   "coalesce(sum(case when r.submitted = true then 1 else 0 end), 0), count(r.id)) " +
+                   "from Result res left join Review r on r.report = res.report " +
+                   "where res.submitted = false group by res.id")
+    List<ReviewProgress> findProgressOfOpenResults();
+
     @NotNull
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<Review> queryById(int id);
@@ -1,21 +1,48 @@
 package cn.edu.xmu.yeahbuddy.domain.repo;
 
 import cn.edu.xmu.yeahbuddy.domain.Team;
+import cn.edu.xmu.yeahbuddy.model.TeamListItem;
+import cn.edu.xmu.yeahbuddy.model.TeamSummary;
 import org.jetbrains.annotations.NotNull;
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.LockModeType;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TeamRepository extends JpaRepository<Team, Integer> {
+public interface TeamRepository extends NaturalIdRepository<Team, Integer> {
 
+    /**
+     * 按用户名查找, 经过自然主键缓存
+     *
+     * @param username 用户名
+     * @return 用户
+     */
     @NotNull
-    Optional<Team> findByUsername(String username);
+    default Optional<Team> findByUsername(String username) {
+        return findBySimpleNaturalId(username);
+    }
 
     @NotNull
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<Team> queryById(int id);
+
+    /**
+     * 按主键顺序查找主键大于after的团队列表项
+     *
+     * @param after    上一页最后一项的主键
+     * @param pageable 行数限制
+     * @return 团队列表项
+     */
+    @Query("select new cn.edu.xmu.yeahbuddy.model.TeamListItem(t.id, t.username, t.displayName, t.projectName, t.phone, t.email) " +
+                   "from Team t where t.id > :after order by t.id")
+    List<TeamListItem> findListItemsAfter(@Param("after") int after, Pageable pageable);
+
+    @Query("select new cn.edu.xmu.yeahbuddy.model.TeamSummary(t.id, t.displayName) from Team t order by t.id")
+    List<TeamSummary> findAllSummaries();
 }
@@ -2,13 +2,20 @@ package cn.edu.xmu.yeahbuddy.domain.repo;
 
 import cn.edu.xmu.yeahbuddy.domain.Token;
 import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import cn.edu.xmu.yeahbuddy.model.TokenListItem;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.LockModeType;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,11 +24,77 @@ public interface TokenRepository extends JpaRepository<Token, String> {
 
     List<Token> findByTutor(Tutor tutor);
 
-    List<Token> findByEndBefore(Timestamp t);
-
+    @EntityGraph(Token.LIST)
     List<Token> findByEndAfter(Timestamp t);
 
+    @NotNull
+    @EntityGraph(Token.DETAIL)
+    Optional<Token> findDetailByTokenValue(String value);
+
     @NotNull
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<Token> queryByTokenValue(String value);
+
+    /**
+     * 未到期Token的值与结束时间, 用于初始化到期时间轮
+     */
+    @Query("select t.tokenValue, t.end from Token t where t.end > :now")
+    List<Object[]> findExpiriesAfter(@Param("now") Timestamp now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Token t set t.end = :now where t.end > :now and t.tutor.id = :tutorId")
+    int revokeByTutorId(@Param("tutorId") int tutorId, @Param("now") Timestamp now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Token t set t.end = :now where t.end > :now and exists " +
+                   "(select r.id from Review r join r.report rep where r member of t.reviews and rep.stage.id = :stageId)")
+    int revokeByStageId(@Param("stageId") int stageId, @Param("now") Timestamp now);
+
+    /**
+     * 导师未到期Token的值与结束时间, 批量吊销前读出原结束时间
+     */
+    @Query("select t.tokenValue, t.end from Token t where t.end > :now and t.tutor.id = :tutorId")
+    List<Object[]> findExpiriesByTutorIdAfter(@Param("tutorId") int tutorId, @Param("now") Timestamp now);
+
+    /**
+     * 阶段未到期Token的值与结束时间, 批量吊销前读出原结束时间
+     */
+    @Query("select distinct t.tokenValue, t.end from Token t join t.reviews r where t.end > :now and r.report.stage.id = :stageId")
+    List<Object[]> findExpiriesByStageIdAfter(@Param("stageId") int stageId, @Param("now") Timestamp now);
+
+    @Query("select t.tokenValue from Token t where t.end = :end and t.tutor.id = :tutorId")
+    List<String> findTokenValuesByTutorIdAndEnd(@Param("tutorId") int tutorId, @Param("end") Timestamp end);
+
+    @Query("select distinct t.tokenValue from Token t join t.reviews r where t.end = :end and r.report.stage.id = :stageId")
+    List<String> findTokenValuesByStageIdAndEnd(@Param("stageId") int stageId, @Param("end") Timestamp end);
+
+    /**
+     * 未失效Token列表, 按结束时间从近到远
+     */
+    @Query("select new cn.edu.xmu.yeahbuddy.model.TokenListItem(t.tokenValue, tu.id, tu.displayName, t.start, t.end) " +
+                   "from Token t join t.tutor tu where t.end > :now order by t.end, t.tokenValue")
+    List<TokenListItem> findActiveListItems(@Param("now") Timestamp now);
+
+    /**
+     * Token值, 评议ID与阶段ID, 用于签发访问Token而不加载评议实体
+     */
+    @Query("select t.tokenValue, r.id, rep.stage.id from Token t join t.reviews r join r.report rep where t.tokenValue in :tokenValues")
+    List<Object[]> findReviewStagesByTokenValueIn(@Param("tokenValues") Collection<String> tokenValues);
+
+    /**
+     * 失效Token列表的第一页, 按结束时间从近到远
+     */
+    @Query("select new cn.edu.xmu.yeahbuddy.model.TokenListItem(t.tokenValue, tu.id, tu.displayName, t.start, t.end) " +
+                   "from Token t join t.tutor tu where t.end < :now order by t.end desc, t.tokenValue desc")
+    List<TokenListItem> findRevokedListItems(@Param("now") Timestamp now, Pageable pageable);
+
+    /**
+     * 失效Token列表中排在(end, tokenValue)之后的一页
+     * <p>
+     * 结束时间的范围条件单独列出, 使查询能走(end, tokenValue)索引.
+     */
+    @Query("select new cn.edu.xmu.yeahbuddy.model.TokenListItem(t.tokenValue, tu.id, tu.displayName, t.start, t.end) " +
+                   "from Token t join t.tutor tu where t.end <= :end and (t.end < :end or t.tokenValue < :tokenValue) " +
+                   "order by t.end desc, t.tokenValue desc")
+    List<TokenListItem> findRevokedListItemsAfter(@Param("end") Timestamp end, @Param("tokenValue") String tokenValue, Pageable pageable);
 }
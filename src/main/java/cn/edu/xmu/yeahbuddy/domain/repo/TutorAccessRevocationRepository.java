@@ -0,0 +1,9 @@
+package cn.edu.xmu.yeahbuddy.domain.repo;
+
+import cn.edu.xmu.yeahbuddy.domain.TutorAccessRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TutorAccessRevocationRepository extends JpaRepository<TutorAccessRevocation, Integer> {
+}
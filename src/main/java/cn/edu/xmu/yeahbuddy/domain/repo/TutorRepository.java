@@ -1,21 +1,48 @@
 package cn.edu.xmu.yeahbuddy.domain.repo;
 
 import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import cn.edu.xmu.yeahbuddy.model.TutorListItem;
 import org.jetbrains.annotations.NotNull;
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.LockModeType;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TutorRepository extends JpaRepository<Tutor, Integer> {
+public interface TutorRepository extends NaturalIdRepository<Tutor, Integer> {
 
+    /**
+     * 按用户名查找, 经过自然主键缓存
+     *
+     * @param username 用户名
+     * @return 用户
+     */
     @NotNull
-    Optional<Tutor> findByUsername(String username);
+    default Optional<Tutor> findByUsername(String username) {
+        return findBySimpleNaturalId(username);
+    }
 
     @NotNull
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<Tutor> queryById(int id);
+
+    /**
+     * 按主键顺序查找主键大于after的导师列表项
+     *
+     * @param after    上一页最后一项的主键
+     * @param pageable 行数限制
+     * @return 导师列表项
+     */
+    @Query("select new cn.edu.xmu.yeahbuddy.model.TutorListItem(t.id, t.username, t.displayName, t.phone, t.email) " +
+                   "from Tutor t where t.id > :after order by t.id")
+    List<TutorListItem> findListItemsAfter(@Param("after") int after, Pageable pageable);
+
+    @Query("select new cn.edu.xmu.yeahbuddy.model.TutorListItem(t.id, t.username, t.displayName, t.phone, t.email) " +
+                   "from Tutor t order by t.id")
+    List<TutorListItem> findAllListItems();
 }
@@ -7,6 +7,11 @@
  *     &#64;Lock(LockModeType.PESSIMISTIC_WRITE)
  *     Optional&lt;Entity&gt; queryById(ID id);
  * </pre>
+ * <p>{@code yeahbuddy.locking.mode=optimistic}时修改改用不加锁的 {@code findById},
+ * 由实体的 {@code @Version} 列检测并发修改, 见 {@link cn.edu.xmu.yeahbuddy.service.LockingUpdateService}.
+ *
+ * <p>带有{@code @NaturalId}用户名的实体继承 {@link cn.edu.xmu.yeahbuddy.domain.repo.NaturalIdRepository},
+ * {@code findByUsername} 经过Hibernate的自然主键缓存而不是派生查询.
  *
  * <p>所有的仓库 {@link org.springframework.stereotype.Repository} 类都应当组织到这个包.
  * <p>当前仓库类习惯上继承 {@link org.springframework.data.jpa.repository.JpaRepository}, 可按需调整.
@@ -0,0 +1,97 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按键值定位(keyset)分页的一页结果
+ * <p>
+ * 下一页从本页最后一项的排序键之后开始查询, 不使用偏移量, 翻页代价与页码无关.
+ * 查询多取一行用于判断是否还有下一页.
+ *
+ * @param <T> 列表项类型
+ */
+public final class KeysetPage<T> implements Serializable {
+
+    /**
+     * 默认每页条数
+     */
+    public static final int DEFAULT_SIZE = 50;
+
+    /**
+     * 每页最大条数
+     */
+    public static final int MAX_SIZE = 200;
+
+    private static final long serialVersionUID = 3305748512967023446L;
+
+    private final List<T> items;
+
+    private final boolean hasNext;
+
+    private KeysetPage(List<T> items, boolean hasNext) {
+        this.items = items;
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * 将请求的每页条数限制在[1, {@link #MAX_SIZE}]内
+     *
+     * @param size 请求的每页条数
+     * @return 实际每页条数
+     */
+    @Contract(pure = true)
+    public static int limit(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+
+    /**
+     * 一页查询的行数限制, 比每页条数多一行
+     *
+     * @param size 请求的每页条数
+     * @return 查询的行数限制
+     */
+    @NotNull
+    public static Pageable pageable(int size) {
+        return new PageRequest(0, limit(size) + 1);
+    }
+
+    /**
+     * 由按{@link #pageable(int)}查询得到的行构造一页
+     *
+     * @param rows 查询得到的行
+     * @param size 请求的每页条数
+     * @param <T>  列表项类型
+     * @return 一页结果
+     */
+    @NotNull
+    public static <T> KeysetPage<T> of(List<T> rows, int size) {
+        int limit = limit(size);
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(Collections.unmodifiableList(rows), false);
+        }
+        return new KeysetPage<>(Collections.unmodifiableList(new ArrayList<>(rows.subList(0, limit))), true);
+    }
+
+    @Contract(pure = true)
+    public List<T> getItems() {
+        return items;
+    }
+
+    @Contract(pure = true)
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("items:%d hasNext:%s", items.size(), hasNext);
+    }
+}
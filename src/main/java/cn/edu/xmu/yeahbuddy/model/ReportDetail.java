@@ -0,0 +1,81 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import cn.edu.xmu.yeahbuddy.domain.Report;
+import cn.edu.xmu.yeahbuddy.domain.Team;
+import org.jetbrains.annotations.Contract;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 报告详情
+ * <p>
+ * 由服务在事务中根据实体构造, 正文已读出, 页面渲染时不再访问数据库.
+ */
+public final class ReportDetail implements Serializable {
+
+    private static final long serialVersionUID = -3625028430952473519L;
+
+    private final int id;
+
+    private final String title;
+
+    private final boolean submitted;
+
+    private final String stageTitle;
+
+    private final Team team;
+
+    private final List<String> content;
+
+    public ReportDetail(Report report) {
+        this.id = report.getId();
+        this.title = report.getTitle();
+        this.submitted = report.isSubmitted();
+        this.stageTitle = report.getStage().getTitle();
+        this.team = report.getTeam();
+        this.content = Collections.unmodifiableList(new ArrayList<>(report.getBody().getContent()));
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public String getTitle() {
+        return title;
+    }
+
+    @Contract(pure = true)
+    public boolean isSubmitted() {
+        return submitted;
+    }
+
+    @Contract(pure = true)
+    public String getStageTitle() {
+        return stageTitle;
+    }
+
+    @Contract(pure = true)
+    public Team getTeam() {
+        return team;
+    }
+
+    @Contract(pure = true)
+    public int getTeamId() {
+        return team.getId();
+    }
+
+    @Contract(pure = true)
+    public List<String> getContent() {
+        return content;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("id:%d title:%s teamId:%d submitted:%s", id, title, team.getId(), submitted);
+    }
+}
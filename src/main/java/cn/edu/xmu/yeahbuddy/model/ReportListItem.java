@@ -0,0 +1,71 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.Serializable;
+
+/**
+ * 项目报告列表项
+ * <p>
+ * 只包含列表页显示的字段, 由查询直接构造, 不加载报告正文与附件.
+ */
+public final class ReportListItem implements Serializable {
+
+    private static final long serialVersionUID = 1893407725186530124L;
+
+    private final int id;
+
+    private final String title;
+
+    private final boolean submitted;
+
+    private final int teamId;
+
+    private final String teamDisplayName;
+
+    private final String teamProjectName;
+
+    public ReportListItem(int id, String title, boolean submitted, int teamId, String teamDisplayName, String teamProjectName) {
+        this.id = id;
+        this.title = title;
+        this.submitted = submitted;
+        this.teamId = teamId;
+        this.teamDisplayName = teamDisplayName;
+        this.teamProjectName = teamProjectName;
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public String getTitle() {
+        return title;
+    }
+
+    @Contract(pure = true)
+    public boolean isSubmitted() {
+        return submitted;
+    }
+
+    @Contract(pure = true)
+    public int getTeamId() {
+        return teamId;
+    }
+
+    @Contract(pure = true)
+    public String getTeamDisplayName() {
+        return teamDisplayName;
+    }
+
+    @Contract(pure = true)
+    public String getTeamProjectName() {
+        return teamProjectName;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("id:%d title:%s teamId:%d submitted:%s", id, title, teamId, submitted);
+    }
+}
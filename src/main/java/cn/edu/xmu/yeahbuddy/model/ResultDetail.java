@@ -0,0 +1,67 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import cn.edu.xmu.yeahbuddy.domain.Result;
+import org.jetbrains.annotations.Contract;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 综合评审报告详情
+ * <p>
+ * 由服务在事务中根据实体构造, 结果与报告正文已读出, 页面渲染时不再访问数据库.
+ */
+public final class ResultDetail implements Serializable {
+
+    private static final long serialVersionUID = -1127638450921975520L;
+
+    private final int id;
+
+    private final String brief;
+
+    private final boolean submitted;
+
+    private final List<String> content;
+
+    private final ReportDetail report;
+
+    public ResultDetail(Result result) {
+        this.id = result.getId();
+        this.brief = result.getBrief();
+        this.submitted = result.isSubmitted();
+        this.content = Collections.unmodifiableList(new ArrayList<>(result.getBody().getContent()));
+        this.report = new ReportDetail(result.getReport());
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public String getBrief() {
+        return brief;
+    }
+
+    @Contract(pure = true)
+    public boolean isSubmitted() {
+        return submitted;
+    }
+
+    @Contract(pure = true)
+    public List<String> getContent() {
+        return content;
+    }
+
+    @Contract(pure = true)
+    public ReportDetail getReport() {
+        return report;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("id:%d reportId:%d submitted:%s", id, report.getId(), submitted);
+    }
+}
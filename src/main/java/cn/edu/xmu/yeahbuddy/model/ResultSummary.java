@@ -0,0 +1,72 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 综合评审报告列表项
+ * <p>
+ * 只包含列表页显示的字段, 由查询直接构造, 不加载报告与阶段实体.
+ */
+public final class ResultSummary implements Serializable {
+
+    private static final long serialVersionUID = 2811546939185720717L;
+
+    private final int id;
+
+    private final String brief;
+
+    private final boolean submitted;
+
+    private final String reportTitle;
+
+    private final String stageTitle;
+
+    private final Date stageEnd;
+
+    public ResultSummary(int id, String brief, boolean submitted, String reportTitle, String stageTitle, Date stageEnd) {
+        this.id = id;
+        this.brief = brief;
+        this.submitted = submitted;
+        this.reportTitle = reportTitle;
+        this.stageTitle = stageTitle;
+        this.stageEnd = stageEnd;
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public String getBrief() {
+        return brief;
+    }
+
+    @Contract(pure = true)
+    public boolean isSubmitted() {
+        return submitted;
+    }
+
+    @Contract(pure = true)
+    public String getReportTitle() {
+        return reportTitle;
+    }
+
+    @Contract(pure = true)
+    public String getStageTitle() {
+        return stageTitle;
+    }
+
+    @Contract(pure = true)
+    public Date getStageEnd() {
+        return stageEnd;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("id:%d reportTitle:%s stageTitle:%s submitted:%s", id, reportTitle, stageTitle, submitted);
+    }
+}
@@ -0,0 +1,91 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import cn.edu.xmu.yeahbuddy.domain.Review;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 评审报告详情
+ * <p>
+ * 由服务在事务中根据实体构造, 正文已读出, 页面渲染时不再访问数据库.
+ * 综合评审页面按报告列出多份评审报告, 此时不含报告.
+ */
+public final class ReviewDetail implements Serializable {
+
+    private static final long serialVersionUID = 6190447301752583026L;
+
+    private final int id;
+
+    private final int tutorId;
+
+    private final String tutorName;
+
+    private final int rank;
+
+    private final boolean submitted;
+
+    private final List<String> content;
+
+    @Nullable
+    private final ReportDetail report;
+
+    public ReviewDetail(Review review) {
+        this(review, null);
+    }
+
+    public ReviewDetail(Review review, @Nullable ReportDetail report) {
+        this.id = review.getId();
+        this.tutorId = review.getTutor().getId();
+        this.tutorName = review.getTutor().getDisplayName();
+        this.rank = review.getRank();
+        this.submitted = review.isSubmitted();
+        this.content = Collections.unmodifiableList(new ArrayList<>(review.getBody().getContent()));
+        this.report = report;
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public int getTutorId() {
+        return tutorId;
+    }
+
+    @Contract(pure = true)
+    public String getTutorName() {
+        return tutorName;
+    }
+
+    @Contract(pure = true)
+    public int getRank() {
+        return rank;
+    }
+
+    @Contract(pure = true)
+    public boolean isSubmitted() {
+        return submitted;
+    }
+
+    @Contract(pure = true)
+    public List<String> getContent() {
+        return content;
+    }
+
+    @Nullable
+    @Contract(pure = true)
+    public ReportDetail getReport() {
+        return report;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("id:%d tutorId:%d submitted:%s", id, tutorId, submitted);
+    }
+}
@@ -0,0 +1,57 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.Serializable;
+
+/**
+ * 综合评审报告对应的导师评审进度
+ * <p>
+ * 由聚合查询直接构造, 不加载评审报告实体.
+ */
+public final class ReviewProgress implements Serializable {
+
+    private static final long serialVersionUID = -5071584405123398826L;
+
+    private final int resultId;
+
+    private final long submitted;
+
+    private final long total;
+
+    public ReviewProgress(int resultId, long submitted, long total) {
+        this.resultId = resultId;
+        this.submitted = submitted;
+        this.total = total;
+    }
+
+    @Contract(pure = true)
+    public int getResultId() {
+        return resultId;
+    }
+
+    @Contract(pure = true)
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    @Contract(pure = true)
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * 已提交数/总数
+     *
+     * @return 进度
+     */
+    @Contract(pure = true)
+    public String getStatus() {
+        return String.format("%d/%d", submitted, total);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("resultId:%d %s", resultId, getStatus());
+    }
+}
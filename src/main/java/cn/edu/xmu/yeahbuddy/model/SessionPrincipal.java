@@ -0,0 +1,178 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import cn.edu.xmu.yeahbuddy.domain.Administrator;
+import cn.edu.xmu.yeahbuddy.domain.Administrator.AdministratorPermission;
+import cn.edu.xmu.yeahbuddy.domain.Team;
+import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.io.Serializable;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 会话中的登录用户
+ * <p>
+ * 登录成功后代替实体保存在{@code SecurityContext}中, 只保留ID, 用户名, 角色与管理员权限位,
+ * 不含密码与联系方式, 也不持有任何延迟加载的关联, 序列化后只有几十字节.
+ * 需要完整资料时按ID重新查询.
+ */
+public final class SessionPrincipal implements Principal, Serializable {
+
+    private static final long serialVersionUID = -2394175069721823340L;
+
+    private final int id;
+
+    @NonNls
+    private final String username;
+
+    private final Role role;
+
+    /**
+     * 管理员权限位, 第n位对应{@link AdministratorPermission}的第n个值
+     */
+    private final int permissions;
+
+    private SessionPrincipal(int id, String username, Role role, int permissions) {
+        this.id = id;
+        this.username = username;
+        this.role = role;
+        this.permissions = permissions;
+    }
+
+    /**
+     * 由实体生成会话用户
+     *
+     * @param user {@link Administrator}, {@link Team}, {@link Tutor}或SessionPrincipal
+     * @return 会话用户
+     * @throws IllegalArgumentException 不支持的类型
+     */
+    @NotNull
+    public static SessionPrincipal of(Object user) {
+        if (user instanceof SessionPrincipal) {
+            return (SessionPrincipal) user;
+        }
+        if (user instanceof Administrator) {
+            Administrator admin = (Administrator) user;
+            int permissions = 0;
+            if (admin.getAuthorities() != null) {
+                for (AdministratorPermission permission : admin.getAuthorities()) {
+                    permissions |= 1 << permission.ordinal();
+                }
+            }
+            return new SessionPrincipal(admin.getId(), admin.getUsername(), Role.ADMINISTRATOR, permissions);
+        }
+        if (user instanceof Team) {
+            Team team = (Team) user;
+            return new SessionPrincipal(team.getId(), team.getUsername(), Role.TEAM, 0);
+        }
+        if (user instanceof Tutor) {
+            Tutor tutor = (Tutor) user;
+            return new SessionPrincipal(tutor.getId(), tutor.getUsername(), Role.TUTOR, 0);
+        }
+        throw new IllegalArgumentException(String.valueOf(user));
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    @Contract(pure = true)
+    public String getName() {
+        return username;
+    }
+
+    @Contract(pure = true)
+    public Role getRole() {
+        return role;
+    }
+
+    @Contract(pure = true)
+    public int getPermissions() {
+        return permissions;
+    }
+
+    /**
+     * 是否具有某项管理员权限
+     *
+     * @param permission 权限
+     * @return 是否具有
+     */
+    @Contract(pure = true)
+    public boolean hasPermission(AdministratorPermission permission) {
+        return (permissions & 1 << permission.ordinal()) != 0;
+    }
+
+    /**
+     * 由角色与权限位还原的权限列表
+     *
+     * @return 权限列表
+     */
+    @NotNull
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        if (role != Role.ADMINISTRATOR) {
+            return Collections.singletonList(new SimpleGrantedAuthority(role.getAuthority()));
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (AdministratorPermission permission : AdministratorPermission.values()) {
+            if (hasPermission(permission)) {
+                authorities.add(permission);
+            }
+        }
+        return authorities;
+    }
+
+    @Contract(pure = true)
+    @Override
+    public int hashCode() {
+        return 31 * role.hashCode() + id;
+    }
+
+    @Contract(value = "null -> false", pure = true)
+    @Override
+    public boolean equals(Object rhs) {
+        return rhs instanceof SessionPrincipal
+                       && role == ((SessionPrincipal) rhs).role
+                       && id == ((SessionPrincipal) rhs).id;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("id:%d username:%s role:%s permissions:%x", id, username, role, permissions);
+    }
+
+    /**
+     * 用户角色
+     */
+    public enum Role {
+        ADMINISTRATOR(null),
+        TEAM("ROLE_TEAM"),
+        TUTOR("ROLE_TUTOR");
+
+        @NonNls
+        private final String authority;
+
+        Role(String authority) {
+            this.authority = authority;
+        }
+
+        @Contract(pure = true)
+        public String getAuthority() {
+            return authority;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.Serializable;
+
+/**
+ * 团队管理列表项
+ * <p>
+ * 只包含列表页显示的字段, 由查询直接构造, 不读取密码等其他字段.
+ */
+public final class TeamListItem implements Serializable {
+
+    private static final long serialVersionUID = -5129773600612483953L;
+
+    private final int id;
+
+    private final String username;
+
+    private final String displayName;
+
+    private final String projectName;
+
+    private final String phone;
+
+    private final String email;
+
+    public TeamListItem(int id, String username, String displayName, String projectName, String phone, String email) {
+        this.id = id;
+        this.username = username;
+        this.displayName = displayName;
+        this.projectName = projectName;
+        this.phone = phone;
+        this.email = email;
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public String getUsername() {
+        return username;
+    }
+
+    @Contract(pure = true)
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Contract(pure = true)
+    public String getProjectName() {
+        return projectName;
+    }
+
+    @Contract(pure = true)
+    public String getPhone() {
+        return phone;
+    }
+
+    @Contract(pure = true)
+    public String getEmail() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("id:%d username:%s displayName:%s", id, username, displayName);
+    }
+}
@@ -0,0 +1,39 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.Serializable;
+
+/**
+ * 团队列表项
+ * <p>
+ * 只包含ID与显示名, 由查询直接构造, 不加载团队实体.
+ */
+public final class TeamSummary implements Serializable {
+
+    private static final long serialVersionUID = 4417923086552154310L;
+
+    private final int id;
+
+    private final String displayName;
+
+    public TeamSummary(int id, String displayName) {
+        this.id = id;
+        this.displayName = displayName;
+    }
+
+    @Contract(pure = true)
+    public int getId() {
+        return id;
+    }
+
+    @Contract(pure = true)
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("id:%d displayName:%s", id, displayName);
+    }
+}
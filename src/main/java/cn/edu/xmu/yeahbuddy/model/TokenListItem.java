@@ -0,0 +1,64 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Token列表项
+ * <p>
+ * 只包含列表页显示的字段, 由查询直接构造, 不加载导师实体与评议集合.
+ */
+public final class TokenListItem implements Serializable {
+
+    private static final long serialVersionUID = -846120551493275082L;
+
+    private final String tokenValue;
+
+    private final int tutorId;
+
+    private final String tutorDisplayName;
+
+    private final Date start;
+
+    private final Date end;
+
+    public TokenListItem(String tokenValue, int tutorId, String tutorDisplayName, Date start, Date end) {
+        this.tokenValue = tokenValue;
+        this.tutorId = tutorId;
+        this.tutorDisplayName = tutorDisplayName;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Contract(pure = true)
+    public String getTokenValue() {
+        return tokenValue;
+    }
+
+    @Contract(pure = true)
+    public int getTutorId() {
+        return tutorId;
+    }
+
+    @Contract(pure = true)
+    public String getTutorDisplayName() {
+        return tutorDisplayName;
+    }
+
+    @Contract(pure = true)
+    public Date getStart() {
+        return start;
+    }
+
+    @Contract(pure = true)
+    public Date getEnd() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("tokenValue:%s tutorId:%d end:%s", tokenValue, tutorId, end);
+    }
+}
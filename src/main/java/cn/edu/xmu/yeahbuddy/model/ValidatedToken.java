@@ -0,0 +1,64 @@
+package cn.edu.xmu.yeahbuddy.model;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 已验证的登录Token
+ * <p>
+ * {@link cn.edu.xmu.yeahbuddy.domain.Token}的只读快照, 只保留认证与授权所需的字段, 用作Token登录后的凭据.
+ */
+public final class ValidatedToken implements Serializable {
+
+    private static final long serialVersionUID = 6180224839427318532L;
+
+    private final String tokenValue;
+
+    private final int tutorId;
+
+    private final Set<Integer> reviewIds;
+
+    private final Timestamp end;
+
+    public ValidatedToken(String tokenValue, int tutorId, Set<Integer> reviewIds, Timestamp end) {
+        this.tokenValue = tokenValue;
+        this.tutorId = tutorId;
+        this.reviewIds = Collections.unmodifiableSet(reviewIds);
+        this.end = end;
+    }
+
+    @Contract(pure = true)
+    public String getTokenValue() {
+        return tokenValue;
+    }
+
+    @Contract(pure = true)
+    public int getTutorId() {
+        return tutorId;
+    }
+
+    @Contract(pure = true)
+    public Set<Integer> getReviewIds() {
+        return reviewIds;
+    }
+
+    @Contract(pure = true)
+    public Timestamp getEnd() {
+        return end;
+    }
+
+    @Contract(pure = true)
+    public boolean isRevoked() {
+        return end.before(Timestamp.from(Instant.now()));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("tokenValue:%s tutorId:%d reviewIds:%s end:%s", tokenValue, tutorId, reviewIds, end);
+    }
+}
@@ -1,8 +1,10 @@
 package cn.edu.xmu.yeahbuddy.service;
 
+import cn.edu.xmu.yeahbuddy.config.ReadWriteRoutingDataSource;
 import cn.edu.xmu.yeahbuddy.domain.Administrator;
 import cn.edu.xmu.yeahbuddy.domain.repo.AdministratorRepository;
 import cn.edu.xmu.yeahbuddy.model.AdministratorDto;
+import cn.edu.xmu.yeahbuddy.model.SessionPrincipal;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierAlreadyExistsException;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierNotExistsException;
 import org.apache.commons.logging.Log;
@@ -10,13 +12,17 @@ import org.apache.commons.logging.LogFactory;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Optional;
 
@@ -24,7 +30,7 @@ import java.util.Optional;
  * 管理员账户服务
  */
 @Service
-public class AdministratorService implements UserDetailsService {
+public class AdministratorService implements UpgradableUserDetailsService {
 
     @NonNls
     private static Log log = LogFactory.getLog(AdministratorService.class);
@@ -33,33 +39,42 @@ public class AdministratorService implements UserDetailsService {
 
     private final AdministratorRepository administratorRepository;
 
+    private final TransactionTemplate transactionTemplate;
+
+    private final LockingUpdateService lockingUpdateService;
+
     /**
      * 构造函数
      * Spring Boot自动装配
      *
      * @param administratorRepository Autowired
      * @param ybPasswordEncodeService Autowired
+     * @param transactionManager      Autowired
+     * @param lockingUpdateService    Autowired
      */
     @Autowired
-    public AdministratorService(AdministratorRepository administratorRepository, YbPasswordEncodeService ybPasswordEncodeService) {
+    public AdministratorService(AdministratorRepository administratorRepository, YbPasswordEncodeService ybPasswordEncodeService, PlatformTransactionManager transactionManager,
+                                LockingUpdateService lockingUpdateService) {
         this.administratorRepository = administratorRepository;
         this.ybPasswordEncodeService = ybPasswordEncodeService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lockingUpdateService = lockingUpdateService;
     }
 
     /**
-     * 强制转换对象至Administrator
+     * 转换Administrator或登录后的会话用户至{@link SessionPrincipal}
      * 用于SpEL
      *
      * @param obj 对象
-     * @return 强制转换为Administrator的对象
+     * @return 会话用户
      */
     @Contract(pure = true)
-    public static Administrator asAdministrator(Object obj) {
-        return ((Administrator) obj);
+    public static SessionPrincipal asAdministrator(Object obj) {
+        return SessionPrincipal.of(obj);
     }
 
     /**
-     * 对象是否为Administrator
+     * 对象是否为Administrator或Administrator的会话用户
      * 用于SpEL
      *
      * @param obj 对象
@@ -67,7 +82,8 @@ public class AdministratorService implements UserDetailsService {
      */
     @Contract(pure = true)
     public static boolean isAdministrator(Object obj) {
-        return obj instanceof Administrator;
+        return obj instanceof Administrator
+                       || (obj instanceof SessionPrincipal && ((SessionPrincipal) obj).getRole() == SessionPrincipal.Role.ADMINISTRATOR);
     }
 
     /**
@@ -81,7 +97,7 @@ public class AdministratorService implements UserDetailsService {
     @Transactional(readOnly = true)
     public Administrator loadUserByUsername(String username) throws UsernameNotFoundException {
         log.debug("Trying to load Administrator " + username);
-        Optional<Administrator> admin = administratorRepository.findByUsername(username);
+        Optional<Administrator> admin = ReadWriteRoutingDataSource.usePrimary(() -> administratorRepository.findByUsername(username));
         if (!admin.isPresent()) {
             log.info("Failed to load Administrator " + username + ": not found");
             throw new UsernameNotFoundException(username);
@@ -122,7 +138,6 @@ public class AdministratorService implements UserDetailsService {
      * @return 新注册的管理员
      * @throws IdentifierAlreadyExistsException 用户名已存在
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ManageAdministrator') and  authentication.authorities.containsAll(#dto.authorities)")
     public Administrator registerNewAdministrator(AdministratorDto dto) throws IdentifierAlreadyExistsException {
         log.debug("Trying to register new Administrator " + dto.getUsername());
@@ -137,13 +152,23 @@ public class AdministratorService implements UserDetailsService {
             throw new IdentifierAlreadyExistsException("admin.username.exist", dto.getUsername());
         }
 
-        Administrator admin = new Administrator(dto.getUsername(), ybPasswordEncodeService.encode(dto.getPassword()));
-        admin.setAuthorities(dto.getAuthorities());
-        admin.setDisplayName(dto.getDisplayName());
-        admin.setEmail(dto.getEmail());
-        admin.setPhone(dto.getPhone());
+        // 在事务外计算密码哈希
+        String encoded = ybPasswordEncodeService.encode(dto.getPassword());
+
+        Administrator result = transactionTemplate.execute(status -> {
+            if (administratorRepository.findByUsername(dto.getUsername()).isPresent()) {
+                log.info("Failed to register Administrator " + dto.getUsername() + ": username already exist");
+                throw new IdentifierAlreadyExistsException("admin.username.exist", dto.getUsername());
+            }
+
+            Administrator admin = new Administrator(dto.getUsername(), encoded);
+            admin.setAuthorities(dto.getAuthorities());
+            admin.setDisplayName(dto.getDisplayName());
+            admin.setEmail(dto.getEmail());
+            admin.setPhone(dto.getPhone());
 
-        Administrator result = administratorRepository.save(admin);
+            return administratorRepository.save(admin);
+        });
         log.debug("Registered new Administrator " + result.toString());
         return result;
     }
@@ -169,50 +194,50 @@ public class AdministratorService implements UserDetailsService {
      * @return 修改后的管理员
      * @throws IdentifierAlreadyExistsException 如果修改用户名，用户名已存在
      */
-    @Transactional
     @PreAuthorize("(hasAuthority('ManageAdministrator') && ((#dto.authorities == null) || authentication.authorities.containsAll(#dto.authorities))) " +
                           "|| (T(cn.edu.xmu.yeahbuddy.service.AdministratorService).isAdministrator(principal) && T(cn.edu.xmu.yeahbuddy.service.AdministratorService).asAdministrator(principal).id == #id)")
     public Administrator updateAdministrator(int id, AdministratorDto dto) {
 
         log.debug("Trying to update Administrator " + id);
-        Administrator administrator = loadForUpdate(id);
-
-        if (dto.getAuthorities() != null) {
-            log.trace("Updated authorities for Administrator " + id);
-            administrator.setAuthorities(dto.getAuthorities());
-        }
+        return lockingUpdateService.update(() -> {
+            Administrator administrator = loadForUpdate(id);
 
-        if (dto.getDisplayName() != null) {
-            log.trace("Updated display name for Administrator " + id + ":" + administrator.getDisplayName() +
-                              " -> " + dto.getDisplayName());
-            administrator.setDisplayName(dto.getDisplayName());
-        }
+            if (dto.getAuthorities() != null) {
+                log.trace("Updated authorities for Administrator " + id);
+                administrator.setAuthorities(dto.getAuthorities());
+            }
 
-        if (dto.getEmail() != null) {
-            log.trace("Updated email for Administrator " + id + ":" + administrator.getEmail() +
-                              " -> " + dto.getEmail());
-            administrator.setEmail(dto.getEmail());
-        }
+            if (dto.getDisplayName() != null) {
+                log.trace("Updated display name for Administrator " + id + ":" + administrator.getDisplayName() +
+                                  " -> " + dto.getDisplayName());
+                administrator.setDisplayName(dto.getDisplayName());
+            }
 
-        if (dto.getPhone() != null) {
-            log.trace("Updated phone for Administrator " + id + ":" + administrator.getPhone() +
-                              " -> " + dto.getPhone());
-            administrator.setPhone(dto.getPhone());
-        }
+            if (dto.getEmail() != null) {
+                log.trace("Updated email for Administrator " + id + ":" + administrator.getEmail() +
+                                  " -> " + dto.getEmail());
+                administrator.setEmail(dto.getEmail());
+            }
 
-        if (dto.getUsername() != null) {
-            if (administratorRepository.findByUsername(dto.getUsername()).isPresent()) {
-                log.info("Fail to update username for Administrator " + dto.getUsername() + ": name already exist");
-                throw new IdentifierAlreadyExistsException("admin.username.exist", dto.getUsername());
-            } else {
-                log.trace("Updated username for Administrator " + id + ":" + administrator.getUsername() +
-                                  " -> " + dto.getUsername());
-                administrator.setUsername(dto.getUsername());
+            if (dto.getPhone() != null) {
+                log.trace("Updated phone for Administrator " + id + ":" + administrator.getPhone() +
+                                  " -> " + dto.getPhone());
+                administrator.setPhone(dto.getPhone());
             }
-        }
 
-        return administratorRepository.save(administrator);
+            if (dto.getUsername() != null) {
+                if (administratorRepository.findByUsername(dto.getUsername()).isPresent()) {
+                    log.info("Fail to update username for Administrator " + dto.getUsername() + ": name already exist");
+                    throw new IdentifierAlreadyExistsException("admin.username.exist", dto.getUsername());
+                } else {
+                    log.trace("Updated username for Administrator " + id + ":" + administrator.getUsername() +
+                                      " -> " + dto.getUsername());
+                    administrator.setUsername(dto.getUsername());
+                }
+            }
 
+            return administratorRepository.save(administrator);
+        });
     }
 
     /**
@@ -225,20 +250,21 @@ public class AdministratorService implements UserDetailsService {
      * @return 修改后的管理员
      * @throws BadCredentialsException 原密码不正确
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ManageAdministrator') " +
                           "|| (T(cn.edu.xmu.yeahbuddy.service.AdministratorService).isAdministrator(principal) && T(cn.edu.xmu.yeahbuddy.service.AdministratorService).asAdministrator(principal).id == #id)")
     public Administrator updateAdministratorPassword(int id, CharSequence oldPassword, String newPassword) throws BadCredentialsException {
         log.info("Trying to update password for Administrator " + id);
-        Administrator administrator = loadForUpdate(id);
-        if (ybPasswordEncodeService.matches(oldPassword, administrator.getPassword())) {
-            administrator.setPassword(ybPasswordEncodeService.encode(newPassword));
-            log.info("Updated password for Administrator " + id);
-            return administratorRepository.save(administrator);
-        } else {
+
+        String current = loadPassword(id);
+
+        if (!ybPasswordEncodeService.matches(oldPassword, current)) {
             log.warn("Failed to update password for Administrator " + id + ": old password doesn't match");
             throw new BadCredentialsException("admin.update.password");
         }
+
+        Administrator result = savePassword(id, current, ybPasswordEncodeService.encode(newPassword));
+        log.info("Updated password for Administrator " + id);
+        return result;
     }
 
     /**
@@ -249,17 +275,79 @@ public class AdministratorService implements UserDetailsService {
      * @param newPassword 新密码
      * @return 修改后的管理员
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ResetPassword') && hasAuthority('ManageAdministrator')")
     public Administrator resetAdministratorPassword(int id, String newPassword) {
-        Administrator administrator = loadForUpdate(id);
+        String encoded = ybPasswordEncodeService.encode(newPassword);
         log.info("Reset password for Administrator " + id);
-        administrator.setPassword(ybPasswordEncodeService.encode(newPassword));
-        return administratorRepository.save(administrator);
+        return savePassword(id, null, encoded);
+    }
+
+    /**
+     * 登录成功后升级密码密文 提供{@link UpgradableUserDetailsService#upgradePassword(UserDetails, CharSequence)}
+     *
+     * @param user        已通过校验的管理员
+     * @param rawPassword 密码明文
+     */
+    @Override
+    public void upgradePassword(UserDetails user, CharSequence rawPassword) {
+        int id = ((Administrator) user).getId();
+        String encoded = ybPasswordEncodeService.encode(rawPassword);
+
+        lockingUpdateService.update(() -> {
+            Administrator administrator = loadForUpdate(id);
+            if (!administrator.getPassword().equals(user.getPassword())) {
+                log.debug("Skipped password upgrade for Administrator " + id + ": password changed or already upgraded");
+                return null;
+            }
+            administrator.setPassword(encoded);
+            log.info("Upgraded password hash for Administrator " + id);
+            return administratorRepository.save(administrator);
+        });
+    }
+
+    /**
+     * 读取当前密码密文, 不加锁
+     *
+     * @param id 管理员ID
+     * @return 密码密文
+     */
+    @NotNull
+    private String loadPassword(int id) {
+        Optional<Administrator> t = administratorRepository.findById(id);
+
+        if (!t.isPresent()) {
+            log.info("Failed to load Administrator id" + id + ": not found");
+            throw new IdentifierNotExistsException("admin.id.not_found", id);
+        }
+
+        return t.get().getPassword();
+    }
+
+    /**
+     * 读取并写入新密码密文
+     * 密码哈希应在调用前完成, 事务内只有一次读取与一次UPDATE
+     *
+     * @param id       管理员ID
+     * @param expected 校验原密码时读取的密文, 不为null时若已被修改则失败
+     * @param encoded  新密码密文
+     * @return 修改后的管理员
+     * @throws BadCredentialsException 校验后密码已被修改
+     */
+    @NotNull
+    private Administrator savePassword(int id, @Nullable String expected, String encoded) {
+        return lockingUpdateService.update(() -> {
+            Administrator administrator = loadForUpdate(id);
+            if (expected != null && !expected.equals(administrator.getPassword())) {
+                log.warn("Failed to update password for Administrator " + id + ": password changed concurrently");
+                throw new BadCredentialsException("admin.update.password");
+            }
+            administrator.setPassword(encoded);
+            return administratorRepository.save(administrator);
+        });
     }
 
     /**
-     * 查找并加写锁
+     * 查找待修改的用户, 悲观模式下加写锁
      * 用于读取并修改
      *
      * @param id 管理员ID
@@ -267,7 +355,7 @@ public class AdministratorService implements UserDetailsService {
      */
     @NotNull
     private Administrator loadForUpdate(int id) {
-        Optional<Administrator> admin = administratorRepository.queryById(id);
+        Optional<Administrator> admin = lockingUpdateService.load(() -> administratorRepository.queryById(id), () -> administratorRepository.findById(id));
 
         if (!admin.isPresent()) {
             log.info("Failed to load Administrator " + id + ": not found");
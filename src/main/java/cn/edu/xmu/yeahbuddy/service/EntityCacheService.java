@@ -0,0 +1,79 @@
+package cn.edu.xmu.yeahbuddy.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.NaturalIdCacheStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hibernate二级缓存统计
+ * <p>
+ * 阶段, 团队, 导师与管理员按实体分区缓存, 团队, 导师与管理员的用户名另有自然主键缓存.
+ * 缓存均为READ_WRITE策略, 经Hibernate的修改与删除在提交后更新或移除对应条目, 无需手动失效.
+ * 需要{@code hibernate.generate_statistics=true}才有计数.
+ */
+@Service
+public class EntityCacheService {
+
+    private final SessionFactory sessionFactory;
+
+    /**
+     * 构造函数
+     * Spring Boot自动装配
+     *
+     * @param entityManagerFactory Autowired
+     */
+    @Autowired
+    public EntityCacheService(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    /**
+     * 缓存统计
+     *
+     * @return 是否启用统计, 二级缓存与自然主键缓存的命中, 未命中与写入次数, 各区域的计数
+     */
+    public Map<String, Object> getStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+        Map<String, Object> stat = new LinkedHashMap<>();
+        stat.put("enabled", statistics.isStatisticsEnabled());
+        stat.put("hits", statistics.getSecondLevelCacheHitCount());
+        stat.put("misses", statistics.getSecondLevelCacheMissCount());
+        stat.put("puts", statistics.getSecondLevelCachePutCount());
+        stat.put("naturalIdHits", statistics.getNaturalIdCacheHitCount());
+        stat.put("naturalIdMisses", statistics.getNaturalIdCacheMissCount());
+        stat.put("naturalIdPuts", statistics.getNaturalIdCachePutCount());
+        stat.put("naturalIdQueries", statistics.getNaturalIdQueryExecutionCount());
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        String[] regionNames = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(regionNames);
+        for (String regionName : regionNames) {
+            Map<String, Object> region = new LinkedHashMap<>();
+            SecondLevelCacheStatistics cache = statistics.getSecondLevelCacheStatistics(regionName);
+            NaturalIdCacheStatistics naturalIdCache = cache == null ? statistics.getNaturalIdCacheStatistics(regionName) : null;
+            if (cache != null) {
+                region.put("hits", cache.getHitCount());
+                region.put("misses", cache.getMissCount());
+                region.put("puts", cache.getPutCount());
+            } else if (naturalIdCache != null) {
+                region.put("hits", naturalIdCache.getHitCount());
+                region.put("misses", naturalIdCache.getMissCount());
+                region.put("puts", naturalIdCache.getPutCount());
+                region.put("queries", naturalIdCache.getExecutionCount());
+            } else {
+                continue;
+            }
+            regions.put(regionName, region);
+        }
+        stat.put("regions", regions);
+        return stat;
+    }
+}
@@ -0,0 +1,153 @@
+package cn.edu.xmu.yeahbuddy.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 实体修改的加锁策略
+ * <p>
+ * 悲观模式下修改前用{@code queryById}加行写锁, 并发修改同一行时排队等待.
+ * 乐观模式下修改前不加锁, 提交时由{@code @Version}列检查是否被并发修改,
+ * 冲突(包括数据库报告的锁冲突)时回滚并在新事务中重试, 最多{@code max-attempts}次, 每次重试前随机等待一段时间.
+ * <p>
+ * 由{@code yeahbuddy.locking.mode}选择, 默认为悲观模式.
+ * 已在外层事务中时不重试: 冲突会使外层事务回滚, 只能由外层处理.
+ */
+@Service
+public class LockingUpdateService {
+
+    @NonNls
+    private static Log log = LogFactory.getLog(LockingUpdateService.class);
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean optimistic;
+
+    private final int maxAttempts;
+
+    private final long backoffMillis;
+
+    private final LongAdder updates = new LongAdder();
+
+    private final LongAdder conflicts = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * 构造函数
+     * Spring Boot自动装配
+     *
+     * @param transactionManager Autowired
+     * @param mode               加锁模式, pessimistic或optimistic
+     * @param maxAttempts        乐观模式下最多尝试次数
+     * @param backoffMillis      乐观模式下第n次重试前最多等待n倍此时间(毫秒)
+     */
+    @Autowired
+    public LockingUpdateService(PlatformTransactionManager transactionManager,
+                                @Value("${yeahbuddy.locking.mode:pessimistic}") String mode,
+                                @Value("${yeahbuddy.locking.max-attempts:3}") int maxAttempts,
+                                @Value("${yeahbuddy.locking.backoff-millis:10}") long backoffMillis) {
+        switch (mode.trim().toLowerCase(Locale.ROOT)) {
+            case "pessimistic":
+                this.optimistic = false;
+                break;
+            case "optimistic":
+                this.optimistic = true;
+                break;
+            default:
+                throw new IllegalArgumentException("yeahbuddy.locking.mode must be pessimistic or optimistic: " + mode);
+        }
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("yeahbuddy.locking.max-attempts must be positive: " + maxAttempts);
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        log.info("Entity updates use " + (optimistic ? "optimistic locking, max attempts " + maxAttempts : "pessimistic locking"));
+    }
+
+    @Contract(pure = true)
+    public boolean isOptimistic() {
+        return optimistic;
+    }
+
+    /**
+     * 读取待修改的实体
+     *
+     * @param forUpdate 加写锁读取, 悲观模式使用
+     * @param plain     不加锁读取, 乐观模式使用
+     * @param <T>       实体类型
+     * @return 实体
+     */
+    public <T> Optional<T> load(Supplier<Optional<T>> forUpdate, Supplier<Optional<T>> plain) {
+        return optimistic ? plain.get() : forUpdate.get();
+    }
+
+    /**
+     * 在事务中执行修改
+     * 乐观模式下修改应当从读取开始, 以便重试时读到新数据
+     *
+     * @param action 读取并修改
+     * @param <T>    返回类型
+     * @return action的返回值
+     * @throws ConcurrencyFailureException 重试次数用完仍冲突
+     */
+    public <T> T update(Supplier<T> action) throws ConcurrencyFailureException {
+        updates.increment();
+        if (!optimistic || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transactionTemplate.execute(status -> action.get());
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (ConcurrencyFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    failures.increment();
+                    log.warn("Update failed after " + attempt + " attempts: " + e.getMessage());
+                    throw e;
+                }
+                log.debug("Update conflicted on attempt " + attempt + ", retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMillis * attempt + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 修改统计
+     *
+     * @return 模式, 修改次数, 冲突次数, 重试后仍失败次数
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stat = new LinkedHashMap<>();
+        stat.put("mode", optimistic ? "optimistic" : "pessimistic");
+        stat.put("maxAttempts", maxAttempts);
+        stat.put("updates", updates.sum());
+        stat.put("conflicts", conflicts.sum());
+        stat.put("failures", failures.sum());
+        return stat;
+    }
+}
@@ -0,0 +1,129 @@
+package cn.edu.xmu.yeahbuddy.service;
+
+import cn.edu.xmu.yeahbuddy.utils.TokenBucketLimiter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 登录限流服务
+ * <p>
+ * 在计算密码哈希之前按客户端地址与用户名分别限流,
+ * 防止暴力破解或配置错误的客户端把失败登录变成CPU耗尽.
+ * <p>
+ * 按用户名限流不区分登录是否成功, 知道用户名的人可以持续发送错误密码让该账号暂时无法登录,
+ * 这是为了限制分布式猜测密码而接受的代价, 错误登录停止后账号按恢复速率自动解除限流.
+ */
+@Service
+public class LoginThrottleService {
+
+    @NonNls
+    private static Log log = LogFactory.getLog(LoginThrottleService.class);
+
+    private final TokenBucketLimiter byAddress;
+
+    private final TokenBucketLimiter byUsername;
+
+    @NonNls
+    private final Set<String> trustedProxies;
+
+    /**
+     * 构造函数
+     * Spring Boot自动装配
+     *
+     * @param width                   每行桶数
+     * @param depth                   行数
+     * @param addressCapacity         每个地址允许的突发登录次数
+     * @param addressRefillPerMinute  每个地址每分钟恢复的登录次数
+     * @param usernameCapacity        每个用户名允许的突发登录次数
+     * @param usernameRefillPerMinute 每个用户名每分钟恢复的登录次数
+     * @param trustedProxies          受信任的反向代理地址, 只有来自这些地址的X-Forwarded-For才会被采用
+     */
+    @Autowired
+    public LoginThrottleService(@Value("${yeahbuddy.login-throttle.width:4096}") int width,
+                                @Value("${yeahbuddy.login-throttle.depth:2}") int depth,
+                                @Value("${yeahbuddy.login-throttle.address.capacity:30}") int addressCapacity,
+                                @Value("${yeahbuddy.login-throttle.address.refill-per-minute:30}") double addressRefillPerMinute,
+                                @Value("${yeahbuddy.login-throttle.username.capacity:10}") int usernameCapacity,
+                                @Value("${yeahbuddy.login-throttle.username.refill-per-minute:5}") double usernameRefillPerMinute,
+                                @Value("${yeahbuddy.login-throttle.trusted-proxies:}") String[] trustedProxies) {
+        this.byAddress = new TokenBucketLimiter(width, depth, addressCapacity, addressRefillPerMinute);
+        this.byUsername = new TokenBucketLimiter(width, depth, usernameCapacity, usernameRefillPerMinute);
+        this.trustedProxies = Arrays.stream(trustedProxies).map(String::trim).filter(proxy -> !proxy.isEmpty()).collect(Collectors.toSet());
+    }
+
+    /**
+     * 确定用于限流的客户端地址
+     * 直接连接的地址是受信任的代理时, 自右向左取X-Forwarded-For中第一个不受信任的地址,
+     * 否则忽略X-Forwarded-For, 防止客户端伪造地址绕过限流
+     *
+     * @param remoteAddr   直接连接的地址
+     * @param forwardedFor X-Forwarded-For请求头, 可为空
+     * @return 客户端地址
+     */
+    @NonNls
+    public String resolveAddress(@NonNls String remoteAddr, @Nullable @NonNls String forwardedFor) {
+        if (forwardedFor == null || !trustedProxies.contains(remoteAddr)) {
+            return remoteAddr;
+        }
+        String[] hops = forwardedFor.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                return hop;
+            }
+        }
+        return remoteAddr;
+    }
+
+    /**
+     * 尝试登录
+     *
+     * @param address  客户端地址
+     * @param username 用户名或登录Token, 可为空
+     * @return 允许时为0, 否则为建议的重试等待秒数
+     */
+    public long tryAcquire(@NonNls String address, @Nullable @NonNls String username) {
+        if (!byAddress.tryAcquire(address)) {
+            log.info("Login throttled for address " + address);
+            return byAddress.getRetryAfterSeconds();
+        }
+        if (username != null && !byUsername.tryAcquire(username.trim().toLowerCase(Locale.ROOT))) {
+            log.info("Login throttled for username " + username + " from " + address);
+            return byUsername.getRetryAfterSeconds();
+        }
+        return 0;
+    }
+
+    /**
+     * 清空限流状态, 已被限流的地址与用户名立即恢复
+     */
+    public void reset() {
+        byAddress.reset();
+        byUsername.reset();
+        log.info("Login throttle reset");
+    }
+
+    /**
+     * 限流统计
+     *
+     * @return 按地址与按用户名的限流统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stat = new LinkedHashMap<>();
+        stat.put("address", byAddress.getStatistics());
+        stat.put("username", byUsername.getStatistics());
+        return stat;
+    }
+}
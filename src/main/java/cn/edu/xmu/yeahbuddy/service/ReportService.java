@@ -4,7 +4,11 @@ import cn.edu.xmu.yeahbuddy.domain.Report;
 import cn.edu.xmu.yeahbuddy.domain.Stage;
 import cn.edu.xmu.yeahbuddy.domain.Team;
 import cn.edu.xmu.yeahbuddy.domain.repo.ReportRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.TeamRepository;
+import cn.edu.xmu.yeahbuddy.model.ReportDetail;
 import cn.edu.xmu.yeahbuddy.model.ReportDto;
+import cn.edu.xmu.yeahbuddy.model.ReportListItem;
+import cn.edu.xmu.yeahbuddy.model.TeamSummary;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierAlreadyExistsException;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierNotExistsException;
 import org.apache.commons.logging.Log;
@@ -14,8 +18,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 团队报告任务
@@ -28,18 +38,28 @@ public class ReportService {
 
     private ReportRepository reportRepository;
 
+    private final TeamRepository teamRepository;
+
     private final ResultService resultService;
 
+    private final LockingUpdateService lockingUpdateService;
+
     /**
      * 构造函数
      * Spring Boot自动装配
      *
-     * @param reportRepository Autowired
+     * @param reportRepository     Autowired
+     * @param teamRepository       Autowired
+     * @param resultService        Autowired
+     * @param lockingUpdateService Autowired
      */
     @Autowired
-    public ReportService(ReportRepository reportRepository, ResultService resultService) {
+    public ReportService(ReportRepository reportRepository, TeamRepository teamRepository, ResultService resultService,
+                         LockingUpdateService lockingUpdateService) {
         this.reportRepository = reportRepository;
+        this.teamRepository = teamRepository;
         this.resultService = resultService;
+        this.lockingUpdateService = lockingUpdateService;
     }
 
     /**
@@ -54,6 +74,19 @@ public class ReportService {
         return reportRepository.findById(id);
     }
 
+    /**
+     * 查找团队项目报告详情
+     * 报告正文在事务中读出, 供报告编辑与查看页面直接渲染
+     *
+     * @param id 团队项目报告主键
+     * @return 团队项目报告详情
+     */
+    @Transactional(readOnly = true)
+    public Optional<ReportDetail> findDetailById(int id) {
+        log.debug("Finding Report detail " + id);
+        return reportRepository.findDetailById(id).map(ReportDetail::new);
+    }
+
     /**
      * 查找团队项目报告
      *
@@ -85,6 +118,32 @@ public class ReportService {
     @Transactional
     public List<Report> findByStage(Stage stage) { return reportRepository.findByStage(stage);}
 
+    /**
+     * 查找阶段所有报告的列表项
+     * 只读取列表页显示的字段, 不加载报告实体
+     *
+     * @param stageId 阶段ID
+     * @return 报告列表项
+     */
+    @Transactional(readOnly = true)
+    public List<ReportListItem> findListItemsByStage(int stageId) {
+        return reportRepository.findListItemsByStageId(stageId);
+    }
+
+    /**
+     * 查找某个阶段尚未分配评审的团队
+     * <p>
+     * 报告没有任何评审且综合评审未提交
+     *
+     * @param stage 阶段
+     * @return 团队
+     */
+    @Transactional(readOnly = true)
+    public List<TeamSummary> findTeamsAwaitingReview(Stage stage) {
+        log.debug("Finding Teams awaiting review in " + stage);
+        return reportRepository.findTeamsAwaitingReview(stage.getId());
+    }
+
     /**
      * 新建团队项目报告
      *
@@ -112,6 +171,55 @@ public class ReportService {
         return report;
     }
 
+    /**
+     * 批量新建团队项目报告及其综合评审报告
+     * <p>
+     * 团队与已有报告各用一条查询批量检查, 再一次性保存所有报告与综合评审报告,
+     * 插入语句在提交时按{@code hibernate.jdbc.batch_size}分批执行.
+     *
+     * @param teamIds 团队ID
+     * @param stage   阶段
+     * @param title   团队项目报告标题
+     * @return 新建的团队项目报告
+     * @throws IdentifierNotExistsException     有团队找不到
+     * @throws IdentifierAlreadyExistsException 有团队在该阶段已有报告
+     */
+    @Transactional
+    public List<Report> createReports(Collection<Integer> teamIds, Stage stage, String title)
+            throws IdentifierNotExistsException, IdentifierAlreadyExistsException {
+        log.debug("Trying to create " + teamIds.size() + " Reports with " + stage);
+        if (teamIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Integer, Team> teams = teamRepository.findAllById(teamIds)
+                                                 .stream().collect(Collectors.toMap(Team::getId, Function.identity()));
+        for (Integer id : teamIds) {
+            if (!teams.containsKey(id)) {
+                log.info("Fail to create Reports with " + stage + ": team " + id + " not found");
+                throw new IdentifierNotExistsException("team.id.not_found", id);
+            }
+        }
+        List<Integer> existing = reportRepository.findTeamIdsByStage(stage, teams.keySet());
+        if (!existing.isEmpty()) {
+            log.info("Fail to create Reports with " + stage + ": teams " + existing + " already exist");
+            throw new IdentifierAlreadyExistsException("report.id.exist", String.format("%s, %s", existing, stage));
+        }
+
+        List<Report> reports = new ArrayList<>(teams.size());
+        for (Team team : teams.values()) {
+            Report report = new Report(team, stage);
+            report.setSubmitted(false);
+            report.setTitle(title);
+            reports.add(report);
+        }
+        reports = reportRepository.saveAll(reports);
+
+        resultService.createResults(reports);
+
+        log.debug("Created " + reports.size() + " Reports with " + stage);
+        return reports;
+    }
+
     /**
      * 删除团队项目报告
      *
@@ -130,38 +238,44 @@ public class ReportService {
      * @param dto 团队项目报告的Dto
      * @return 团队项目报告
      */
-    @Transactional
     public Report updateReport(int id, ReportDto dto) {
         log.debug("Trying to update Report " + id);
-        Optional<Report> r = reportRepository.queryById(id);
+        return lockingUpdateService.update(() -> {
+            Optional<Report> r = lockingUpdateService.load(() -> reportRepository.queryById(id), () -> reportRepository.findById(id));
 
-        if (!r.isPresent()) {
-            log.info("Failed to load Report " + id + ": not found");
-            throw new IdentifierNotExistsException("report.id.not_found", id);
-        }
-        Report report = r.get();
+            if (!r.isPresent()) {
+                log.info("Failed to load Report " + id + ": not found");
+                throw new IdentifierNotExistsException("report.id.not_found", id);
+            }
+            Report report = r.get();
 
-        if (dto.getTitle() != null) {
-            log.trace("Update title for Report " + id + ":" + report.getTitle() +
-                              " -> " + dto.getTitle());
-            report.setTitle(dto.getTitle());
-        }
-        if (dto.getContent() != null) {
-            log.trace("Update content for Report with id " + id + ":" + report.getContent().toString() +
-                              " -> " + dto.getContent().toString());
-            report.setContent(dto.getContent());
-        }
-        if (dto.getFiles() != null) {
-            log.trace("Update files for Report with id " + id + ":" + report.getFiles().toString() +
-                              " -> " + dto.getFiles().toString());
-            report.setFiles(dto.getFiles());
-        }
-        if (dto.getSubmitted() != null) {
-            log.trace("Update submitted for Report with id " + id + ":" + report.isSubmitted() +
-                              " -> " + dto.getSubmitted());
-            report.setSubmitted(dto.getSubmitted());
-        }
+            if (dto.getTitle() != null) {
+                log.trace("Update title for Report " + id + ":" + report.getTitle() +
+                                  " -> " + dto.getTitle());
+                report.setTitle(dto.getTitle());
+            }
+            if (dto.getContent() != null) {
+                // 正文为延迟加载, 仅在需要输出时读取旧值
+                if (log.isTraceEnabled()) {
+                    log.trace("Update content for Report with id " + id + ":" + report.getBody().getContent().toString() +
+                                      " -> " + dto.getContent().toString());
+                }
+                report.getBody().setContent(dto.getContent());
+            }
+            if (dto.getFiles() != null) {
+                if (log.isTraceEnabled()) {
+                    log.trace("Update files for Report with id " + id + ":" + report.getFiles().toString() +
+                                      " -> " + dto.getFiles().toString());
+                }
+                report.setFiles(dto.getFiles());
+            }
+            if (dto.getSubmitted() != null) {
+                log.trace("Update submitted for Report with id " + id + ":" + report.isSubmitted() +
+                                  " -> " + dto.getSubmitted());
+                report.setSubmitted(dto.getSubmitted());
+            }
 
-        return reportRepository.save(report);
+            return reportRepository.save(report);
+        });
     }
 }
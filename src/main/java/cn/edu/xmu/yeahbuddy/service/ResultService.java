@@ -4,16 +4,22 @@ import cn.edu.xmu.yeahbuddy.domain.Report;
 import cn.edu.xmu.yeahbuddy.domain.Result;
 import cn.edu.xmu.yeahbuddy.domain.Team;
 import cn.edu.xmu.yeahbuddy.domain.repo.ResultRepository;
+import cn.edu.xmu.yeahbuddy.model.KeysetPage;
+import cn.edu.xmu.yeahbuddy.model.ResultDetail;
 import cn.edu.xmu.yeahbuddy.model.ResultDto;
+import cn.edu.xmu.yeahbuddy.model.ResultSummary;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierAlreadyExistsException;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierNotExistsException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,15 +31,19 @@ public class ResultService {
 
     private final ResultRepository resultRepository;
 
+    private final LockingUpdateService lockingUpdateService;
+
     /**
      * 构造函数
      * Spring Boot自动装配
      *
-     * @param resultRepository Autowired
+     * @param resultRepository     Autowired
+     * @param lockingUpdateService Autowired
      */
     @Autowired
-    public ResultService(ResultRepository resultRepository) {
+    public ResultService(ResultRepository resultRepository, LockingUpdateService lockingUpdateService) {
         this.resultRepository = resultRepository;
+        this.lockingUpdateService = lockingUpdateService;
     }
 
     /**
@@ -48,6 +58,19 @@ public class ResultService {
         return resultRepository.findById(id);
     }
 
+    /**
+     * 查找综合评审报告详情
+     * 结果与项目报告正文在事务中读出, 供页面直接渲染
+     *
+     * @param id 评审报告报告主键
+     * @return 评审报告详情
+     */
+    @Transactional(readOnly = true)
+    public Optional<ResultDetail> findDetailById(int id) {
+        log.debug("Finding Result detail with key " + id);
+        return resultRepository.findDetailById(id).map(ResultDetail::new);
+    }
+
     /**
      * 查找评审报告
      *
@@ -69,12 +92,28 @@ public class ResultService {
     public List<Result> findBySubmittedFalse(){ return resultRepository.findBySubmittedFalse(); }
 
     /**
-     * 查找评审完的评审报告
+     * 查找未评审完的评审报告的列表项
+     * 只查询列表显示的字段
      *
-     * @return 评审报告
+     * @return 评审报告列表项
+     */
+    @Transactional(readOnly = true)
+    public List<ResultSummary> findSummariesBySubmittedFalse() {
+        return resultRepository.findSummariesBySubmittedFalse();
+    }
+
+    /**
+     * 分页查找评审完的评审报告列表项, 按主键从新到旧
+     *
+     * @param before 上一页最后一项的主键, 为null时查找第一页
+     * @param size   每页条数
+     * @return 一页评审报告列表项
      */
     @Transactional(readOnly = true)
-    public List<Result> findBySubmittedTrue(){ return resultRepository.findBySubmittedTrue(); }
+    public KeysetPage<ResultSummary> findSubmittedPage(@Nullable Integer before, int size) {
+        int from = before == null ? Integer.MAX_VALUE : before;
+        return KeysetPage.of(resultRepository.findSummariesBySubmittedTrueBefore(from, KeysetPage.pageable(size)), size);
+    }
 
 
     /**
@@ -109,6 +148,26 @@ public class ResultService {
         return result;
     }
 
+    /**
+     * 批量新建综合评审报告
+     * <p>
+     * 只用于刚保存的项目报告, 不再逐个检查是否已存在
+     *
+     * @param reports 新建的项目报告
+     * @return 新建的综合评审报告
+     */
+    @Transactional
+    public List<Result> createResults(Collection<Report> reports) {
+        log.debug("Trying to create " + reports.size() + " Results");
+        List<Result> results = new ArrayList<>(reports.size());
+        for (Report report : reports) {
+            results.add(new Result(report, "未评审"));
+        }
+        results = resultRepository.saveAll(results);
+        log.debug("Created " + results.size() + " Results");
+        return results;
+    }
+
     /**
      * 删除团队综合评审报告
      *
@@ -120,33 +179,34 @@ public class ResultService {
         resultRepository.deleteById(id);
     }
 
-    @Transactional
     public Result updateResult(int id, ResultDto dto) {
         log.debug("Trying to update Result with id" + id);
-        Optional<Result> r = resultRepository.queryById(id);
-
-        if (!r.isPresent()) {
-            log.info("Failed to load Result " + id + ": not found");
-            throw new IdentifierNotExistsException("result.id.not_found", id);
-        }
-        Result result = r.get();
-        if (dto.getSubmitted() != null) {
-            log.trace("Updated submitted for Result with id " + id + ":" + result.isSubmitted() +
-                              " -> " + dto.getSubmitted());
-            result.setSubmitted(dto.getSubmitted());
-        }
-
-        if (dto.getContent() != null) {
-            log.trace("Updated content for Result with id " + id);
-            result.setContent(dto.getContent());
-        }
-
-        if (dto.getBrief() != null) {
-            log.trace("Updated rank for Result with id " + id + ":" + result.getBrief() +
-                              " -> " + dto.getBrief());
-            result.setBrief(dto.getBrief());
-        }
-
-        return resultRepository.save(result);
+        return lockingUpdateService.update(() -> {
+            Optional<Result> r = lockingUpdateService.load(() -> resultRepository.queryById(id), () -> resultRepository.findById(id));
+
+            if (!r.isPresent()) {
+                log.info("Failed to load Result " + id + ": not found");
+                throw new IdentifierNotExistsException("result.id.not_found", id);
+            }
+            Result result = r.get();
+            if (dto.getSubmitted() != null) {
+                log.trace("Updated submitted for Result with id " + id + ":" + result.isSubmitted() +
+                                  " -> " + dto.getSubmitted());
+                result.setSubmitted(dto.getSubmitted());
+            }
+
+            if (dto.getContent() != null) {
+                log.trace("Updated content for Result with id " + id);
+                result.getBody().setContent(dto.getContent());
+            }
+
+            if (dto.getBrief() != null) {
+                log.trace("Updated rank for Result with id " + id + ":" + result.getBrief() +
+                                  " -> " + dto.getBrief());
+                result.setBrief(dto.getBrief());
+            }
+
+            return resultRepository.save(result);
+        });
     }
 }
@@ -0,0 +1,122 @@
+package cn.edu.xmu.yeahbuddy.service;
+
+import cn.edu.xmu.yeahbuddy.domain.Report;
+import cn.edu.xmu.yeahbuddy.domain.Review;
+import cn.edu.xmu.yeahbuddy.domain.Stage;
+import cn.edu.xmu.yeahbuddy.domain.Token;
+import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import cn.edu.xmu.yeahbuddy.domain.repo.ReportRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.ReviewRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.TutorRepository;
+import cn.edu.xmu.yeahbuddy.utils.IdentifierAlreadyExistsException;
+import cn.edu.xmu.yeahbuddy.utils.IdentifierNotExistsException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NonNls;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 评审分配
+ * <p>
+ * 为一个阶段的若干团队报告与若干导师批量创建评审报告与登录Token
+ */
+@Service
+public class ReviewAssignmentService {
+
+    @NonNls
+    private static Log log = LogFactory.getLog(ReviewAssignmentService.class);
+
+    private final ReportRepository reportRepository;
+
+    private final TutorRepository tutorRepository;
+
+    private final ReviewRepository reviewRepository;
+
+    private final TokenService tokenService;
+
+    /**
+     * 构造函数
+     * Spring Boot自动装配
+     *
+     * @param reportRepository Autowired
+     * @param tutorRepository  Autowired
+     * @param reviewRepository Autowired
+     * @param tokenService     Autowired
+     */
+    @Autowired
+    public ReviewAssignmentService(ReportRepository reportRepository, TutorRepository tutorRepository,
+                                   ReviewRepository reviewRepository, TokenService tokenService) {
+        this.reportRepository = reportRepository;
+        this.tutorRepository = tutorRepository;
+        this.reviewRepository = reviewRepository;
+        this.tokenService = tokenService;
+    }
+
+    /**
+     * 分配评审
+     * <p>
+     * 导师与报告各用一条查询加载, 已有的(报告, 导师)对用一条查询检查,
+     * 每个导师对每份报告新建一份评审报告, 每个导师新建一个Token, 插入语句在提交时分批执行.
+     * 没有提交报告的团队被忽略.
+     *
+     * @param stage    阶段
+     * @param teamIds  团队ID
+     * @param tutorIds 导师ID
+     * @param end      Token结束时间
+     * @return 新建的Token, 每个导师一个
+     * @throws IdentifierNotExistsException     有导师找不到
+     * @throws IdentifierAlreadyExistsException 有导师已被分配评审其中的报告
+     */
+    @Transactional
+    public List<Token> assign(Stage stage, Collection<Integer> teamIds, Collection<Integer> tutorIds, Timestamp end)
+            throws IdentifierNotExistsException, IdentifierAlreadyExistsException {
+        log.debug("Trying to assign " + tutorIds.size() + " Tutors to " + teamIds.size() + " Teams in " + stage);
+        if (tutorIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Integer, Tutor> tutors = tutorRepository.findAllById(tutorIds)
+                                                   .stream().collect(Collectors.toMap(Tutor::getId, Function.identity()));
+        for (Integer id : tutorIds) {
+            if (!tutors.containsKey(id)) {
+                log.info("Fail to assign Reviews in " + stage + ": tutor " + id + " not found");
+                throw new IdentifierNotExistsException("tutor.id.not_found", id);
+            }
+        }
+        List<Report> reports = teamIds.isEmpty() ? Collections.emptyList() : reportRepository.findByStageAndTeam_IdIn(stage, teamIds);
+
+        if (!reports.isEmpty()) {
+            List<Object[]> existing = reviewRepository.findReportAndTutorIds(reports, tutors.values());
+            if (!existing.isEmpty()) {
+                String pairs = existing.stream().map(Arrays::toString).collect(Collectors.joining(", "));
+                log.info("Fail to assign Reviews in " + stage + ": " + pairs + " already exist");
+                throw new IdentifierAlreadyExistsException("review.id.exist", pairs);
+            }
+        }
+
+        List<Review> all = new ArrayList<>(reports.size() * tutors.size());
+        for (Tutor tutor : tutors.values()) {
+            for (Report report : reports) {
+                all.add(new Review(report, tutor));
+            }
+        }
+        all = reviewRepository.saveAll(all);
+
+        Map<Tutor, Set<Review>> reviews = new LinkedHashMap<>();
+        int i = 0;
+        for (Tutor tutor : tutors.values()) {
+            reviews.put(tutor, new HashSet<>(all.subList(i, i + reports.size())));
+            i += reports.size();
+        }
+
+        List<Token> tokens = tokenService.createTokens(reviews, end);
+        log.debug("Assigned " + all.size() + " Reviews with " + tokens.size() + " Tokens in " + stage);
+        return tokens;
+    }
+}
@@ -4,7 +4,10 @@ import cn.edu.xmu.yeahbuddy.domain.Report;
 import cn.edu.xmu.yeahbuddy.domain.Review;
 import cn.edu.xmu.yeahbuddy.domain.Tutor;
 import cn.edu.xmu.yeahbuddy.domain.repo.ReviewRepository;
+import cn.edu.xmu.yeahbuddy.model.ReportDetail;
+import cn.edu.xmu.yeahbuddy.model.ReviewDetail;
 import cn.edu.xmu.yeahbuddy.model.ReviewDto;
+import cn.edu.xmu.yeahbuddy.model.ReviewProgress;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierAlreadyExistsException;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierNotExistsException;
 import org.apache.commons.logging.Log;
@@ -14,8 +17,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * 评审服务
@@ -28,15 +33,19 @@ public class ReviewService {
 
     private final ReviewRepository reviewRepository;
 
+    private final LockingUpdateService lockingUpdateService;
+
     /**
      * 构造函数
      * Spring Boot自动装配
      *
-     * @param reviewRepository Autowired
+     * @param reviewRepository     Autowired
+     * @param lockingUpdateService Autowired
      */
     @Autowired
-    public ReviewService(ReviewRepository reviewRepository) {
+    public ReviewService(ReviewRepository reviewRepository, LockingUpdateService lockingUpdateService) {
         this.reviewRepository = reviewRepository;
+        this.lockingUpdateService = lockingUpdateService;
     }
 
     /**
@@ -51,6 +60,31 @@ public class ReviewService {
         return reviewRepository.findById(id);
     }
 
+    /**
+     * 查找评审报告详情
+     * 评审与项目报告正文在事务中读出, 供页面直接渲染
+     *
+     * @param id 评审报告报告主键
+     * @return 评审报告详情
+     */
+    @Transactional(readOnly = true)
+    public Optional<ReviewDetail> findDetailById(int id) {
+        log.debug("Finding Review detail with key " + id);
+        return reviewRepository.findDetailById(id).map(review -> new ReviewDetail(review, new ReportDetail(review.getReport())));
+    }
+
+    /**
+     * 按主键批量查找评审报告
+     *
+     * @param ids 评审报告主键
+     * @return 评审报告
+     */
+    @Transactional(readOnly = true)
+    public List<Review> findAllById(Collection<Integer> ids) {
+        log.debug("Finding Reviews with keys " + ids);
+        return reviewRepository.findByIdIn(ids);
+    }
+
     /**
      * 查找评审报告
      *
@@ -75,6 +109,32 @@ public class ReviewService {
         return reviewRepository.findByReport(report);
     }
 
+    /**
+     * 所有未完成的综合评审报告的导师评审进度
+     * 以一条聚合查询完成
+     *
+     * @return 导师评审进度
+     */
+    @Transactional(readOnly = true)
+    public List<ReviewProgress> findProgressOfOpenResults() {
+        return reviewRepository.findProgressOfOpenResults();
+    }
+
+    /**
+     * 查找报告已提交的评审报告详情
+     * 导师与评审正文在事务中读出, 供页面直接渲染
+     *
+     * @param reportId 报告主键
+     * @return 已提交的评审报告详情
+     */
+    @Transactional(readOnly = true)
+    public List<ReviewDetail> findSubmittedByReport(int reportId) {
+        return reviewRepository.findSubmittedByReportId(reportId)
+                               .stream()
+                               .map(ReviewDetail::new)
+                               .collect(Collectors.toList());
+    }
+
     /**
      * 查找某导师的所有评审报告
      *
@@ -86,6 +146,17 @@ public class ReviewService {
         return reviewRepository.findByTutor(tutor);
     }
 
+    /**
+     * 按导师ID查找某导师的所有评审报告
+     *
+     * @param tutorId 导师ID
+     * @return 所有评审报告
+     */
+    @Transactional(readOnly = true)
+    public List<Review> findByTutorId(int tutorId) {
+        return reviewRepository.findByTutorId(tutorId);
+    }
+
     /**
      * 新建评审报告
      *
@@ -118,33 +189,34 @@ public class ReviewService {
         reviewRepository.deleteById(id);
     }
 
-    @Transactional
     public Review updateReview(int id, ReviewDto dto) {
         log.debug("Trying to update Review with id" + id);
-        Optional<Review> r = reviewRepository.queryById(id);
-
-        if (!r.isPresent()) {
-            log.info("Failed to load Report " + id + ": not found");
-            throw new IdentifierNotExistsException("review.id.not_found", id);
-        }
-        Review review = r.get();
-        if (dto.getSubmitted() != null) {
-            log.trace("Updated submitted for Review with id " + id + ":" + review.isSubmitted() +
-                              " -> " + dto.getSubmitted());
-            review.setSubmitted(dto.getSubmitted());
-        }
-
-        if (dto.getContent() != null) {
-            log.trace("Updated content for Review with id " + id);
-            review.setContent(dto.getContent());
-        }
-
-        if (dto.getRank() != null) {
-            log.trace("Updated submitted for Review with id " + id + ":" + review.getRank() +
-                              " -> " + dto.getRank());
-            review.setRank(dto.getRank());
-        }
-
-        return reviewRepository.save(review);
+        return lockingUpdateService.update(() -> {
+            Optional<Review> r = lockingUpdateService.load(() -> reviewRepository.queryById(id), () -> reviewRepository.findById(id));
+
+            if (!r.isPresent()) {
+                log.info("Failed to load Report " + id + ": not found");
+                throw new IdentifierNotExistsException("review.id.not_found", id);
+            }
+            Review review = r.get();
+            if (dto.getSubmitted() != null) {
+                log.trace("Updated submitted for Review with id " + id + ":" + review.isSubmitted() +
+                                  " -> " + dto.getSubmitted());
+                review.setSubmitted(dto.getSubmitted());
+            }
+
+            if (dto.getContent() != null) {
+                log.trace("Updated content for Review with id " + id);
+                review.getBody().setContent(dto.getContent());
+            }
+
+            if (dto.getRank() != null) {
+                log.trace("Updated submitted for Review with id " + id + ":" + review.getRank() +
+                                  " -> " + dto.getRank());
+                review.setRank(dto.getRank());
+            }
+
+            return reviewRepository.save(review);
+        });
     }
 }
@@ -1,8 +1,13 @@
 package cn.edu.xmu.yeahbuddy.service;
 
+import cn.edu.xmu.yeahbuddy.config.ReadWriteRoutingDataSource;
 import cn.edu.xmu.yeahbuddy.domain.Team;
 import cn.edu.xmu.yeahbuddy.domain.repo.TeamRepository;
+import cn.edu.xmu.yeahbuddy.model.KeysetPage;
 import cn.edu.xmu.yeahbuddy.model.TeamDto;
+import cn.edu.xmu.yeahbuddy.model.TeamListItem;
+import cn.edu.xmu.yeahbuddy.model.TeamSummary;
+import cn.edu.xmu.yeahbuddy.model.SessionPrincipal;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierAlreadyExistsException;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierNotExistsException;
 import org.apache.commons.logging.Log;
@@ -10,19 +15,23 @@ import org.apache.commons.logging.LogFactory;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Optional;
 
 @Service
-public class TeamService implements UserDetailsService {
+public class TeamService implements UpgradableUserDetailsService {
 
     @NonNls
     private static Log log = LogFactory.getLog(TeamService.class);
@@ -31,33 +40,42 @@ public class TeamService implements UserDetailsService {
 
     private final TeamRepository teamRepository;
 
+    private final TransactionTemplate transactionTemplate;
+
+    private final LockingUpdateService lockingUpdateService;
+
     /**
      * 构造函数
      * Spring Boot自动装配
      *
      * @param teamRepository          Autowired
      * @param ybPasswordEncodeService Autowired
+     * @param transactionManager      Autowired
+     * @param lockingUpdateService    Autowired
      */
     @Autowired
-    public TeamService(TeamRepository teamRepository, YbPasswordEncodeService ybPasswordEncodeService) {
+    public TeamService(TeamRepository teamRepository, YbPasswordEncodeService ybPasswordEncodeService, PlatformTransactionManager transactionManager,
+                       LockingUpdateService lockingUpdateService) {
         this.teamRepository = teamRepository;
         this.ybPasswordEncodeService = ybPasswordEncodeService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lockingUpdateService = lockingUpdateService;
     }
 
     /**
-     * 强制转换对象至Team
+     * 转换Team或登录后的会话用户至{@link SessionPrincipal}
      * 用于SpEL
      *
      * @param obj 对象
-     * @return 强制转换为Team的对象
+     * @return 会话用户
      */
     @Contract(pure = true)
-    public static Team asTeam(Object obj) {
-        return ((Team) obj);
+    public static SessionPrincipal asTeam(Object obj) {
+        return SessionPrincipal.of(obj);
     }
 
     /**
-     * 对象是否为Team
+     * 对象是否为Team或Team的会话用户
      * 用于SpEL
      *
      * @param obj 对象
@@ -65,7 +83,8 @@ public class TeamService implements UserDetailsService {
      */
     @Contract(pure = true)
     public static boolean isTeam(Object obj) {
-        return obj instanceof Team;
+        return obj instanceof Team
+                       || (obj instanceof SessionPrincipal && ((SessionPrincipal) obj).getRole() == SessionPrincipal.Role.TEAM);
     }
 
     /**
@@ -79,7 +98,7 @@ public class TeamService implements UserDetailsService {
     @Transactional(readOnly = true)
     public Team loadUserByUsername(String username) throws UsernameNotFoundException {
         log.debug("Trying to load Team " + username);
-        Optional<Team> team = teamRepository.findByUsername(username);
+        Optional<Team> team = ReadWriteRoutingDataSource.usePrimary(() -> teamRepository.findByUsername(username));
         if (!team.isPresent()) {
             log.info("Failed to load Team " + username + ": not found");
             throw new UsernameNotFoundException(username);
@@ -132,12 +151,26 @@ public class TeamService implements UserDetailsService {
     }
 
     /**
-     * 查找所有团队
+     * 查找所有团队的ID与显示名
      *
-     * @return 所有团队
+     * @return 所有团队列表项
      */
-    public List<Team> findAllTeams() {
-        return teamRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<TeamSummary> findAllTeamSummaries() {
+        return teamRepository.findAllSummaries();
+    }
+
+    /**
+     * 按主键顺序分页查找团队列表项
+     *
+     * @param after 上一页最后一项的主键, 为null时查找第一页
+     * @param size  每页条数
+     * @return 一页团队列表项
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<TeamListItem> findTeamPage(@Nullable Integer after, int size) {
+        int from = after == null ? Integer.MIN_VALUE : after;
+        return KeysetPage.of(teamRepository.findListItemsAfter(from, KeysetPage.pageable(size)), size);
     }
 
     /**
@@ -148,7 +181,6 @@ public class TeamService implements UserDetailsService {
      * @throws IdentifierAlreadyExistsException 用户名已存在
      * @throws IllegalArgumentException         DTO中未填满所需信息
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ManageTeam')")
     public Team registerNewTeam(TeamDto dto) throws IdentifierAlreadyExistsException {
         log.debug("Trying to register new Team " + dto.getUsername());
@@ -163,13 +195,23 @@ public class TeamService implements UserDetailsService {
             throw new IdentifierAlreadyExistsException("team.username.exist", dto.getUsername());
         }
 
-        Team team = new Team(dto.getUsername(), ybPasswordEncodeService.encode(dto.getPassword()));
-        team.setEmail(dto.getEmail());
-        team.setPhone(dto.getPhone());
-        team.setProjectName(dto.getProjectName());
-        team.setDisplayName(dto.getDisplayName());
+        // 在事务外计算密码哈希
+        String encoded = ybPasswordEncodeService.encode(dto.getPassword());
+
+        Team result = transactionTemplate.execute(status -> {
+            if (teamRepository.findByUsername(dto.getUsername()).isPresent()) {
+                log.info("Failed to register Team " + dto.getUsername() + ": username already exist");
+                throw new IdentifierAlreadyExistsException("team.username.exist", dto.getUsername());
+            }
+
+            Team team = new Team(dto.getUsername(), encoded);
+            team.setEmail(dto.getEmail());
+            team.setPhone(dto.getPhone());
+            team.setProjectName(dto.getProjectName());
+            team.setDisplayName(dto.getDisplayName());
 
-        Team result = teamRepository.save(team);
+            return teamRepository.save(team);
+        });
         log.debug("Registered new Team " + result.toString());
         return result;
     }
@@ -195,48 +237,49 @@ public class TeamService implements UserDetailsService {
      * @return 修改后的团队
      * @throws IdentifierAlreadyExistsException 如果修改用户名，用户名已存在
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ManageTeam') " +
                           "|| (T(cn.edu.xmu.yeahbuddy.service.TeamService).isTeam(principal) && T(cn.edu.xmu.yeahbuddy.service.TeamService).asTeam(principal).id == #id)")
     public Team updateTeam(int id, TeamDto dto) {
         log.debug("Trying to update Team " + id);
-        Team team = loadForUpdate(id);
+        return lockingUpdateService.update(() -> {
+            Team team = loadForUpdate(id);
 
-        if (dto.getDisplayName() != null) {
-            log.trace("Updated display name for Team " + id + ":" + team.getDisplayName() +
-                              " -> " + dto.getDisplayName());
-            team.setDisplayName(dto.getDisplayName());
-        }
+            if (dto.getDisplayName() != null) {
+                log.trace("Updated display name for Team " + id + ":" + team.getDisplayName() +
+                                  " -> " + dto.getDisplayName());
+                team.setDisplayName(dto.getDisplayName());
+            }
 
-        if (dto.getEmail() != null) {
-            log.trace("Updated email for Team " + id + ":" + team.getEmail() +
-                              " -> " + dto.getEmail());
-            team.setEmail(dto.getEmail());
-        }
+            if (dto.getEmail() != null) {
+                log.trace("Updated email for Team " + id + ":" + team.getEmail() +
+                                  " -> " + dto.getEmail());
+                team.setEmail(dto.getEmail());
+            }
 
-        if (dto.getPhone() != null) {
-            log.trace("Updated phone for Team " + id + ":" + team.getPhone() +
-                              " -> " + dto.getPhone());
-            team.setPhone(dto.getPhone());
-        }
+            if (dto.getPhone() != null) {
+                log.trace("Updated phone for Team " + id + ":" + team.getPhone() +
+                                  " -> " + dto.getPhone());
+                team.setPhone(dto.getPhone());
+            }
 
-        if (dto.getProjectName() != null) {
-            log.trace("Updated project name for Team " + id + ":" + team.getProjectName() +
-                              " -> " + dto.getProjectName());
-            team.setProjectName(dto.getProjectName());
-        }
+            if (dto.getProjectName() != null) {
+                log.trace("Updated project name for Team " + id + ":" + team.getProjectName() +
+                                  " -> " + dto.getProjectName());
+                team.setProjectName(dto.getProjectName());
+            }
 
-        if (dto.getUsername() != null && !dto.getUsername().equals(team.getUsername())) {
-            if (teamRepository.findByUsername(dto.getUsername()).isPresent()) {
-                log.info("Failed to update username for Team " + team.getUsername() + ": username already exist");
-                throw new IdentifierAlreadyExistsException("team.username.exist", dto.getUsername());
-            } else {
-                log.trace("Updated username for Team " + id + ":" + team.getUsername() +
-                                  " -> " + dto.getUsername());
-                team.setUsername(dto.getUsername());
+            if (dto.getUsername() != null && !dto.getUsername().equals(team.getUsername())) {
+                if (teamRepository.findByUsername(dto.getUsername()).isPresent()) {
+                    log.info("Failed to update username for Team " + team.getUsername() + ": username already exist");
+                    throw new IdentifierAlreadyExistsException("team.username.exist", dto.getUsername());
+                } else {
+                    log.trace("Updated username for Team " + id + ":" + team.getUsername() +
+                                      " -> " + dto.getUsername());
+                    team.setUsername(dto.getUsername());
+                }
             }
-        }
-        return teamRepository.save(team);
+            return teamRepository.save(team);
+        });
     }
 
     /**
@@ -249,22 +292,21 @@ public class TeamService implements UserDetailsService {
      * @return 修改后的团队
      * @throws BadCredentialsException 原密码不正确
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ManageTeam') " +
                           "|| (T(cn.edu.xmu.yeahbuddy.service.TeamService).isTeam(principal) && T(cn.edu.xmu.yeahbuddy.service.TeamService).asTeam(principal).id == #id)")
     public Team updateTeamPassword(int id, CharSequence oldPassword, String newPassword) throws BadCredentialsException {
         log.info("Trying to update password for Team " + id);
 
-        Team team = loadForUpdate(id);
+        String current = loadPassword(id);
 
-        if (ybPasswordEncodeService.matches(oldPassword, team.getPassword())) {
-            team.setPassword(ybPasswordEncodeService.encode(newPassword));
-            log.info("Updated password for Team " + id);
-            return teamRepository.save(team);
-        } else {
+        if (!ybPasswordEncodeService.matches(oldPassword, current)) {
             log.warn("Failed to update password for Team " + id + ": old password doesn't match");
             throw new BadCredentialsException("team.update.password");
         }
+
+        Team result = savePassword(id, current, ybPasswordEncodeService.encode(newPassword));
+        log.info("Updated password for Team " + id);
+        return result;
     }
 
     /**
@@ -275,17 +317,79 @@ public class TeamService implements UserDetailsService {
      * @param newPassword 新密码
      * @return 修改后的团队
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ResetPassword') && hasAuthority('ManageTeam')")
     public Team resetTeamPassword(int id, String newPassword) {
-        Team team = loadForUpdate(id);
+        String encoded = ybPasswordEncodeService.encode(newPassword);
         log.info("Reset password for Team " + id);
-        team.setPassword(ybPasswordEncodeService.encode(newPassword));
-        return teamRepository.save(team);
+        return savePassword(id, null, encoded);
+    }
+
+    /**
+     * 登录成功后升级密码密文 提供{@link UpgradableUserDetailsService#upgradePassword(UserDetails, CharSequence)}
+     *
+     * @param user        已通过校验的团队
+     * @param rawPassword 密码明文
+     */
+    @Override
+    public void upgradePassword(UserDetails user, CharSequence rawPassword) {
+        int id = ((Team) user).getId();
+        String encoded = ybPasswordEncodeService.encode(rawPassword);
+
+        lockingUpdateService.update(() -> {
+            Team team = loadForUpdate(id);
+            if (!team.getPassword().equals(user.getPassword())) {
+                log.debug("Skipped password upgrade for Team " + id + ": password changed or already upgraded");
+                return null;
+            }
+            team.setPassword(encoded);
+            log.info("Upgraded password hash for Team " + id);
+            return teamRepository.save(team);
+        });
+    }
+
+    /**
+     * 读取当前密码密文, 不加锁
+     *
+     * @param id 团队ID
+     * @return 密码密文
+     */
+    @NotNull
+    private String loadPassword(int id) {
+        Optional<Team> t = teamRepository.findById(id);
+
+        if (!t.isPresent()) {
+            log.info("Failed to load Team id" + id + ": not found");
+            throw new IdentifierNotExistsException("team.id.not_found", id);
+        }
+
+        return t.get().getPassword();
+    }
+
+    /**
+     * 读取并写入新密码密文
+     * 密码哈希应在调用前完成, 事务内只有一次读取与一次UPDATE
+     *
+     * @param id       团队ID
+     * @param expected 校验原密码时读取的密文, 不为null时若已被修改则失败
+     * @param encoded  新密码密文
+     * @return 修改后的团队
+     * @throws BadCredentialsException 校验后密码已被修改
+     */
+    @NotNull
+    private Team savePassword(int id, @Nullable String expected, String encoded) {
+        return lockingUpdateService.update(() -> {
+            Team team = loadForUpdate(id);
+            if (expected != null && !expected.equals(team.getPassword())) {
+                log.warn("Failed to update password for Team " + id + ": password changed concurrently");
+                throw new BadCredentialsException("team.update.password");
+            }
+            team.setPassword(encoded);
+            return teamRepository.save(team);
+        });
     }
 
     /**
-     * 查找并加写锁
+     * 查找待修改的用户, 悲观模式下加写锁
      * 用于读取并修改
      *
      * @param id 团队ID
@@ -293,7 +397,7 @@ public class TeamService implements UserDetailsService {
      */
     @NotNull
     private Team loadForUpdate(int id) {
-        Optional<Team> t = teamRepository.queryById(id);
+        Optional<Team> t = lockingUpdateService.load(() -> teamRepository.queryById(id), () -> teamRepository.findById(id));
 
         if (!t.isPresent()) {
             log.info("Failed to load Team id" + id + ": not found");
@@ -0,0 +1,42 @@
+package cn.edu.xmu.yeahbuddy.service;
+
+import org.jetbrains.annotations.Contract;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 登录Token到期或被吊销
+ * <p>
+ * 由{@link TokenService}在时间轮到期或吊销Token时发布, 监听者据此清理与Token相关的会话等状态.
+ */
+public class TokenExpiredEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = -3263117436905381279L;
+
+    private final List<String> tokenValues;
+
+    private final boolean revoked;
+
+    /**
+     * @param source      事件源
+     * @param tokenValues 到期的Token值
+     * @param revoked     是否为提前吊销
+     */
+    public TokenExpiredEvent(Object source, List<String> tokenValues, boolean revoked) {
+        super(source);
+        this.tokenValues = Collections.unmodifiableList(tokenValues);
+        this.revoked = revoked;
+    }
+
+    @Contract(pure = true)
+    public List<String> getTokenValues() {
+        return tokenValues;
+    }
+
+    @Contract(pure = true)
+    public boolean isRevoked() {
+        return revoked;
+    }
+}
@@ -1,27 +1,64 @@
 package cn.edu.xmu.yeahbuddy.service;
 
+import cn.edu.xmu.yeahbuddy.config.ReadWriteRoutingDataSource;
+import cn.edu.xmu.yeahbuddy.domain.AccessTokenRevocation;
 import cn.edu.xmu.yeahbuddy.domain.Review;
 import cn.edu.xmu.yeahbuddy.domain.Token;
 import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import cn.edu.xmu.yeahbuddy.domain.TutorAccessRevocation;
+import cn.edu.xmu.yeahbuddy.domain.repo.AccessTokenRevocationRepository;
 import cn.edu.xmu.yeahbuddy.domain.repo.TokenRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.TutorAccessRevocationRepository;
+import cn.edu.xmu.yeahbuddy.model.KeysetPage;
+import cn.edu.xmu.yeahbuddy.model.TokenListItem;
+import cn.edu.xmu.yeahbuddy.model.ValidatedToken;
+import cn.edu.xmu.yeahbuddy.utils.AccessTokenRevocationList;
+import cn.edu.xmu.yeahbuddy.utils.HashedTimingWheel;
+import cn.edu.xmu.yeahbuddy.utils.IdentifierNotExistsException;
 import cn.edu.xmu.yeahbuddy.utils.PasswordUtils;
+import cn.edu.xmu.yeahbuddy.utils.SignedAccessTokenCodec;
+import cn.edu.xmu.yeahbuddy.utils.TokenIndex;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.util.Pair;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 /**
  * 导师登录Token服务
@@ -32,41 +69,191 @@ public class TokenService {
     @NonNls
     private static Log log = LogFactory.getLog(TokenService.class);
 
+    private static final char[] TOKEN_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+    private static final int TOKEN_LENGTH = 24;
+
     private final TokenRepository tokenRepository;
 
     private final TutorService tutorService;
 
+    private final AccessTokenRevocationRepository accessTokenRevocationRepository;
+
+    private final TutorAccessRevocationRepository tutorAccessRevocationRepository;
+
+    private final TokenIndex tokenIndex;
+
+    private final boolean accessTokenEnabled;
+
+    private final SignedAccessTokenCodec accessTokenCodec;
+
+    private final AccessTokenRevocationList revocationList;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final HashedTimingWheel<String> expiryWheel;
+
+    private final LongAdder expired = new LongAdder();
+
+    private final ApplicationEventPublisher eventPublisher;
+
     /**
      * 构造函数
      * Spring Boot自动装配
      *
-     * @param tokenRepository Autowired
-     * @param tutorService    Autowired
+     * @param tokenRepository                 Autowired
+     * @param tutorService                    Autowired
+     * @param accessTokenRevocationRepository Autowired
+     * @param tutorAccessRevocationRepository Autowired
+     * @param indexSize                       Token索引容量
+     * @param negativeSize                    无效Token缓存容量
+     * @param negativeTtlSeconds              无效Token缓存存活时间(秒)
+     * @param accessTokenEnabled              是否以签名访问链接代替Token登录链接
+     * @param accessTokenSecret               签名密钥(Base64), 为空时使用随机密钥, 重启后已签发的链接失效
+     *                                        吊销记录保存在数据库中, 重启后仍然有效
+     * @param purgeThreshold                  吊销列表清理阈值
+     * @param tickMillis                      到期时间轮刻度(毫秒)
+     * @param wheelSize                       到期时间轮槽数
+     * @param eventPublisher                  Autowired
      */
     @Autowired
-    public TokenService(TokenRepository tokenRepository, TutorService tutorService) {
+    public TokenService(TokenRepository tokenRepository, TutorService tutorService,
+                        AccessTokenRevocationRepository accessTokenRevocationRepository,
+                        TutorAccessRevocationRepository tutorAccessRevocationRepository,
+                        @Value("${yeahbuddy.token-index.max-size:10000}") int indexSize,
+                        @Value("${yeahbuddy.token-index.negative-max-size:10000}") int negativeSize,
+                        @Value("${yeahbuddy.token-index.negative-ttl-seconds:60}") long negativeTtlSeconds,
+                        @Value("${yeahbuddy.access-token.enabled:false}") boolean accessTokenEnabled,
+                        @Value("${yeahbuddy.access-token.secret:}") String accessTokenSecret,
+                        @Value("${yeahbuddy.access-token.revocation-purge-threshold:10000}") int purgeThreshold,
+                        @Value("${yeahbuddy.token-expiry.tick-millis:1000}") long tickMillis,
+                        @Value("${yeahbuddy.token-expiry.wheel-size:512}") int wheelSize,
+                        ApplicationEventPublisher eventPublisher) {
         this.tokenRepository = tokenRepository;
         this.tutorService = tutorService;
+        this.accessTokenRevocationRepository = accessTokenRevocationRepository;
+        this.tutorAccessRevocationRepository = tutorAccessRevocationRepository;
+        this.tokenIndex = new TokenIndex(indexSize, negativeSize, negativeTtlSeconds);
+        this.accessTokenEnabled = accessTokenEnabled;
+        byte[] secret;
+        if (accessTokenSecret.trim().isEmpty()) {
+            log.warn("yeahbuddy.access-token.secret not set, signed access links will not survive restart");
+            secret = PasswordUtils.generateSalt(32);
+        } else {
+            secret = Base64.getDecoder().decode(accessTokenSecret.trim());
+        }
+        this.accessTokenCodec = new SignedAccessTokenCodec(secret);
+        this.revocationList = new AccessTokenRevocationList(purgeThreshold);
+        this.expiryWheel = new HashedTimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 生成Token值
+     * <p>
+     * 从62个字母和数字中逐位随机选取, 不需要反复生成Base64再检查是否含有其他字符
+     *
+     * @return 24位Token值
+     */
+    private String generateTokenValue() {
+        char[] value = new char[TOKEN_LENGTH];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = TOKEN_ALPHABET[random.nextInt(TOKEN_ALPHABET.length)];
+        }
+        return new String(value);
+    }
+
+    /**
+     * 启动时把未到期的Token放入到期时间轮
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void loadExpiryWheel() {
+        List<Object[]> expiries = tokenRepository.findExpiriesAfter(Timestamp.from(Instant.now()));
+        for (Object[] row : expiries) {
+            expiryWheel.schedule((String) row[0], ((Timestamp) row[1]).getTime());
+        }
+        log.info("Scheduled expiry of " + expiries.size() + " Token(s)");
+    }
+
+    /**
+     * 启动时删除已过期的访问Token吊销记录, 并把其余记录放入吊销列表
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void loadRevocationList() {
+        int purged = accessTokenRevocationRepository.deleteExpired(Timestamp.from(Instant.now()));
+        log.info("Purged " + purged + " expired access token revocation(s)");
+        refreshRevocationList();
     }
 
     /**
-     * 查找所有Token
+     * 从数据库读入访问Token吊销记录
+     * 吊销列表只增不减, 定时读入以获得其他节点写入的记录
+     */
+    @Scheduled(fixedDelayString = "${yeahbuddy.access-token.revocation-refresh-millis:30000}")
+    public void refreshRevocationList() {
+        List<AccessTokenRevocation> revocations = accessTokenRevocationRepository.findByExpiresAtAfter(Timestamp.from(Instant.now()));
+        for (AccessTokenRevocation revocation : revocations) {
+            revocationList.revoke(revocation.getId(), revocation.getExpiresAt().toInstant().getEpochSecond());
+        }
+        List<TutorAccessRevocation> tutors = tutorAccessRevocationRepository.findAll();
+        for (TutorAccessRevocation revocation : tutors) {
+            revocationList.revokeTutor(revocation.getTutorId(), revocation.getBefore().toInstant().getEpochSecond());
+        }
+        log.debug("Loaded " + revocations.size() + " access token revocation(s) and " + tutors.size() + " Tutor revocation(s)");
+    }
+
+    /**
+     * 推进到期时间轮, 从索引中移除到期的Token并发布{@link TokenExpiredEvent}
+     */
+    @Scheduled(fixedDelayString = "${yeahbuddy.token-expiry.tick-millis:1000}")
+    public void expireTokens() {
+        List<String> tokenValues = expiryWheel.advance(System.currentTimeMillis());
+        if (tokenValues.isEmpty()) {
+            return;
+        }
+        tokenValues.forEach(tokenIndex::revoke);
+        expired.add(tokenValues.size());
+        log.debug("Expired " + tokenValues.size() + " Token(s)");
+        eventPublisher.publishEvent(new TokenExpiredEvent(this, tokenValues, false));
+    }
+
+    /**
+     * 按Token值查找Token
+     *
+     * @param tokenStr Token值
+     * @return Token
+     */
+    @Transactional(readOnly = true)
+    public Optional<Token> findById(@NonNls String tokenStr) {
+        return tokenRepository.findById(tokenStr);
+    }
+
+    /**
+     * 查找所有未失效的Token列表项
+     * 只读取列表页显示的字段, 不加载导师与评议实体
      *
-     * @return 所有Token
+     * @return 未失效的Token列表项
      */
     @Transactional(readOnly = true)
-    public List<Token> findAllTokens() {
-        return tokenRepository.findAll();
+    public List<TokenListItem> findNotRevokedListItems() {
+        return tokenRepository.findActiveListItems(Timestamp.from(Instant.now()));
     }
 
     /**
-     * 查找所有失效的Token
+     * 分页查找失效的Token列表项, 按结束时间从近到远
+     * 下一页从上一页最后一项的(结束时间, Token值)之后开始
      *
-     * @return 所有失效的Token
+     * @param afterEnd        上一页最后一项的结束时间, 为null时查找第一页
+     * @param afterTokenValue 上一页最后一项的Token值
+     * @param size            每页条数
+     * @return 一页失效的Token列表项
      */
     @Transactional(readOnly = true)
-    public List<Token> findByRevoked() {
-        return tokenRepository.findByEndBefore(Timestamp.from(Instant.now()));
+    public KeysetPage<TokenListItem> findRevokedPage(@Nullable Timestamp afterEnd, @Nullable String afterTokenValue, int size) {
+        if (afterEnd == null || afterTokenValue == null) {
+            return KeysetPage.of(tokenRepository.findRevokedListItems(Timestamp.from(Instant.now()), KeysetPage.pageable(size)), size);
+        }
+        return KeysetPage.of(tokenRepository.findRevokedListItemsAfter(afterEnd, afterTokenValue, KeysetPage.pageable(size)), size);
     }
 
     /**
@@ -90,7 +277,7 @@ public class TokenService {
     @Transactional(readOnly = true)
     public Pair<Tutor, Token> loadAndValidateToken(@NonNls String tokenStr) throws UsernameNotFoundException, BadCredentialsException {
         log.debug("Trying to load Token " + tokenStr);
-        Optional<Token> tok = tokenRepository.findById(tokenStr);
+        Optional<Token> tok = ReadWriteRoutingDataSource.usePrimary(() -> tokenRepository.findById(tokenStr));
         if (!tok.isPresent()) {
             log.info("Failed to load Token " + tokenStr + ": not found");
             throw new UsernameNotFoundException(tokenStr);
@@ -105,6 +292,75 @@ public class TokenService {
         return Pair.of(tutor, token);
     }
 
+    /**
+     * 按登录Token值认证导师, 用于Token登录
+     * Token与导师均命中缓存时不查询数据库
+     *
+     * @param tokenStr 登录Token值
+     * @return 导师与Token快照
+     * @throws UsernameNotFoundException 找不到Token或导师
+     * @throws BadCredentialsException   Token已经被吊销
+     */
+    public Pair<Tutor, ValidatedToken> authenticateToken(@NonNls String tokenStr) throws UsernameNotFoundException, BadCredentialsException {
+        ValidatedToken token = validateToken(tokenStr);
+        try {
+            return Pair.of(tutorService.loadById(token.getTutorId()), token);
+        } catch (IdentifierNotExistsException e) {
+            log.info("Failed to load Token " + tokenStr + ": Tutor " + token.getTutorId() + " not found");
+            tokenIndex.invalidate(tokenStr);
+            throw new UsernameNotFoundException(tokenStr);
+        }
+    }
+
+    /**
+     * 按登录Token值验证Token
+     * 先查内存索引与无效Token缓存, 未命中时查询数据库并写入
+     *
+     * @param tokenStr 登录Token值
+     * @return Token快照
+     * @throws UsernameNotFoundException 找不到Token
+     * @throws BadCredentialsException   Token已经被吊销
+     */
+    public ValidatedToken validateToken(@NonNls String tokenStr) throws UsernameNotFoundException, BadCredentialsException {
+        switch (tokenIndex.lookup(tokenStr)) {
+            case VALID:
+                ValidatedToken cached = tokenIndex.get(tokenStr);
+                if (cached != null) {
+                    log.debug("Loaded Token " + tokenStr + " from index");
+                    return cached;
+                }
+                break;
+            case NOT_FOUND:
+                log.debug("Rejected Token " + tokenStr + ": cached as not found");
+                throw new UsernameNotFoundException(tokenStr);
+            case REVOKED:
+                log.debug("Rejected Token " + tokenStr + ": cached as revoked");
+                throw new BadCredentialsException(tokenStr);
+            default:
+                break;
+        }
+
+        long stamp = tokenIndex.stamp();
+        Optional<Token> tok = ReadWriteRoutingDataSource.usePrimary(() -> tokenRepository.findDetailByTokenValue(tokenStr));
+        if (!tok.isPresent()) {
+            log.info("Failed to load Token " + tokenStr + ": not found");
+            tokenIndex.putNotFound(tokenStr);
+            throw new UsernameNotFoundException(tokenStr);
+        }
+        Token token = tok.get();
+        if (token.isRevoked()) {
+            log.info("Failed to load Token " + tokenStr + ": revoked");
+            tokenIndex.putRevoked(tokenStr);
+            throw new BadCredentialsException(tokenStr);
+        }
+
+        ValidatedToken result = new ValidatedToken(token.getTokenValue(), token.getTutorId(),
+                token.getReviews().stream().map(Review::getId).collect(Collectors.toSet()), token.getEnd());
+        tokenIndex.put(result, stamp);
+        log.debug("Loaded Token " + tokenStr);
+        return result;
+    }
+
 
     /**
      * 创建Token
@@ -116,15 +372,37 @@ public class TokenService {
     @Transactional
     @PreAuthorize("hasAuthority('ManageTutor')")
     public Token createToken(Tutor tutor, Set<Review> reviews, Timestamp end) {
-        String tokenValue = Base64.getUrlEncoder().encodeToString(PasswordUtils.generateSalt(18));
-        while (!tokenValue.matches("[a-zA-Z0-9]+")) {
-            tokenValue = Base64.getUrlEncoder().encodeToString(PasswordUtils.generateSalt(18));
-        }
+        String tokenValue = generateTokenValue();
         Token result = tokenRepository.save(new Token(tokenValue, tutor, reviews, end));
+        tokenIndex.invalidate(tokenValue);
+        afterCommit(() -> expiryWheel.schedule(tokenValue, end.getTime()));
         log.debug("Created Token " + result);
         return result;
     }
 
+    /**
+     * 批量创建Token
+     * <p>
+     * 所有Token在同一事务中保存, 插入语句在提交时分批执行
+     *
+     * @param reviews 每个导师待填写的评议
+     * @param end     结束时间
+     * @return 创建的Token
+     */
+    @Transactional
+    @PreAuthorize("hasAuthority('ManageTutor')")
+    public List<Token> createTokens(Map<Tutor, Set<Review>> reviews, Timestamp end) {
+        List<Token> tokens = new ArrayList<>(reviews.size());
+        reviews.forEach((tutor, set) -> tokens.add(new Token(generateTokenValue(), tutor, set, end)));
+        List<Token> result = tokenRepository.saveAll(tokens);
+        for (Token token : result) {
+            tokenIndex.invalidate(token.getTokenValue());
+        }
+        afterCommit(() -> result.forEach(token -> expiryWheel.schedule(token.getTokenValue(), end.getTime())));
+        log.debug("Created " + result.size() + " Tokens");
+        return result;
+    }
+
     /**
      * 吊销Token
      *
@@ -132,8 +410,327 @@ public class TokenService {
      */
     @Transactional
     public void revokeToken(Token token) {
+        long expiresAt = token.getEnd().toInstant().getEpochSecond();
+        String tokenValue = token.getTokenValue();
         token.setRevoked();
         tokenRepository.save(token);
+        revokeAccessTokenId(accessTokenId(tokenValue), expiresAt);
+        afterCommit(() -> {
+            expiryWheel.cancel(tokenValue);
+            tokenIndex.revoke(tokenValue);
+            eventPublisher.publishEvent(new TokenExpiredEvent(this, Collections.singletonList(tokenValue), true));
+        });
+    }
+
+    /**
+     * 吊销导师所有未到期的Token
+     * 以一条UPDATE语句完成, 之前读出原结束时间用于吊销签名访问Token
+     *
+     * @param tutorId 导师ID
+     * @return 吊销的Token数
+     */
+    @Transactional
+    public int revokeTokensByTutor(int tutorId) {
+        Timestamp now = Timestamp.from(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        List<Object[]> expiries = tokenRepository.findExpiriesByTutorIdAfter(tutorId, now);
+        int count = tokenRepository.revokeByTutorId(tutorId, now);
+        log.info("Revoked " + count + " Token(s) of Tutor " + tutorId);
+        if (count > 0) {
+            afterBulkRevoke(tokenRepository.findTokenValuesByTutorIdAndEnd(tutorId, now), expiries);
+        }
+        return count;
+    }
+
+    /**
+     * 吊销阶段所有未到期的Token
+     * 以一条UPDATE语句完成, 之前读出原结束时间用于吊销签名访问Token
+     *
+     * @param stageId 阶段ID
+     * @return 吊销的Token数
+     */
+    @Transactional
+    public int revokeTokensByStage(int stageId) {
+        Timestamp now = Timestamp.from(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        List<Object[]> expiries = tokenRepository.findExpiriesByStageIdAfter(stageId, now);
+        int count = tokenRepository.revokeByStageId(stageId, now);
+        log.info("Revoked " + count + " Token(s) of Stage " + stageId);
+        if (count > 0) {
+            afterBulkRevoke(tokenRepository.findTokenValuesByStageIdAndEnd(stageId, now), expiries);
+        }
+        return count;
+    }
+
+    /**
+     * 是否以签名访问链接代替Token登录链接
+     *
+     * @return 是否启用签名访问链接
+     */
+    public boolean isAccessTokenEnabled() {
+        return accessTokenEnabled;
+    }
+
+    /**
+     * 为登录Token签发访问Token
+     * 同一登录Token签发的访问Token共用同一ID, 吊销登录Token时一并吊销
+     *
+     * @param token 登录Token
+     * @return 访问Token
+     */
+    @NotNull
+    @Transactional(readOnly = true)
+    public String issueAccessToken(Token token) {
+        Set<Integer> reviewIds = token.getReviews().stream().map(Review::getId).collect(Collectors.toSet());
+        int stageId = token.getReviews().stream().findFirst().map(Review::getStageId).orElse(0);
+        return signAccessToken(accessTokenId(token.getTokenValue()), token.getTutorId(), stageId, reviewIds, token.getEnd());
+    }
+
+    /**
+     * 为一组登录Token签发访问Token
+     * 评议ID与阶段ID以一条查询读出, 不加载Token与评议实体
+     *
+     * @param tokens 登录Token列表项
+     * @return Token值到访问Token的映射
+     */
+    @NotNull
+    @Transactional(readOnly = true)
+    public Map<String, String> issueAccessTokens(Collection<TokenListItem> tokens) {
+        if (tokens.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Set<Integer>> reviewIds = new HashMap<>();
+        Map<String, Integer> stageIds = new HashMap<>();
+        List<String> tokenValues = tokens.stream().map(TokenListItem::getTokenValue).collect(Collectors.toList());
+        for (Object[] row : tokenRepository.findReviewStagesByTokenValueIn(tokenValues)) {
+            String tokenValue = (String) row[0];
+            reviewIds.computeIfAbsent(tokenValue, k -> new HashSet<>()).add((Integer) row[1]);
+            stageIds.putIfAbsent(tokenValue, (Integer) row[2]);
+        }
+        Map<String, String> accessTokens = new HashMap<>();
+        for (TokenListItem token : tokens) {
+            String tokenValue = token.getTokenValue();
+            accessTokens.put(tokenValue, signAccessToken(accessTokenId(tokenValue), token.getTutorId(),
+                    stageIds.getOrDefault(tokenValue, 0), reviewIds.getOrDefault(tokenValue, Collections.emptySet()),
+                    new Timestamp(token.getEnd().getTime())));
+        }
+        return accessTokens;
+    }
+
+    /**
+     * 签发访问Token
+     *
+     * @param tutorId   导师ID
+     * @param stageId   阶段ID
+     * @param reviewIds 可填写的评议ID
+     * @param end       过期时间
+     * @return 访问Token
+     */
+    @NotNull
+    public String issueAccessToken(int tutorId, int stageId, Set<Integer> reviewIds, Timestamp end) {
+        return signAccessToken(random.nextLong(), tutorId, stageId, reviewIds, end);
+    }
+
+    /**
+     * 按访问Token认证导师
+     * 只验证签名, 过期时间与吊销列表, 不查询Token表; 导师命中缓存时不查询数据库
+     *
+     * @param accessToken 访问Token
+     * @return 导师与Token快照
+     * @throws UsernameNotFoundException 找不到导师
+     * @throws BadCredentialsException   未启用签名访问链接, 签名无效, 已过期或已被吊销
+     */
+    public Pair<Tutor, ValidatedToken> authenticateAccessToken(@NonNls String accessToken) throws UsernameNotFoundException, BadCredentialsException {
+        if (!accessTokenEnabled) {
+            log.info("Rejected access token: signed access links disabled");
+            throw new BadCredentialsException("access_token");
+        }
+        SignedAccessTokenCodec.Claims claims = decodeAccessToken(accessToken);
+        try {
+            Tutor tutor = tutorService.loadById(claims.getTutorId());
+            ValidatedToken token = new ValidatedToken(String.format("%016x", claims.getId()), claims.getTutorId(),
+                    claims.getReviewIds(), Timestamp.from(Instant.ofEpochSecond(claims.getExpiresAt())));
+            return Pair.of(tutor, token);
+        } catch (IdentifierNotExistsException e) {
+            log.info("Failed to authenticate access token " + claims + ": Tutor not found");
+            throw new UsernameNotFoundException(String.valueOf(claims.getTutorId()));
+        }
+    }
+
+    /**
+     * 吊销访问Token
+     *
+     * @param accessToken 访问Token
+     * @throws BadCredentialsException 签名无效, 已过期或已被吊销
+     */
+    @Transactional
+    public void revokeAccessToken(@NonNls String accessToken) throws BadCredentialsException {
+        SignedAccessTokenCodec.Claims claims = decodeAccessToken(accessToken);
+        revokeAccessTokenId(claims.getId(), claims.getExpiresAt());
+        log.info("Revoked access token " + claims);
+    }
+
+    /**
+     * 吊销登录Token签发的所有访问Token, 登录Token本身保持有效
+     *
+     * @param tokenStr 登录Token值
+     * @throws UsernameNotFoundException 找不到Token
+     * @throws BadCredentialsException   Token已经被吊销
+     */
+    @Transactional
+    public void revokeAccessTokensOf(@NonNls String tokenStr) throws UsernameNotFoundException, BadCredentialsException {
+        ValidatedToken token = validateToken(tokenStr);
+        revokeAccessTokenId(accessTokenId(tokenStr), token.getEnd().toInstant().getEpochSecond());
+        log.info("Revoked access tokens of Token " + tokenStr);
+    }
+
+    /**
+     * 吊销导师此前签发的所有访问Token
+     *
+     * @param tutorId 导师ID
+     */
+    @Transactional
+    public void revokeAccessTokens(int tutorId) {
+        long now = Instant.now().getEpochSecond();
+        Timestamp before = Timestamp.from(Instant.ofEpochSecond(now));
+        TutorAccessRevocation revocation = tutorAccessRevocationRepository.findById(tutorId)
+                                                                          .orElseGet(() -> new TutorAccessRevocation(tutorId, before));
+        if (revocation.getBefore().before(before)) {
+            revocation.setBefore(before);
+        }
+        tutorAccessRevocationRepository.save(revocation);
+        afterCommit(() -> revocationList.revokeTutor(tutorId, now));
+        log.info("Revoked access tokens of Tutor " + tutorId);
+    }
+
+    /**
+     * Token索引统计
+     *
+     * @return 索引统计
+     */
+    public Map<String, Object> getTokenIndexStatistics() {
+        return tokenIndex.getStatistics();
+    }
+
+    /**
+     * 访问Token吊销列表统计
+     *
+     * @return 吊销列表统计
+     */
+    public Map<String, Object> getAccessTokenStatistics() {
+        revocationList.purgeExpired();
+        Map<String, Object> stat = revocationList.getStatistics();
+        stat.put("enabled", accessTokenEnabled);
+        return stat;
+    }
+
+    /**
+     * 到期时间轮统计
+     *
+     * @return 时间轮统计
+     */
+    public Map<String, Object> getTokenExpiryStatistics() {
+        Map<String, Object> stat = new LinkedHashMap<>();
+        stat.put("scheduled", expiryWheel.size());
+        stat.put("wheelSize", expiryWheel.getWheelSize());
+        stat.put("tickMillis", expiryWheel.getTickMillis());
+        stat.put("expired", expired.sum());
+        return stat;
+    }
+
+    /**
+     * 批量吊销后按原结束时间吊销签名访问Token, 提交后清理时间轮与索引, 并发布{@link TokenExpiredEvent}
+     * 批量更新的结束时间截断到秒, 再按该时间取回被吊销的Token值, 不依赖数据库时间精度
+     *
+     * @param tokenValues 被吊销的Token值
+     * @param expiries    吊销前读出的Token值与原结束时间
+     */
+    private void afterBulkRevoke(List<String> tokenValues, List<Object[]> expiries) {
+        for (Object[] row : expiries) {
+            revokeAccessTokenId(accessTokenId((String) row[0]), ((Timestamp) row[1]).toInstant().getEpochSecond());
+        }
+        afterCommit(() -> {
+            for (String tokenValue : tokenValues) {
+                expiryWheel.cancel(tokenValue);
+                tokenIndex.revoke(tokenValue);
+            }
+            eventPublisher.publishEvent(new TokenExpiredEvent(this, tokenValues, true));
+        });
+    }
+
+    /**
+     * 保存按ID吊销签名访问Token的记录, 提交后放入吊销列表
+     * 同一ID重复吊销时保留较晚的过期时间
+     *
+     * @param id        访问Token ID
+     * @param expiresAt 访问Token过期时间(epoch秒)
+     */
+    private void revokeAccessTokenId(long id, long expiresAt) {
+        if (expiresAt < Instant.now().getEpochSecond()) {
+            return;
+        }
+        Timestamp expiry = Timestamp.from(Instant.ofEpochSecond(expiresAt));
+        AccessTokenRevocation revocation = accessTokenRevocationRepository.findById(id)
+                                                                          .orElseGet(() -> new AccessTokenRevocation(id, expiry));
+        if (revocation.getExpiresAt().before(expiry)) {
+            revocation.setExpiresAt(expiry);
+        }
+        accessTokenRevocationRepository.save(revocation);
+        afterCommit(() -> revocationList.revoke(id, expiresAt));
+    }
+
+    /**
+     * 在当前事务提交后执行, 没有事务时立即执行
+     * 时间轮, 索引, 吊销列表与会话都在内存中, 事务回滚时无法撤销
+     */
+    private static void afterCommit(Runnable r) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    r.run();
+                }
+            });
+        } else {
+            r.run();
+        }
+    }
+
+    @NotNull
+    private String signAccessToken(long id, int tutorId, int stageId, Set<Integer> reviewIds, Timestamp end) {
+        SignedAccessTokenCodec.Claims claims = new SignedAccessTokenCodec.Claims(id, tutorId, stageId, reviewIds,
+                Instant.now().getEpochSecond(), end.toInstant().getEpochSecond());
+        log.debug("Issued access token " + claims);
+        return accessTokenCodec.encode(claims);
+    }
+
+    @NotNull
+    private SignedAccessTokenCodec.Claims decodeAccessToken(String accessToken) throws BadCredentialsException {
+        Optional<SignedAccessTokenCodec.Claims> decoded = accessTokenCodec.decode(accessToken);
+        if (!decoded.isPresent()) {
+            log.info("Rejected access token: bad signature");
+            throw new BadCredentialsException("access_token");
+        }
+        SignedAccessTokenCodec.Claims claims = decoded.get();
+        if (claims.getExpiresAt() < Instant.now().getEpochSecond()) {
+            log.debug("Rejected access token " + claims + ": expired");
+            throw new BadCredentialsException("access_token");
+        }
+        if (revocationList.isRevoked(claims)) {
+            log.debug("Rejected access token " + claims + ": revoked");
+            throw new BadCredentialsException("access_token");
+        }
+        return claims;
+    }
+
+    /**
+     * 登录Token对应的访问Token ID, 取Token值SHA-256的前8字节
+     */
+    private static long accessTokenId(String tokenStr) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(tokenStr.getBytes(StandardCharsets.US_ASCII));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
 }
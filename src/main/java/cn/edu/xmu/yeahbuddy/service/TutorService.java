@@ -1,8 +1,12 @@
 package cn.edu.xmu.yeahbuddy.service;
 
+import cn.edu.xmu.yeahbuddy.config.ReadWriteRoutingDataSource;
 import cn.edu.xmu.yeahbuddy.domain.Tutor;
 import cn.edu.xmu.yeahbuddy.domain.repo.TutorRepository;
+import cn.edu.xmu.yeahbuddy.model.KeysetPage;
 import cn.edu.xmu.yeahbuddy.model.TutorDto;
+import cn.edu.xmu.yeahbuddy.model.TutorListItem;
+import cn.edu.xmu.yeahbuddy.model.SessionPrincipal;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierAlreadyExistsException;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierNotExistsException;
 import org.apache.commons.logging.Log;
@@ -10,22 +14,26 @@ import org.apache.commons.logging.LogFactory;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.AuthenticationUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Optional;
 
 @Service
-public class TutorService implements UserDetailsService, AuthenticationUserDetailsService<PreAuthenticatedAuthenticationToken> {
+public class TutorService implements UpgradableUserDetailsService, AuthenticationUserDetailsService<PreAuthenticatedAuthenticationToken> {
 
     @NonNls
     private static Log log = LogFactory.getLog(TutorService.class);
@@ -34,33 +42,42 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
 
     private final TutorRepository tutorRepository;
 
+    private final TransactionTemplate transactionTemplate;
+
+    private final LockingUpdateService lockingUpdateService;
+
     /**
      * 构造函数
      * Spring Boot自动装配
      *
      * @param tutorRepository         Autowired
      * @param ybPasswordEncodeService Autowired
+     * @param transactionManager      Autowired
+     * @param lockingUpdateService    Autowired
      */
     @Autowired
-    public TutorService(TutorRepository tutorRepository, YbPasswordEncodeService ybPasswordEncodeService) {
+    public TutorService(TutorRepository tutorRepository, YbPasswordEncodeService ybPasswordEncodeService, PlatformTransactionManager transactionManager,
+                        LockingUpdateService lockingUpdateService) {
         this.tutorRepository = tutorRepository;
         this.ybPasswordEncodeService = ybPasswordEncodeService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lockingUpdateService = lockingUpdateService;
     }
 
     /**
-     * 强制转换对象至Tutor
+     * 转换Tutor或登录后的会话用户至{@link SessionPrincipal}
      * 用于SpEL
      *
      * @param obj 对象
-     * @return 强制转换为Tutor的对象
+     * @return 会话用户
      */
     @Contract(pure = true)
-    public static Tutor asTutor(Object obj) {
-        return ((Tutor) obj);
+    public static SessionPrincipal asTutor(Object obj) {
+        return SessionPrincipal.of(obj);
     }
 
     /**
-     * 对象是否为Tutor
+     * 对象是否为Tutor或Tutor的会话用户
      * 用于SpEL
      *
      * @param obj 对象
@@ -68,7 +85,8 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
      */
     @Contract(pure = true)
     public static boolean isTutor(Object obj) {
-        return obj instanceof Tutor;
+        return obj instanceof Tutor
+                       || (obj instanceof SessionPrincipal && ((SessionPrincipal) obj).getRole() == SessionPrincipal.Role.TUTOR);
     }
 
     /**
@@ -82,7 +100,7 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
     @Transactional(readOnly = true)
     public Tutor loadUserByUsername(String username) throws UsernameNotFoundException {
         log.debug("Trying to load Tutor " + username);
-        Optional<Tutor> tutor = tutorRepository.findByUsername(username);
+        Optional<Tutor> tutor = ReadWriteRoutingDataSource.usePrimary(() -> tutorRepository.findByUsername(username));
         if (!tutor.isPresent()) {
             log.info("Failed to load Tutor " + username + ": not found");
             throw new UsernameNotFoundException(username);
@@ -105,15 +123,15 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
 
     /**
      * 按ID查找导师
+     * 不声明事务, 二级缓存命中时不查询数据库
      *
      * @param id 查找的导师id
      * @return 导师
      * @throws IdentifierNotExistsException 找不到导师
      */
-    @Transactional(readOnly = true)
     public Tutor loadById(int id) throws IdentifierNotExistsException {
         log.debug("Trying to load Tutor id " + id);
-        Optional<Tutor> tutor = tutorRepository.findById(id);
+        Optional<Tutor> tutor = ReadWriteRoutingDataSource.usePrimary(() -> tutorRepository.findById(id));
         if (!tutor.isPresent()) {
             log.info("Failed to load Tutor id" + id + ": not found");
             throw new IdentifierNotExistsException("tutor.id.not_found", id);
@@ -136,13 +154,26 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
     }
 
     /**
-     * 查找所有导师
+     * 查找所有导师列表项
      *
-     * @return 所有导师
+     * @return 所有导师列表项
      */
-    @Transactional
-    public List<Tutor> findAllTutors() {
-        return tutorRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<TutorListItem> findAllTutorListItems() {
+        return tutorRepository.findAllListItems();
+    }
+
+    /**
+     * 按主键顺序分页查找导师列表项
+     *
+     * @param after 上一页最后一项的主键, 为null时查找第一页
+     * @param size  每页条数
+     * @return 一页导师列表项
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<TutorListItem> findTutorPage(@Nullable Integer after, int size) {
+        int from = after == null ? Integer.MIN_VALUE : after;
+        return KeysetPage.of(tutorRepository.findListItemsAfter(from, KeysetPage.pageable(size)), size);
     }
 
     /**
@@ -153,7 +184,6 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
      * @throws IdentifierAlreadyExistsException 用户名已存在
      * @throws IllegalArgumentException         DTO中未填满所需信息
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ManageTutor')")
     public Tutor registerNewTutor(TutorDto dto) throws IdentifierAlreadyExistsException {
         log.debug("Trying to register new Tutor " + dto.getUsername());
@@ -168,12 +198,22 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
             throw new IdentifierAlreadyExistsException("tutor.name.exist", dto.getUsername());
         }
 
-        Tutor tutor = new Tutor(dto.getUsername(), ybPasswordEncodeService.encode(dto.getPassword()));
-        tutor.setEmail(dto.getEmail());
-        tutor.setPhone(dto.getPhone());
-        tutor.setDisplayName(dto.getDisplayName());
+        // 在事务外计算密码哈希
+        String encoded = ybPasswordEncodeService.encode(dto.getPassword());
+
+        Tutor result = transactionTemplate.execute(status -> {
+            if (tutorRepository.findByUsername(dto.getUsername()).isPresent()) {
+                log.info("Failed to register Tutor " + dto.getUsername() + ": username already exist");
+                throw new IdentifierAlreadyExistsException("tutor.name.exist", dto.getUsername());
+            }
+
+            Tutor tutor = new Tutor(dto.getUsername(), encoded);
+            tutor.setEmail(dto.getEmail());
+            tutor.setPhone(dto.getPhone());
+            tutor.setDisplayName(dto.getDisplayName());
 
-        Tutor result = tutorRepository.save(tutor);
+            return tutorRepository.save(tutor);
+        });
         log.debug("Registered new Tutor " + result.toString());
         return result;
     }
@@ -212,40 +252,41 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
      * @return 修改后的导师
      * @throws IdentifierAlreadyExistsException 如果修改用户名，用户名已存在
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ManageTutor') " +
                           "|| (T(cn.edu.xmu.yeahbuddy.service.TutorService).isTutor(principal) && T(cn.edu.xmu.yeahbuddy.service.TutorService).asTutor(principal).id == #id)")
     public Tutor updateTutor(int id, TutorDto dto) {
         log.debug("Trying to update Tutor " + id);
-        Tutor tutor = loadForUpdate(id);
+        return lockingUpdateService.update(() -> {
+            Tutor tutor = loadForUpdate(id);
 
-        if (dto.getDisplayName() != null) {
-            log.trace("Updated display name for Tutor " + id + ":" + tutor.getDisplayName() +
-                              " -> " + dto.getDisplayName());
-            tutor.setDisplayName(dto.getDisplayName());
-        }
+            if (dto.getDisplayName() != null) {
+                log.trace("Updated display name for Tutor " + id + ":" + tutor.getDisplayName() +
+                                  " -> " + dto.getDisplayName());
+                tutor.setDisplayName(dto.getDisplayName());
+            }
 
-        if (dto.getEmail() != null) {
-            log.trace("Updated email for Tutor " + id + ":" + tutor.getEmail() +
-                              " -> " + dto.getEmail());
-            tutor.setEmail(dto.getEmail());
-        }
-        if (dto.getPhone() != null) {
-            log.trace("Updated phone for Tutor " + id + ":" + tutor.getPhone() +
-                              " -> " + dto.getPhone());
-            tutor.setPhone(dto.getPhone());
-        }
-        if (dto.getUsername() != null) {
-            if (tutorRepository.findByUsername(dto.getUsername()).isPresent()) {
-                log.info("Fail to update username for Tutor " + tutor.getUsername() + ": username already exist");
-                throw new IdentifierAlreadyExistsException("tutor.username.exist", dto.getUsername());
-            } else {
-                log.trace("Updated username for Tutor " + id + ":" + tutor.getUsername() +
-                                  " -> " + dto.getUsername());
-                tutor.setUsername(dto.getUsername());
+            if (dto.getEmail() != null) {
+                log.trace("Updated email for Tutor " + id + ":" + tutor.getEmail() +
+                                  " -> " + dto.getEmail());
+                tutor.setEmail(dto.getEmail());
             }
-        }
-        return tutorRepository.save(tutor);
+            if (dto.getPhone() != null) {
+                log.trace("Updated phone for Tutor " + id + ":" + tutor.getPhone() +
+                                  " -> " + dto.getPhone());
+                tutor.setPhone(dto.getPhone());
+            }
+            if (dto.getUsername() != null) {
+                if (tutorRepository.findByUsername(dto.getUsername()).isPresent()) {
+                    log.info("Fail to update username for Tutor " + tutor.getUsername() + ": username already exist");
+                    throw new IdentifierAlreadyExistsException("tutor.username.exist", dto.getUsername());
+                } else {
+                    log.trace("Updated username for Tutor " + id + ":" + tutor.getUsername() +
+                                      " -> " + dto.getUsername());
+                    tutor.setUsername(dto.getUsername());
+                }
+            }
+            return tutorRepository.save(tutor);
+        });
     }
 
     /**
@@ -258,20 +299,21 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
      * @return 修改后的导师
      * @throws BadCredentialsException 原密码不正确
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ManageTutor') " +
                           "|| (T(cn.edu.xmu.yeahbuddy.service.TutorService).isTutor(principal) && T(cn.edu.xmu.yeahbuddy.service.TutorService).asTutor(principal).id == #id)")
     public Tutor updateTutorPassword(int id, CharSequence oldPassword, String newPassword) throws BadCredentialsException {
         log.info("Trying to update password for Tutor " + id);
-        Tutor tutor = loadForUpdate(id);
-        if (ybPasswordEncodeService.matches(oldPassword, tutor.getPassword())) {
-            tutor.setPassword(ybPasswordEncodeService.encode(newPassword));
-            log.info("Updated password for Tutor " + id);
-            return tutorRepository.save(tutor);
-        } else {
+
+        String current = loadPassword(id);
+
+        if (!ybPasswordEncodeService.matches(oldPassword, current)) {
             log.warn("Failed to update password for Tutor " + id + ": old password doesn't match");
             throw new BadCredentialsException("tutor.update.password");
         }
+
+        Tutor result = savePassword(id, current, ybPasswordEncodeService.encode(newPassword));
+        log.info("Updated password for Tutor " + id);
+        return result;
     }
 
     /**
@@ -282,17 +324,79 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
      * @param newPassword 新密码
      * @return 修改后的导师
      */
-    @Transactional
     @PreAuthorize("hasAuthority('ResetPassword') && hasAuthority('ManageTutor')")
     public Tutor resetTutorPassword(int id, String newPassword) {
-        Tutor tutor = loadForUpdate(id);
+        String encoded = ybPasswordEncodeService.encode(newPassword);
         log.info("Reset password for Tutor " + id);
-        tutor.setPassword(ybPasswordEncodeService.encode(newPassword));
-        return tutorRepository.save(tutor);
+        return savePassword(id, null, encoded);
+    }
+
+    /**
+     * 登录成功后升级密码密文 提供{@link UpgradableUserDetailsService#upgradePassword(UserDetails, CharSequence)}
+     *
+     * @param user        已通过校验的导师
+     * @param rawPassword 密码明文
+     */
+    @Override
+    public void upgradePassword(UserDetails user, CharSequence rawPassword) {
+        int id = ((Tutor) user).getId();
+        String encoded = ybPasswordEncodeService.encode(rawPassword);
+
+        lockingUpdateService.update(() -> {
+            Tutor tutor = loadForUpdate(id);
+            if (!tutor.getPassword().equals(user.getPassword())) {
+                log.debug("Skipped password upgrade for Tutor " + id + ": password changed or already upgraded");
+                return null;
+            }
+            tutor.setPassword(encoded);
+            log.info("Upgraded password hash for Tutor " + id);
+            return tutorRepository.save(tutor);
+        });
+    }
+
+    /**
+     * 读取当前密码密文, 不加锁
+     *
+     * @param id 导师ID
+     * @return 密码密文
+     */
+    @NotNull
+    private String loadPassword(int id) {
+        Optional<Tutor> t = tutorRepository.findById(id);
+
+        if (!t.isPresent()) {
+            log.info("Failed to load Tutor id" + id + ": not found");
+            throw new IdentifierNotExistsException("tutor.id.not_found", id);
+        }
+
+        return t.get().getPassword();
+    }
+
+    /**
+     * 读取并写入新密码密文
+     * 密码哈希应在调用前完成, 事务内只有一次读取与一次UPDATE
+     *
+     * @param id       导师ID
+     * @param expected 校验原密码时读取的密文, 不为null时若已被修改则失败
+     * @param encoded  新密码密文
+     * @return 修改后的导师
+     * @throws BadCredentialsException 校验后密码已被修改
+     */
+    @NotNull
+    private Tutor savePassword(int id, @Nullable String expected, String encoded) {
+        return lockingUpdateService.update(() -> {
+            Tutor tutor = loadForUpdate(id);
+            if (expected != null && !expected.equals(tutor.getPassword())) {
+                log.warn("Failed to update password for Tutor " + id + ": password changed concurrently");
+                throw new BadCredentialsException("tutor.update.password");
+            }
+            tutor.setPassword(encoded);
+            return tutorRepository.save(tutor);
+        });
     }
 
     /**
-     * 查找并加写锁
+     * 查找待修改的用户, 悲观模式下加写锁
      * 用于读取并修改
      *
      * @param id 导师ID
@@ -300,7 +404,7 @@ public class TutorService implements UserDetailsService, AuthenticationUserDetai
      */
     @NotNull
     private Tutor loadForUpdate(int id) {
-        Optional<Tutor> t = tutorRepository.queryById(id);
+        Optional<Tutor> t = lockingUpdateService.load(() -> tutorRepository.queryById(id), () -> tutorRepository.findById(id));
 
         if (!t.isPresent()) {
             log.info("Failed to load Tutor id" + id + ": not found");
@@ -0,0 +1,21 @@
+package cn.edu.xmu.yeahbuddy.service;
+
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+/**
+ * 支持登录时升级密码密文的用户服务
+ *
+ * @see YbPasswordEncodeService#needsUpgrade(String)
+ */
+public interface UpgradableUserDetailsService extends UserDetailsService {
+
+    /**
+     * 以当前编码参数重新编码用户密码
+     * 仅在密码已校验通过后调用; 若密文在此期间已被修改则不做任何事
+     *
+     * @param user        由{@link #loadUserByUsername(String)}加载并已通过校验的用户
+     * @param rawPassword 密码明文
+     */
+    void upgradePassword(UserDetails user, CharSequence rawPassword);
+}
@@ -1,31 +1,126 @@
 package cn.edu.xmu.yeahbuddy.service;
 
+import cn.edu.xmu.yeahbuddy.utils.PasswordHashBusyException;
 import cn.edu.xmu.yeahbuddy.utils.PasswordUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 密码编码服务
+ * <p>
+ * 密码哈希在独立的有界线程池中计算, 线程数默认等于CPU核数.
+ * 队列已满时立即抛出{@link PasswordHashBusyException}, 登录高峰不会占满Tomcat的请求线程.
+ * <p>
+ * 密文格式为{@code $pbkdf2-sha512$迭代次数$盐$哈希}, 盐与哈希为Base64.
+ * 不带前缀的旧格式{@code 盐$哈希}按{@link PasswordUtils#DEFAULT_ITERATIONS}次迭代校验.
+ * 迭代次数可通过{@code yeahbuddy.password.iterations}指定, 未指定时在启动时按{@code yeahbuddy.password.target-millis}校准.
  */
 @Service
 public class YbPasswordEncodeService implements PasswordEncoder {
 
+    @NonNls
+    private static Log log = LogFactory.getLog(YbPasswordEncodeService.class);
+
+    @NonNls
+    private static final String ALGORITHM = "pbkdf2-sha512";
+
+    private static final int MAX_ITERATIONS = 10_000_000;
+
+    private final ThreadPoolExecutor executor;
+
+    private final int iterations;
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder queueWaitNanos = new LongAdder();
+
+    private final LongAdder hashNanos = new LongAdder();
+
+    /**
+     * 构造函数
+     * Spring Boot自动装配
+     *
+     * @param poolSize      哈希线程数, 不大于0时取CPU核数
+     * @param queueCapacity 等待队列长度
+     * @param iterations    PBKDF2迭代次数, 不大于0时启动时校准
+     * @param targetMillis  校准目标: 单次校验耗时(毫秒)
+     */
+    @Autowired
+    public YbPasswordEncodeService(@Value("${yeahbuddy.password.pool-size:0}") int poolSize,
+                                   @Value("${yeahbuddy.password.queue-capacity:64}") int queueCapacity,
+                                   @Value("${yeahbuddy.password.iterations:0}") int iterations,
+                                   @Value("${yeahbuddy.password.target-millis:100}") int targetMillis) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "yb-password-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Password hashing pool started with " + threads + " threads, queue capacity " + queueCapacity);
+
+        this.iterations = iterations > 0 ? Math.max(iterations, PasswordUtils.DEFAULT_ITERATIONS) : calibrate(targetMillis);
+        log.info("Password hashing uses " + ALGORITHM + " with " + this.iterations + " iterations");
+    }
+
+    /**
+     * 按目标耗时估算迭代次数
+     * 取若干次试算中最快的一次, 结果取整到千次, 不低于{@link PasswordUtils#DEFAULT_ITERATIONS}
+     *
+     * @param targetMillis 单次校验目标耗时(毫秒)
+     * @return 迭代次数
+     */
+    private static int calibrate(int targetMillis) {
+        final int probe = PasswordUtils.DEFAULT_ITERATIONS;
+        byte[] salt = PasswordUtils.generateSalt();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            PasswordUtils.hash("calibration".toCharArray(), salt, probe);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double scaled = (double) TimeUnit.MILLISECONDS.toNanos(targetMillis) / Math.max(best, 1) * probe;
+        int result = (int) Math.min(MAX_ITERATIONS, Math.round(scaled / 1000) * 1000);
+        log.info("Calibrated password hashing: " + probe + " iterations took " + TimeUnit.NANOSECONDS.toMicros(best) +
+                         "us, target " + targetMillis + "ms");
+        return Math.max(result, PasswordUtils.DEFAULT_ITERATIONS);
+    }
+
     /**
      * 编码密码
      *
      * @param rawPassword 密码明文
      * @return 编码后的密码密文
+     * @throws PasswordHashBusyException 哈希线程池已满
      */
     @Override
     @Contract(pure = true)
     public String encode(CharSequence rawPassword) {
         byte[] salt = PasswordUtils.generateSalt();
-        byte[] hash = PasswordUtils.hash(rawPassword.toString().toCharArray(), salt);
+        char[] password = rawPassword.toString().toCharArray();
+        final int cost = iterations;
+        byte[] hash = compute(() -> PasswordUtils.hash(password, salt, cost));
         Base64.Encoder base64e = Base64.getEncoder();
-        return String.format("%s$%s", base64e.encodeToString(salt), base64e.encodeToString(hash));
+        return String.format("$%s$%d$%s$%s", ALGORITHM, cost, base64e.encodeToString(salt), base64e.encodeToString(hash));
     }
 
     /**
@@ -34,16 +129,168 @@ public class YbPasswordEncodeService implements PasswordEncoder {
      * @param rawPassword     待匹配明文
      * @param encodedPassword 编码后的密码密文
      * @return 是否匹配
+     * @throws PasswordHashBusyException 哈希线程池已满
      */
     @Override
     @Contract(pure = true)
     public boolean matches(CharSequence rawPassword, String encodedPassword) {
-        String[] s = encodedPassword.split("\\$", 2);
-        Base64.Decoder base64d = Base64.getDecoder();
+        EncodedPassword encoded = EncodedPassword.parse(encodedPassword);
+        if (encoded == null) {
+            log.warn("Unrecognized encoded password format");
+            return false;
+        }
+        char[] password = rawPassword.toString().toCharArray();
+
+        return compute(() -> PasswordUtils.isExpectedPassword(password, encoded.salt, encoded.hash, encoded.iterations));
+    }
+
+    /**
+     * 密文是否需要以当前参数重新编码
+     * 旧格式、其他算法或迭代次数低于当前设置时需要; 迭代次数更高的密文保留, 避免多节点设置不同时反复重算
+     *
+     * @param encodedPassword 编码后的密码密文
+     * @return 是否需要重新编码
+     */
+    @Contract(pure = true)
+    public boolean needsUpgrade(String encodedPassword) {
+        EncodedPassword encoded = EncodedPassword.parse(encodedPassword);
+        return encoded == null || !encoded.current || encoded.iterations < iterations;
+    }
+
+    /**
+     * 当前编码使用的迭代次数
+     *
+     * @return 迭代次数
+     */
+    @Contract(pure = true)
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * 哈希线程池统计
+     *
+     * @return 线程数, 队列长度, 完成/拒绝次数与平均排队/哈希时间(微秒)
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stat = new LinkedHashMap<>();
+        long done = completed.sum();
+        stat.put("algorithm", ALGORITHM);
+        stat.put("iterations", iterations);
+        stat.put("poolSize", executor.getMaximumPoolSize());
+        stat.put("active", executor.getActiveCount());
+        stat.put("queued", executor.getQueue().size());
+        stat.put("queueRemaining", executor.getQueue().remainingCapacity());
+        stat.put("completed", done);
+        stat.put("rejected", rejected.sum());
+        stat.put("avgQueueWaitMicros", done == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(queueWaitNanos.sum() / done));
+        stat.put("avgHashMicros", done == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(hashNanos.sum() / done));
+        return stat;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 在哈希线程池中执行并等待结果
+     *
+     * @param task 哈希任务
+     * @param <T>  结果类型
+     * @return 任务结果
+     * @throws PasswordHashBusyException 队列已满或等待被中断
+     */
+    private <T> T compute(Callable<T> task) {
+        final long enqueued = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                queueWaitNanos.add(start - enqueued);
+                try {
+                    return task.call();
+                } finally {
+                    hashNanos.add(System.nanoTime() - start);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Password hashing rejected: queue full");
+            throw new PasswordHashBusyException("password.hash.busy", e);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashBusyException("password.hash.busy", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 解析后的密码密文
+     */
+    private static final class EncodedPassword {
+
+        private final boolean current;
+
+        private final int iterations;
+
+        private final byte[] salt;
+
+        private final byte[] hash;
+
+        private EncodedPassword(boolean current, int iterations, byte[] salt, byte[] hash) {
+            this.current = current;
+            this.iterations = iterations;
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+        /**
+         * 解析密文
+         *
+         * @param encodedPassword 编码后的密码密文
+         * @return 解析结果, 格式无法识别时为null
+         */
+        private static EncodedPassword parse(String encodedPassword) {
+            if (encodedPassword == null) {
+                return null;
+            }
+            Base64.Decoder base64d = Base64.getDecoder();
+            try {
+                if (!encodedPassword.startsWith("$")) {
+                    String[] s = encodedPassword.split("\\$", 2);
+                    if (s.length != 2) {
+                        return null;
+                    }
+                    return new EncodedPassword(false, PasswordUtils.DEFAULT_ITERATIONS, base64d.decode(s[0]), base64d.decode(s[1]));
+                }
 
-        return PasswordUtils.isExpectedPassword(rawPassword.toString().toCharArray(),
-                base64d.decode(s[0]),
-                base64d.decode(s[1])
-        );
+                String[] s = encodedPassword.split("\\$", 5);
+                if (s.length != 5 || !ALGORITHM.equals(s[1])) {
+                    return null;
+                }
+                int iterations = Integer.parseInt(s[2]);
+                if (iterations <= 0 || iterations > MAX_ITERATIONS) {
+                    return null;
+                }
+                return new EncodedPassword(true, iterations, base64d.decode(s[3]), base64d.decode(s[4]));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
     }
-}
+}
\ No newline at end of file
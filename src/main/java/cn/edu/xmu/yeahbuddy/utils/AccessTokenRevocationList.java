@@ -0,0 +1,109 @@
+package cn.edu.xmu.yeahbuddy.utils;
+
+import org.jetbrains.annotations.Contract;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 签名访问Token吊销列表
+ * <p>
+ * 按Token ID记录单个吊销, 条目保留到Token过期为止;
+ * 按导师记录吊销时间点, 该时间点及之前签发的Token全部失效, 每位导师只占一个条目.
+ * 签名Token本身不保存在服务端, 吊销列表的大小只与被吊销且未过期的Token数相关.
+ * 列表只在内存中, 吊销记录由调用方持久化并在启动时重新放入.
+ */
+public final class AccessTokenRevocationList {
+
+    private final int purgeThreshold;
+
+    private final ConcurrentHashMap<Long, Long> revokedIds = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Integer, Long> revokedBefore = new ConcurrentHashMap<>();
+
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param purgeThreshold 按ID吊销的条目数达到此值时清理已过期条目, 吊销记录不会因容量被丢弃
+     */
+    public AccessTokenRevocationList(int purgeThreshold) {
+        this.purgeThreshold = purgeThreshold;
+    }
+
+    /**
+     * 吊销单个Token
+     *
+     * @param id        Token ID
+     * @param expiresAt Token过期时间(epoch秒)
+     */
+    public void revoke(long id, long expiresAt) {
+        long now = Instant.now().getEpochSecond();
+        if (expiresAt < now) {
+            return;
+        }
+        if (revokedIds.size() >= purgeThreshold) {
+            revokedIds.values().removeIf(exp -> exp < now);
+        }
+        revokedIds.merge(id, expiresAt, Math::max);
+    }
+
+    /**
+     * 吊销导师在给定时刻及之前签发的所有Token
+     *
+     * @param tutorId 导师ID
+     * @param before  吊销时刻(epoch秒)
+     */
+    public void revokeTutor(int tutorId, long before) {
+        revokedBefore.merge(tutorId, before, Math::max);
+    }
+
+    /**
+     * 检查Token是否已被吊销
+     *
+     * @param claims Token载荷
+     * @return 是否已被吊销
+     */
+    public boolean isRevoked(SignedAccessTokenCodec.Claims claims) {
+        Long before = revokedBefore.get(claims.getTutorId());
+        if ((before != null && claims.getIssuedAt() <= before) || revokedIds.containsKey(claims.getId())) {
+            rejections.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 清理已过期的条目
+     */
+    public void purgeExpired() {
+        long now = Instant.now().getEpochSecond();
+        revokedIds.values().removeIf(exp -> exp < now);
+    }
+
+    /**
+     * 按ID吊销的条目数
+     *
+     * @return 条目数
+     */
+    @Contract(pure = true)
+    public int size() {
+        return revokedIds.size();
+    }
+
+    /**
+     * 吊销列表统计
+     *
+     * @return 条目数与拒绝次数
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stat = new LinkedHashMap<>();
+        stat.put("revokedIds", revokedIds.size());
+        stat.put("purgeThreshold", purgeThreshold);
+        stat.put("revokedTutors", revokedBefore.size());
+        stat.put("rejections", rejections.sum());
+        return stat;
+    }
+}
@@ -0,0 +1,148 @@
+package cn.edu.xmu.yeahbuddy.utils;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 哈希时间轮
+ * <p>
+ * 按到期时间把键放入{@code wheelSize}个槽中的一个, 每个槽对应一个时间刻度.
+ * 推进时只检查经过的槽, 单次调度与取消均为O(1), 到期时间超过一圈的键在每圈经过时检查一次.
+ * 线程安全, 适合由单个定时任务周期性调用{@link #advance(long)}.
+ *
+ * @param <K> 键类型
+ */
+public final class HashedTimingWheel<K> {
+
+    private final long tickMillis;
+
+    private final int mask;
+
+    private final List<Map<K, Long>> buckets;
+
+    /**
+     * 键所在的槽
+     */
+    private final Map<K, Integer> slots = new HashMap<>();
+
+    private final long startMillis;
+
+    /**
+     * 当前刻度, 可能尚未完全经过, 下次推进时会再次检查
+     */
+    private long currentTick = 0;
+
+    /**
+     * @param tickMillis  刻度长度(毫秒)
+     * @param wheelSize   槽数, 取不小于此值的2的幂
+     * @param startMillis 起始时间(epoch毫秒)
+     */
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.startMillis = startMillis;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 调度键在指定时间到期, 已调度的键改为新的到期时间
+     *
+     * @param key            键
+     * @param deadlineMillis 到期时间(epoch毫秒)
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        cancel(key);
+        long tick = Math.max(Math.floorDiv(deadlineMillis - startMillis, tickMillis), currentTick);
+        int slot = (int) (tick & mask);
+        buckets.get(slot).put(key, deadlineMillis);
+        slots.put(key, slot);
+    }
+
+    /**
+     * 取消调度
+     *
+     * @param key 键
+     * @return 原到期时间(epoch毫秒), 未调度时为null
+     */
+    @Nullable
+    public synchronized Long cancel(K key) {
+        Integer slot = slots.remove(key);
+        return slot == null ? null : buckets.get(slot).remove(key);
+    }
+
+    /**
+     * 推进到指定时间, 取出所有到期的键
+     *
+     * @param nowMillis 当前时间(epoch毫秒)
+     * @return 到期的键
+     */
+    @NotNull
+    public synchronized List<K> advance(long nowMillis) {
+        List<K> expired = new ArrayList<>();
+        long targetTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        // 落后超过一圈时每个槽只需检查一次
+        long ticks = Math.min(targetTick - currentTick + 1, buckets.size());
+        for (long i = 0; i < ticks; i++) {
+            Iterator<Map.Entry<K, Long>> it = buckets.get((int) ((currentTick + i) & mask)).entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<K, Long> entry = it.next();
+                if (entry.getValue() <= nowMillis) {
+                    expired.add(entry.getKey());
+                    slots.remove(entry.getKey());
+                    it.remove();
+                }
+            }
+        }
+        if (targetTick > currentTick) {
+            currentTick = targetTick;
+        }
+        return expired;
+    }
+
+    /**
+     * 已调度的键数
+     *
+     * @return 键数
+     */
+    @Contract(pure = true)
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    /**
+     * 槽数
+     *
+     * @return 槽数
+     */
+    @Contract(pure = true)
+    public int getWheelSize() {
+        return buckets.size();
+    }
+
+    /**
+     * 刻度长度
+     *
+     * @return 刻度长度(毫秒)
+     */
+    @Contract(pure = true)
+    public long getTickMillis() {
+        return tickMillis;
+    }
+}
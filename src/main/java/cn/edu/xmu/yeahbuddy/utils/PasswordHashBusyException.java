@@ -0,0 +1,52 @@
+package cn.edu.xmu.yeahbuddy.utils;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.context.MessageSource;
+import org.springframework.context.MessageSourceAware;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import javax.annotation.Resource;
+import java.util.Locale;
+
+/**
+ * 密码哈希线程池已满
+ * <p>
+ * 继承{@link InternalAuthenticationServiceException}, 使{@link org.springframework.security.authentication.ProviderManager}
+ * 不再尝试其他认证提供者而直接失败.
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashBusyException extends InternalAuthenticationServiceException implements MessageSourceAware {
+
+    private static final long serialVersionUID = 2930518826143771504L;
+
+    @NonNls
+    @Resource(name = "messageSource")
+    private MessageSource messageSource;
+
+    public PasswordHashBusyException(String msg) {
+        super(msg);
+    }
+
+    public PasswordHashBusyException(String msg, Throwable t) {
+        super(msg, t);
+    }
+
+    @Override
+    public String getLocalizedMessage() {
+        Locale locale = LocaleContextHolder.getLocale();
+        try {
+            return messageSource.getMessage(getMessage(), new Object[]{}, locale);
+        } catch (Exception e) {
+            return getMessage();
+        }
+    }
+
+    @Override
+    public void setMessageSource(@NotNull MessageSource messageSource) {
+        this.messageSource = messageSource;
+    }
+}
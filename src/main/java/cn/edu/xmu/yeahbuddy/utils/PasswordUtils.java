@@ -2,12 +2,8 @@ package cn.edu.xmu.yeahbuddy.utils;
 
 import org.jetbrains.annotations.Contract;
 
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -15,17 +11,17 @@ public final class PasswordUtils {
 
     private static final Random random = new SecureRandom();
 
-    private static final int ITERATIONS = 10000;
+    /**
+     * 未记录迭代次数的旧格式密文所用的迭代次数, 同时也是迭代次数下限
+     */
+    public static final int DEFAULT_ITERATIONS = 10000;
+
     private static final int KEY_LENGTH = 256;
-    private static final SecretKeyFactory skf;
 
-    static {
-        try {
-            skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512");
-        } catch (NoSuchAlgorithmException e) {
-            throw new ExceptionInInitializerError(e);
-        }
-    }
+    /**
+     * 每个线程持有一个PBKDF2引擎, 复用其中的缓冲区
+     */
+    private static final ThreadLocal<Pbkdf2HmacSha512> engine = ThreadLocal.withInitial(Pbkdf2HmacSha512::new);
 
     private PasswordUtils() {
     }
@@ -44,21 +40,26 @@ public final class PasswordUtils {
 
     @Contract(pure = true)
     public static boolean isExpectedPassword(char[] password, byte[] salt, byte[] expectedHash) {
-        byte[] pwdHash = hash(password, salt);
-        Arrays.fill(password, Character.MIN_VALUE);
+        return isExpectedPassword(password, salt, expectedHash, DEFAULT_ITERATIONS);
+    }
+
+    @Contract(pure = true)
+    public static boolean isExpectedPassword(char[] password, byte[] salt, byte[] expectedHash, int iterations) {
+        byte[] pwdHash = hash(password, salt, iterations);
         return MessageDigest.isEqual(pwdHash, expectedHash);
     }
 
     @Contract(pure = true)
     public static byte[] hash(char[] password, byte[] salt) {
-        PBEKeySpec spec = new PBEKeySpec(password, salt, ITERATIONS, KEY_LENGTH);
-        Arrays.fill(password, Character.MIN_VALUE);
+        return hash(password, salt, DEFAULT_ITERATIONS);
+    }
+
+    @Contract(pure = true)
+    public static byte[] hash(char[] password, byte[] salt, int iterations) {
         try {
-            return skf.generateSecret(spec).getEncoded();
-        } catch (InvalidKeySpecException e) {
-            throw new AssertionError("Error while hashing a password", e);
+            return engine.get().derive(password, salt, iterations, KEY_LENGTH / 8);
         } finally {
-            spec.clearPassword();
+            Arrays.fill(password, Character.MIN_VALUE);
         }
     }
 }
@@ -0,0 +1,312 @@
+package cn.edu.xmu.yeahbuddy.utils;
+
+import java.util.Arrays;
+
+/**
+ * PBKDF2-HMAC-SHA512
+ * <p>
+ * 与{@code SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512")}结果一致.
+ * HMAC的内外填充状态在每次派生开始时预先计算, 每轮迭代只需两次SHA-512压缩, 且不分配任何对象.
+ * 实例不是线程安全的, 由{@link PasswordUtils}按线程持有.
+ */
+final class Pbkdf2HmacSha512 {
+
+    private static final int BLOCK_SIZE = 128;
+
+    private static final int DIGEST_SIZE = 64;
+
+    private static final long PAD_BIT = 0x80L << 56;
+
+    private static final long[] IV = {
+            0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+            0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+    };
+
+    private static final long[] K = {
+            0x428a2f98d728ae22L, 0x7137449123ef65cdL, 0xb5c0fbcfec4d3b2fL, 0xe9b5dba58189dbbcL,
+            0x3956c25bf348b538L, 0x59f111f1b605d019L, 0x923f82a4af194f9bL, 0xab1c5ed5da6d8118L,
+            0xd807aa98a3030242L, 0x12835b0145706fbeL, 0x243185be4ee4b28cL, 0x550c7dc3d5ffb4e2L,
+            0x72be5d74f27b896fL, 0x80deb1fe3b1696b1L, 0x9bdc06a725c71235L, 0xc19bf174cf692694L,
+            0xe49b69c19ef14ad2L, 0xefbe4786384f25e3L, 0x0fc19dc68b8cd5b5L, 0x240ca1cc77ac9c65L,
+            0x2de92c6f592b0275L, 0x4a7484aa6ea6e483L, 0x5cb0a9dcbd41fbd4L, 0x76f988da831153b5L,
+            0x983e5152ee66dfabL, 0xa831c66d2db43210L, 0xb00327c898fb213fL, 0xbf597fc7beef0ee4L,
+            0xc6e00bf33da88fc2L, 0xd5a79147930aa725L, 0x06ca6351e003826fL, 0x142929670a0e6e70L,
+            0x27b70a8546d22ffcL, 0x2e1b21385c26c926L, 0x4d2c6dfc5ac42aedL, 0x53380d139d95b3dfL,
+            0x650a73548baf63deL, 0x766a0abb3c77b2a8L, 0x81c2c92e47edaee6L, 0x92722c851482353bL,
+            0xa2bfe8a14cf10364L, 0xa81a664bbc423001L, 0xc24b8b70d0f89791L, 0xc76c51a30654be30L,
+            0xd192e819d6ef5218L, 0xd69906245565a910L, 0xf40e35855771202aL, 0x106aa07032bbd1b8L,
+            0x19a4c116b8d2d0c8L, 0x1e376c085141ab53L, 0x2748774cdf8eeb99L, 0x34b0bcb5e19b48a8L,
+            0x391c0cb3c5c95a63L, 0x4ed8aa4ae3418acbL, 0x5b9cca4f7763e373L, 0x682e6ff3d6b2b8a3L,
+            0x748f82ee5defb2fcL, 0x78a5636f43172f60L, 0x84c87814a1f0ab72L, 0x8cc702081a6439ecL,
+            0x90befffa23631e28L, 0xa4506cebde82bde9L, 0xbef9a3f7b2c67915L, 0xc67178f2e372532bL,
+            0xca273eceea26619cL, 0xd186b8c721c0c207L, 0xeada7dd6cde0eb1eL, 0xf57d4f7fee6ed178L,
+            0x06f067aa72176fbaL, 0x0a637dc5a2c898a6L, 0x113f9804bef90daeL, 0x1b710b35131c471bL,
+            0x28db77f523047d84L, 0x32caab7b40c72493L, 0x3c9ebe0a15c9bebcL, 0x431d67c49c100d4cL,
+            0x4cc5d4becb3e42b6L, 0x597f299cfc657e2aL, 0x5fcb6fab3ad6faecL, 0x6c44198c4a475817L
+    };
+
+    private final long[] w = new long[80];
+
+    private final long[] inner = new long[8];
+
+    private final long[] outer = new long[8];
+
+    private final long[] state = new long[8];
+
+    private final long[] u = new long[8];
+
+    private final long[] t = new long[8];
+
+    private final byte[] block = new byte[BLOCK_SIZE];
+
+    private byte[] key = new byte[BLOCK_SIZE];
+
+    private byte[] message = new byte[32];
+
+    /**
+     * 派生密钥
+     *
+     * @param password   密码, 按UTF-8编码
+     * @param salt       盐
+     * @param iterations 迭代次数
+     * @param keyLength  密钥长度(字节)
+     * @return 派生的密钥
+     */
+    byte[] derive(char[] password, byte[] salt, int iterations, int keyLength) {
+        try {
+            initPads(encode(password));
+            byte[] out = new byte[keyLength];
+            int blocks = (keyLength + DIGEST_SIZE - 1) / DIGEST_SIZE;
+            for (int i = 1; i <= blocks; i++) {
+                first(salt, i);
+                System.arraycopy(u, 0, t, 0, 8);
+                for (int j = 1; j < iterations; j++) {
+                    next();
+                    for (int k = 0; k < 8; k++) {
+                        t[k] ^= u[k];
+                    }
+                }
+                int offset = (i - 1) * DIGEST_SIZE;
+                for (int b = 0; b < DIGEST_SIZE && offset + b < keyLength; b++) {
+                    out[offset + b] = (byte) (t[b >>> 3] >>> (56 - ((b & 7) << 3)));
+                }
+            }
+            return out;
+        } finally {
+            Arrays.fill(key, (byte) 0);
+            Arrays.fill(message, (byte) 0);
+            Arrays.fill(block, (byte) 0);
+            Arrays.fill(w, 0L);
+            Arrays.fill(inner, 0L);
+            Arrays.fill(outer, 0L);
+            Arrays.fill(state, 0L);
+            Arrays.fill(u, 0L);
+            Arrays.fill(t, 0L);
+        }
+    }
+
+    /**
+     * 将密码以UTF-8编码写入{@link #key}, 无法编码的孤立代理字符替换为'?', 与SunJCE一致
+     *
+     * @param password 密码
+     * @return 编码后的长度
+     */
+    private int encode(char[] password) {
+        if (key.length < password.length * 3) {
+            key = new byte[Math.max(BLOCK_SIZE, password.length * 3)];
+        }
+        int len = 0;
+        for (int i = 0; i < password.length; i++) {
+            char c = password[i];
+            if (c < 0x80) {
+                key[len++] = (byte) c;
+            } else if (c < 0x800) {
+                key[len++] = (byte) (0xc0 | (c >> 6));
+                key[len++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < password.length && Character.isLowSurrogate(password[i + 1])) {
+                int cp = Character.toCodePoint(c, password[++i]);
+                key[len++] = (byte) (0xf0 | (cp >> 18));
+                key[len++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                key[len++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                key[len++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                key[len++] = (byte) '?';
+            } else {
+                key[len++] = (byte) (0xe0 | (c >> 12));
+                key[len++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                key[len++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return len;
+    }
+
+    /**
+     * 预先计算HMAC内外填充后的SHA-512状态
+     *
+     * @param keyLength 密钥长度
+     */
+    private void initPads(int keyLength) {
+        if (keyLength > BLOCK_SIZE) {
+            System.arraycopy(IV, 0, state, 0, 8);
+            digest(state, key, keyLength, 0);
+            for (int b = 0; b < DIGEST_SIZE; b++) {
+                key[b] = (byte) (state[b >>> 3] >>> (56 - ((b & 7) << 3)));
+            }
+            keyLength = DIGEST_SIZE;
+        }
+        Arrays.fill(key, keyLength, BLOCK_SIZE, (byte) 0);
+
+        loadBlock(key, 0);
+        for (int i = 0; i < 16; i++) {
+            w[i] ^= 0x3636363636363636L;
+        }
+        System.arraycopy(IV, 0, inner, 0, 8);
+        compress(inner);
+
+        loadBlock(key, 0);
+        for (int i = 0; i < 16; i++) {
+            w[i] ^= 0x5c5c5c5c5c5c5c5cL;
+        }
+        System.arraycopy(IV, 0, outer, 0, 8);
+        compress(outer);
+    }
+
+    /**
+     * U1 = HMAC(P, S || INT(i))
+     *
+     * @param salt  盐
+     * @param index 块序号
+     */
+    private void first(byte[] salt, int index) {
+        int len = salt.length + 4;
+        if (message.length < len) {
+            message = new byte[len];
+        }
+        System.arraycopy(salt, 0, message, 0, salt.length);
+        message[salt.length] = (byte) (index >>> 24);
+        message[salt.length + 1] = (byte) (index >>> 16);
+        message[salt.length + 2] = (byte) (index >>> 8);
+        message[salt.length + 3] = (byte) index;
+
+        System.arraycopy(inner, 0, state, 0, 8);
+        digest(state, message, len, BLOCK_SIZE);
+        finishOuter();
+    }
+
+    /**
+     * Uj = HMAC(P, Uj-1), 消息恰为一个摘要长度, 内外各一次压缩
+     */
+    private void next() {
+        System.arraycopy(u, 0, w, 0, 8);
+        padSingleDigest();
+        System.arraycopy(inner, 0, state, 0, 8);
+        compress(state);
+        finishOuter();
+    }
+
+    /**
+     * 以内层摘要{@link #state}完成外层哈希, 结果写入{@link #u}
+     */
+    private void finishOuter() {
+        System.arraycopy(state, 0, w, 0, 8);
+        padSingleDigest();
+        System.arraycopy(outer, 0, u, 0, 8);
+        compress(u);
+    }
+
+    /**
+     * 填充"一个填充块 + 一个摘要"长度消息的最后一块
+     */
+    private void padSingleDigest() {
+        w[8] = PAD_BIT;
+        for (int i = 9; i < 15; i++) {
+            w[i] = 0L;
+        }
+        w[15] = (BLOCK_SIZE + DIGEST_SIZE) * 8L;
+    }
+
+    /**
+     * 从给定状态继续哈希消息并完成填充
+     *
+     * @param h        SHA-512状态
+     * @param data     消息
+     * @param len      消息长度
+     * @param absorbed 此前已压缩的字节数
+     */
+    private void digest(long[] h, byte[] data, int len, int absorbed) {
+        int offset = 0;
+        while (len - offset >= BLOCK_SIZE) {
+            loadBlock(data, offset);
+            compress(h);
+            offset += BLOCK_SIZE;
+        }
+        int rest = len - offset;
+        System.arraycopy(data, offset, block, 0, rest);
+        block[rest] = (byte) 0x80;
+        Arrays.fill(block, rest + 1, BLOCK_SIZE, (byte) 0);
+        if (rest + 1 > BLOCK_SIZE - 16) {
+            loadBlock(block, 0);
+            compress(h);
+            Arrays.fill(block, (byte) 0);
+        }
+        long bits = ((long) absorbed + len) * 8L;
+        for (int b = 0; b < 8; b++) {
+            block[BLOCK_SIZE - 1 - b] = (byte) (bits >>> (b << 3));
+        }
+        loadBlock(block, 0);
+        compress(h);
+    }
+
+    private void loadBlock(byte[] data, int offset) {
+        for (int i = 0; i < 16; i++) {
+            int p = offset + (i << 3);
+            w[i] = ((long) data[p] << 56)
+                           | ((long) (data[p + 1] & 0xff) << 48)
+                           | ((long) (data[p + 2] & 0xff) << 40)
+                           | ((long) (data[p + 3] & 0xff) << 32)
+                           | ((long) (data[p + 4] & 0xff) << 24)
+                           | ((long) (data[p + 5] & 0xff) << 16)
+                           | ((long) (data[p + 6] & 0xff) << 8)
+                           | ((long) (data[p + 7] & 0xff));
+        }
+    }
+
+    /**
+     * SHA-512压缩函数, 消息块取自{@link #w}的前16项
+     *
+     * @param h SHA-512状态
+     */
+    private void compress(long[] h) {
+        for (int i = 16; i < 80; i++) {
+            long w15 = w[i - 15];
+            long w2 = w[i - 2];
+            long s0 = Long.rotateRight(w15, 1) ^ Long.rotateRight(w15, 8) ^ (w15 >>> 7);
+            long s1 = Long.rotateRight(w2, 19) ^ Long.rotateRight(w2, 61) ^ (w2 >>> 6);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+
+        long a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], hh = h[7];
+        for (int i = 0; i < 80; i++) {
+            long t1 = hh + (Long.rotateRight(e, 14) ^ Long.rotateRight(e, 18) ^ Long.rotateRight(e, 41))
+                              + ((e & f) ^ (~e & g)) + K[i] + w[i];
+            long t2 = (Long.rotateRight(a, 28) ^ Long.rotateRight(a, 34) ^ Long.rotateRight(a, 39))
+                              + ((a & b) ^ (a & c) ^ (b & c));
+            hh = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        h[0] += a;
+        h[1] += b;
+        h[2] += c;
+        h[3] += d;
+        h[4] += e;
+        h[5] += f;
+        h[6] += g;
+        h[7] += hh;
+    }
+}
@@ -0,0 +1,101 @@
+package cn.edu.xmu.yeahbuddy.utils;
+
+import cn.edu.xmu.yeahbuddy.model.SessionPrincipal;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 最近写入过的用户
+ * <p>
+ * 用户修改数据后的一段时间内, 其只读事务仍应读主库, 避免因从库复制延迟读不到自己刚写入的内容.
+ * 按当前{@code SecurityContext}中的用户记录, 未登录的请求不记录.
+ * 条目数达到清理阈值时清理已过期条目, 记录不会因容量被丢弃.
+ */
+public final class RecentWriters {
+
+    private final long windowNanos;
+
+    private final int purgeThreshold;
+
+    private final ConcurrentHashMap<SessionPrincipal, Long> writers = new ConcurrentHashMap<>();
+
+    private final LongAdder writes = new LongAdder();
+
+    private final LongAdder pinnedReads = new LongAdder();
+
+    /**
+     * @param windowMillis   写入后读主库的时间(毫秒), 应大于从库的复制延迟, 为0时不记录
+     * @param purgeThreshold 条目数达到此值时清理已过期条目
+     */
+    public RecentWriters(long windowMillis, int purgeThreshold) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.purgeThreshold = purgeThreshold;
+    }
+
+    /**
+     * 记录当前用户的写入
+     */
+    public void recordCurrent() {
+        SessionPrincipal principal = currentPrincipal();
+        if (principal == null || windowNanos <= 0) {
+            return;
+        }
+        writes.increment();
+        long now = System.nanoTime();
+        writers.put(principal, now + windowNanos);
+        if (writers.size() >= purgeThreshold) {
+            writers.values().removeIf(expiry -> expiry - now <= 0);
+        }
+    }
+
+    /**
+     * 当前用户是否刚写入过
+     *
+     * @return 是否应读主库
+     */
+    public boolean isCurrentRecent() {
+        if (writers.isEmpty()) {
+            return false;
+        }
+        SessionPrincipal principal = currentPrincipal();
+        Long expiry = principal == null ? null : writers.get(principal);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry - System.nanoTime() <= 0) {
+            writers.remove(principal, expiry);
+            return false;
+        }
+        pinnedReads.increment();
+        return true;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stat = new LinkedHashMap<>();
+        stat.put("size", writers.size());
+        stat.put("windowMillis", TimeUnit.NANOSECONDS.toMillis(windowNanos));
+        stat.put("writes", writes.sum());
+        stat.put("pinnedReads", pinnedReads.sum());
+        return stat;
+    }
+
+    @Nullable
+    private static SessionPrincipal currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return null;
+        }
+        try {
+            return SessionPrincipal.of(authentication.getPrincipal());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package cn.edu.xmu.yeahbuddy.utils;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 签名访问Token编解码
+ * <p>
+ * Token格式为{@code base64url(载荷).base64url(HMAC-SHA256(载荷))},
+ * 载荷依次为版本, Token ID, 导师ID, 阶段ID, 签发时间, 过期时间(秒)与评议ID列表.
+ * 验证只做签名与格式检查, 过期与吊销由调用方判断.
+ */
+public final class SignedAccessTokenCodec {
+
+    @NonNls
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte VERSION = 1;
+
+    /**
+     * 版本(1) + ID(8) + 导师ID(4) + 阶段ID(4) + 签发时间(8) + 过期时间(8) + 评议数(2)
+     */
+    private static final int HEADER_LENGTH = 1 + 8 + 4 + 4 + 8 + 8 + 2;
+
+    private static final int MAX_REVIEWS = 4096;
+
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> mac;
+
+    /**
+     * @param secret 签名密钥, 至少32字节
+     */
+    public SignedAccessTokenCodec(byte[] secret) {
+        if (secret.length < 32) {
+            throw new IllegalArgumentException("secret");
+        }
+        this.key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac m = Mac.getInstance(ALGORITHM);
+                m.init(key);
+                return m;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * 编码并签名
+     *
+     * @param claims 载荷
+     * @return 访问Token
+     */
+    @NotNull
+    public String encode(Claims claims) {
+        Set<Integer> reviewIds = claims.getReviewIds();
+        if (reviewIds.size() > MAX_REVIEWS) {
+            throw new IllegalArgumentException("reviewIds");
+        }
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_LENGTH + 4 * reviewIds.size());
+        buf.put(VERSION)
+           .putLong(claims.getId())
+           .putInt(claims.getTutorId())
+           .putInt(claims.getStageId())
+           .putLong(claims.getIssuedAt())
+           .putLong(claims.getExpiresAt())
+           .putShort((short) reviewIds.size());
+        reviewIds.forEach(buf::putInt);
+
+        String payload = encoder.encodeToString(buf.array());
+        return payload + "." + encoder.encodeToString(sign(payload));
+    }
+
+    /**
+     * 验证签名并解码
+     *
+     * @param token 访问Token
+     * @return 载荷, 格式错误或签名不符时为空
+     */
+    @NotNull
+    public Optional<Claims> decode(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot != token.lastIndexOf('.')) {
+            return Optional.empty();
+        }
+        String payload = token.substring(0, dot);
+        try {
+            byte[] signature = decoder.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) {
+                return Optional.empty();
+            }
+
+            ByteBuffer buf = ByteBuffer.wrap(decoder.decode(payload));
+            if (buf.get() != VERSION) {
+                return Optional.empty();
+            }
+            long id = buf.getLong();
+            int tutorId = buf.getInt();
+            int stageId = buf.getInt();
+            long issuedAt = buf.getLong();
+            long expiresAt = buf.getLong();
+            int count = buf.getShort() & 0xffff;
+            if (buf.remaining() != 4 * count) {
+                return Optional.empty();
+            }
+            Set<Integer> reviewIds = new LinkedHashSet<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                reviewIds.add(buf.getInt());
+            }
+            return Optional.of(new Claims(id, tutorId, stageId, reviewIds, issuedAt, expiresAt));
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String payload) {
+        return mac.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 访问Token载荷
+     */
+    public static final class Claims {
+
+        private final long id;
+
+        private final int tutorId;
+
+        private final int stageId;
+
+        private final Set<Integer> reviewIds;
+
+        private final long issuedAt;
+
+        private final long expiresAt;
+
+        /**
+         * @param id        Token ID, 用于吊销
+         * @param tutorId   导师ID
+         * @param stageId   阶段ID
+         * @param reviewIds 可填写的评议ID
+         * @param issuedAt  签发时间(epoch秒)
+         * @param expiresAt 过期时间(epoch秒)
+         */
+        public Claims(long id, int tutorId, int stageId, Set<Integer> reviewIds, long issuedAt, long expiresAt) {
+            this.id = id;
+            this.tutorId = tutorId;
+            this.stageId = stageId;
+            this.reviewIds = Collections.unmodifiableSet(reviewIds);
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        @Contract(pure = true)
+        public long getId() {
+            return id;
+        }
+
+        @Contract(pure = true)
+        public int getTutorId() {
+            return tutorId;
+        }
+
+        @Contract(pure = true)
+        public int getStageId() {
+            return stageId;
+        }
+
+        @Contract(pure = true)
+        public Set<Integer> getReviewIds() {
+            return reviewIds;
+        }
+
+        @Contract(pure = true)
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+
+        @Contract(pure = true)
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("id:%016x tutorId:%d stageId:%d reviewIds:%s issuedAt:%d expiresAt:%d", id, tutorId, stageId, reviewIds, issuedAt, expiresAt);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package cn.edu.xmu.yeahbuddy.utils;
+
+import org.jetbrains.annotations.Contract;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁令牌桶限流器
+ * <p>
+ * 以Count-Min草图的方式组织: {@code depth}行, 每行{@code width}个令牌桶, 键经带随机种子的哈希映射到每行的一个桶.
+ * 取各行中令牌最多的桶作为估计值(受其他键碰撞影响最小), 足够时从各行的桶中各扣除一个令牌.
+ * 内存固定为{@code depth * width}个long, 与键的数量无关.
+ * <p>
+ * 每个桶的状态打包在一个long中: 高22位为千分之一令牌数, 低42位为上次补充时间(毫秒), 用CAS更新.
+ * 时间为0表示桶从未使用, 视为满.
+ */
+public final class TokenBucketLimiter {
+
+    private static final int TIME_BITS = 42;
+
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+
+    private static final long MILLI_TOKENS_PER_TOKEN = 1000;
+
+    private static final long MAX_MILLI_TOKENS = (1L << (64 - TIME_BITS)) - 1;
+
+    private final int width;
+
+    private final int depth;
+
+    private final long capacity;
+
+    private final double refillPerMilli;
+
+    private final long[] seeds;
+
+    private final AtomicLongArray buckets;
+
+    private final long origin = System.nanoTime();
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param width           每行桶数
+     * @param depth           行数
+     * @param capacity        桶容量(令牌), 即允许的突发请求数
+     * @param refillPerMinute 每分钟补充的令牌数
+     */
+    public TokenBucketLimiter(int width, int depth, int capacity, double refillPerMinute) {
+        if (width <= 0 || depth <= 0 || capacity <= 0 || refillPerMinute <= 0
+                    || capacity * MILLI_TOKENS_PER_TOKEN > MAX_MILLI_TOKENS) {
+            throw new IllegalArgumentException();
+        }
+        this.width = width;
+        this.depth = depth;
+        this.capacity = capacity * MILLI_TOKENS_PER_TOKEN;
+        this.refillPerMilli = refillPerMinute * MILLI_TOKENS_PER_TOKEN / TimeUnit.MINUTES.toMillis(1);
+        this.seeds = new SecureRandom().longs(depth).toArray();
+        this.buckets = new AtomicLongArray(width * depth);
+    }
+
+    /**
+     * 尝试取得一个令牌
+     *
+     * @param key 限流键
+     * @return 是否允许
+     */
+    public boolean tryAcquire(String key) {
+        return tryAcquire(key, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin) + 1);
+    }
+
+    /**
+     * 尝试取得一个令牌
+     *
+     * @param key       限流键
+     * @param nowMillis 当前时间(毫秒, 大于0且单调递增)
+     * @return 是否允许
+     */
+    public boolean tryAcquire(String key, long nowMillis) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int[] slots = new int[depth];
+        long best = 0;
+        for (int row = 0; row < depth; row++) {
+            slots[row] = row * width + (int) Long.remainderUnsigned(hash(bytes, seeds[row]), width);
+            best = Math.max(best, refill(buckets.get(slots[row]), nowMillis));
+        }
+        if (best < MILLI_TOKENS_PER_TOKEN) {
+            rejected.increment();
+            return false;
+        }
+        for (int slot : slots) {
+            while (true) {
+                long state = buckets.get(slot);
+                long tokens = Math.max(refill(state, nowMillis) - MILLI_TOKENS_PER_TOKEN, 0);
+                if (buckets.compareAndSet(slot, state, tokens << TIME_BITS | nowMillis & TIME_MASK)) {
+                    break;
+                }
+            }
+        }
+        admitted.increment();
+        return true;
+    }
+
+    /**
+     * 清空所有桶, 之后的请求都视为首次
+     */
+    public void reset() {
+        for (int slot = 0; slot < buckets.length(); slot++) {
+            buckets.set(slot, 0);
+        }
+    }
+
+    /**
+     * 补充一个令牌所需的时间
+     *
+     * @return 秒, 向上取整
+     */
+    @Contract(pure = true)
+    public long getRetryAfterSeconds() {
+        return (long) Math.ceil(MILLI_TOKENS_PER_TOKEN / refillPerMilli / 1000);
+    }
+
+    /**
+     * 限流统计
+     *
+     * @return 容量, 补充速度与允许/拒绝次数
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stat = new LinkedHashMap<>();
+        stat.put("buckets", width * depth);
+        stat.put("capacity", capacity / MILLI_TOKENS_PER_TOKEN);
+        stat.put("refillPerMinute", refillPerMilli * TimeUnit.MINUTES.toMillis(1) / MILLI_TOKENS_PER_TOKEN);
+        stat.put("admitted", admitted.sum());
+        stat.put("rejected", rejected.sum());
+        return stat;
+    }
+
+    private long refill(long state, long nowMillis) {
+        long last = state & TIME_MASK;
+        if (last == 0) {
+            return capacity;
+        }
+        long tokens = state >>> TIME_BITS;
+        long elapsed = Math.max(nowMillis - last, 0);
+        return Math.min(capacity, tokens + (long) (elapsed * refillPerMilli));
+    }
+
+    /**
+     * 带种子的FNV-1a, 以MurmurHash3的fmix64收尾
+     */
+    private static long hash(byte[] bytes, long seed) {
+        long h = seed ^ 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
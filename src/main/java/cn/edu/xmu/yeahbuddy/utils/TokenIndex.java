@@ -0,0 +1,288 @@
+package cn.edu.xmu.yeahbuddy.utils;
+
+import cn.edu.xmu.yeahbuddy.model.ValidatedToken;
+import org.jetbrains.annotations.Contract;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已验证Token索引
+ * <p>
+ * 正向索引保存未过期的Token快照, 条目在Token结束时间之后自动失效.
+ * 反向(负)缓存记录不存在或已吊销的Token值, 在存活时间内直接拒绝, 不再查询数据库.
+ * 两者均有容量上限; 正向索引已满时不再加入新条目, 负缓存已满时先清理过期条目, 仍满则整体清空.
+ * <p>
+ * 在事务中写入的条目在提交后才可见; 失效立即生效, 并在事务结束后再执行一次,
+ * 避免其他线程在提交前读到旧数据并重新放入索引.
+ */
+public final class TokenIndex {
+
+    /**
+     * 查找结果
+     */
+    public enum State {
+        /**
+         * 未缓存, 需要查询数据库
+         */
+        UNKNOWN,
+        /**
+         * 有效
+         */
+        VALID,
+        /**
+         * 不存在
+         */
+        NOT_FOUND,
+        /**
+         * 已吊销或过期
+         */
+        REVOKED
+    }
+
+    private final int maxSize;
+
+    private final int negativeMaxSize;
+
+    private final long negativeTtlNanos;
+
+    private final ConcurrentHashMap<String, ValidatedToken> valid = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Negative> negative = new ConcurrentHashMap<>();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder negativeHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize            正向索引最大条目数
+     * @param negativeMaxSize    负缓存最大条目数
+     * @param negativeTtlSeconds 负缓存存活时间(秒)
+     */
+    public TokenIndex(int maxSize, int negativeMaxSize, long negativeTtlSeconds) {
+        this.maxSize = maxSize;
+        this.negativeMaxSize = negativeMaxSize;
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+    }
+
+    /**
+     * 当前失效计数
+     * 在查询数据库之前取得, 传给{@link #put(ValidatedToken, long)}
+     *
+     * @return 失效计数
+     */
+    @Contract(pure = true)
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * 查找Token状态
+     *
+     * @param tokenValue Token值
+     * @return 状态
+     */
+    public State lookup(String tokenValue) {
+        ValidatedToken token = valid.get(tokenValue);
+        if (token != null) {
+            if (!token.isRevoked()) {
+                hits.increment();
+                return State.VALID;
+            }
+            valid.remove(tokenValue, token);
+            putNegative(tokenValue, true);
+            negativeHits.increment();
+            return State.REVOKED;
+        }
+
+        Negative neg = negative.get(tokenValue);
+        if (neg != null) {
+            if (System.nanoTime() - neg.expiresAt <= 0) {
+                negativeHits.increment();
+                return neg.revoked ? State.REVOKED : State.NOT_FOUND;
+            }
+            negative.remove(tokenValue, neg);
+        }
+
+        misses.increment();
+        return State.UNKNOWN;
+    }
+
+    /**
+     * 取得有效Token
+     * 仅在{@link #lookup(String)}返回{@link State#VALID}后调用
+     *
+     * @param tokenValue Token值
+     * @return Token快照, 可能已在此期间被移除
+     */
+    public ValidatedToken get(String tokenValue) {
+        return valid.get(tokenValue);
+    }
+
+    /**
+     * 加入有效Token
+     * 若取得{@code stamp}之后有失效发生, 数据可能已过时, 不加入
+     *
+     * @param token Token快照
+     * @param stamp 查询前由{@link #stamp()}取得的失效计数
+     */
+    public void put(ValidatedToken token, long stamp) {
+        afterCommit(() -> {
+            if (stamp != invalidations.get() || token.isRevoked()) {
+                return;
+            }
+            if (valid.size() >= maxSize) {
+                purgeExpired();
+                if (valid.size() >= maxSize) {
+                    return;
+                }
+            }
+            negative.remove(token.getTokenValue());
+            valid.put(token.getTokenValue(), token);
+        });
+    }
+
+    /**
+     * 记录不存在的Token值
+     *
+     * @param tokenValue Token值
+     */
+    public void putNotFound(String tokenValue) {
+        putNegative(tokenValue, false);
+    }
+
+    /**
+     * 记录已吊销或过期的Token值
+     *
+     * @param tokenValue Token值
+     */
+    public void putRevoked(String tokenValue) {
+        putNegative(tokenValue, true);
+    }
+
+    /**
+     * 吊销Token
+     * 从正向索引移除并记入负缓存
+     *
+     * @param tokenValue Token值
+     */
+    public void revoke(String tokenValue) {
+        invalidations.incrementAndGet();
+        valid.remove(tokenValue);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidations.incrementAndGet();
+                    valid.remove(tokenValue);
+                    if (status == STATUS_COMMITTED) {
+                        putNegative(tokenValue, true);
+                    }
+                }
+            });
+        } else {
+            putNegative(tokenValue, true);
+        }
+    }
+
+    /**
+     * 移除Token值的所有记录
+     * 用于新建Token或Token所属导师被删除
+     *
+     * @param tokenValue Token值
+     */
+    public void invalidate(String tokenValue) {
+        Runnable r = () -> {
+            invalidations.incrementAndGet();
+            valid.remove(tokenValue);
+            negative.remove(tokenValue);
+        };
+        r.run();
+        afterCompletion(r);
+    }
+
+    /**
+     * 索引统计
+     *
+     * @return 条目数与命中/负缓存命中/未命中次数
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stat = new LinkedHashMap<>();
+        stat.put("size", valid.size());
+        stat.put("maxSize", maxSize);
+        stat.put("negativeSize", negative.size());
+        stat.put("negativeMaxSize", negativeMaxSize);
+        stat.put("negativeTtlSeconds", TimeUnit.NANOSECONDS.toSeconds(negativeTtlNanos));
+        stat.put("hits", hits.sum());
+        stat.put("negativeHits", negativeHits.sum());
+        stat.put("misses", misses.sum());
+        stat.put("invalidations", invalidations.get());
+        return stat;
+    }
+
+    private void putNegative(String tokenValue, boolean revoked) {
+        if (negativeMaxSize <= 0) {
+            return;
+        }
+        if (negative.size() >= negativeMaxSize) {
+            long now = System.nanoTime();
+            negative.values().removeIf(n -> now - n.expiresAt > 0);
+            if (negative.size() >= negativeMaxSize) {
+                negative.clear();
+            }
+        }
+        negative.put(tokenValue, new Negative(revoked, System.nanoTime() + negativeTtlNanos));
+    }
+
+    private void purgeExpired() {
+        Instant now = Instant.now();
+        valid.values().removeIf(t -> t.getEnd().toInstant().isBefore(now));
+    }
+
+    private static void afterCommit(Runnable r) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    r.run();
+                }
+            });
+        } else {
+            r.run();
+        }
+    }
+
+    private static void afterCompletion(Runnable r) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    r.run();
+                }
+            });
+        }
+    }
+
+    private static final class Negative {
+
+        private final boolean revoked;
+
+        private final long expiresAt;
+
+        private Negative(boolean revoked, long expiresAt) {
+            this.revoked = revoked;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -10,11 +10,11 @@ import org.jetbrains.annotations.NonNls;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
-import org.springframework.data.util.Pair;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -25,7 +25,6 @@ import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Controller
 public class AdministratorController {
@@ -45,6 +44,8 @@ public class AdministratorController {
 
     private final ReviewService reviewService;
 
+    private final ReviewAssignmentService reviewAssignmentService;
+
     private final ResultService resultService;
 
     private final StageService stageService;
@@ -52,13 +53,14 @@ public class AdministratorController {
     private final MessageSource messageSource;
 
     @Autowired
-    public AdministratorController(AdministratorService administratorService, ReportService reportService, TokenService tokenService, TeamService teamService, TutorService tutorService, ReviewService reviewService, ResultService resultService, StageService stageService, MessageSource messageSource) {
+    public AdministratorController(AdministratorService administratorService, ReportService reportService, TokenService tokenService, TeamService teamService, TutorService tutorService, ReviewService reviewService, ReviewAssignmentService reviewAssignmentService, ResultService resultService, StageService stageService, MessageSource messageSource) {
         this.administratorService = administratorService;
         this.reportService = reportService;
         this.tokenService = tokenService;
         this.teamService = teamService;
         this.tutorService = tutorService;
         this.reviewService = reviewService;
+        this.reviewAssignmentService = reviewAssignmentService;
         this.resultService = resultService;
         this.stageService = stageService;
         this.messageSource = messageSource;
@@ -67,7 +69,7 @@ public class AdministratorController {
     @GetMapping("/admin")
     @PreAuthorize("T(cn.edu.xmu.yeahbuddy.service.AdministratorService).isAdministrator(principal)")
     public RedirectView index() {
-        int id = ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId();
+        int id = AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId();
         return new RedirectView(String.format("/admin/%d", id), false, false);
     }
 
@@ -109,23 +111,22 @@ public class AdministratorController {
     @GetMapping("/task/create")
     @PreAuthorize("hasAuthority('ManageTask')")
     public String createTask(Model model) {
-        List<Team> teams = teamService.findAllTeams();
+        List<TeamSummary> teams = teamService.findAllTeamSummaries();
 
         Timestamp current = new Timestamp(System.currentTimeMillis());
         List<Stage> stages = stageService.findByEndAfter(current);
         model.addAttribute("teams", teams);
         model.addAttribute("stages", stages);
         model.addAttribute("formAction", "/task/create");
-        model.addAttribute("adminId",  ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("adminId",  AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
         return "admin/taskCreate";
     }
 
     @PostMapping("/task/create")
     @PreAuthorize("hasAuthority('ManageTask')")
     public RedirectView createTask(StageCreationDto dto, Model model) {
-        List<Team> teams = dto.getTeamChosen().stream().map(teamService::loadById).collect(Collectors.toList());
         Stage stage = stageService.createStage(dto.getId(), new StageDto().setStart(dto.getStart()).setEnd(dto.getEnd()).setTitle(dto.getTitle()));
-        teams.forEach(team -> reportService.createReport(team, stage, dto.getTitle()));
+        reportService.createReports(dto.getTeamChosen(), stage, dto.getTitle());
         return new RedirectView("/task/create", false, false);
     }
 
@@ -136,7 +137,7 @@ public class AdministratorController {
         List<Stage> stages = stageService.findByEndBefore(current);
 
         model.addAttribute("stages", stages);
-        model.addAttribute("adminId",  ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("adminId",  AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
 
         return "admin/taskHistory";
     }
@@ -150,10 +151,10 @@ public class AdministratorController {
             throw new ResourceNotFoundException("stage.id.not_found", stageId);
         }
 
-        List<Report> reports = reportService.findByStage(stage.get());
+        List<ReportListItem> reports = reportService.findListItemsByStage(stageId);
         model.addAttribute("stage", stage.get());
         model.addAttribute("reports", reports);
-        model.addAttribute("adminId",  ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("adminId",  AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
         return "admin/taskDetail";
     }
 
@@ -165,17 +166,13 @@ public class AdministratorController {
     @PreAuthorize("hasAuthority('ManageToken')")
     public String createToken(@PathVariable("stageId") int stageId, Model model) {
         Stage stage = stageService.loadById(stageId);
-        List<Team> teams = resultService.findBySubmittedFalse()
-                                        .stream().filter(result -> result.getStage().equals(stage))
-                                        .filter(result -> reviewService.findByReport(result.getReport()).isEmpty())
-                                        .map(Result::getTeam)
-                                        .collect(Collectors.toList());
+        List<TeamSummary> teams = reportService.findTeamsAwaitingReview(stage);
 
         model.addAttribute("stage", stage);
         model.addAttribute("teams", teams);
-        model.addAttribute("tutors", tutorService.findAllTutors());
+        model.addAttribute("tutors", tutorService.findAllTutorListItems());
         model.addAttribute("formAction", String.format("/token/create/%d", stageId));
-        model.addAttribute("adminId",  ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("adminId",  AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
 
         return "admin/tokenCreate";
     }
@@ -184,53 +181,112 @@ public class AdministratorController {
     @PreAuthorize("hasAuthority('ManageToken')")
     public RedirectView createToken(@PathVariable("stageId") int stageId, TokenCreationDto dto, Model model) {
         Stage stage = stageService.loadById(stageId);
-        List<Team> teams = dto.getTeamChosen().stream().map(teamService::loadById).collect(Collectors.toList());
-        List<Report> reports = teams.stream().map(team -> reportService.find(team, stage)).flatMap(o -> o.map(Stream::of).orElseGet(Stream::empty)).collect(Collectors.toList());
-        List<Tutor> tutors = dto.getTutorChosen().stream().map(tutorService::loadById).collect(Collectors.toList());
-        List<Pair<Tutor, Set<Review>>> list = tutors.stream().map(
-                tutor -> Pair.of(tutor, reports.stream().map(report -> reviewService.createReview(report, tutor)).collect(Collectors.toSet()))
-        ).collect(Collectors.toList());
-        list.forEach(
-                pair -> tokenService.createToken(pair.getFirst(), pair.getSecond(), dto.getEnd())
-        );
+        reviewAssignmentService.assign(stage, dto.getTeamChosen(), dto.getTutorChosen(), dto.getEnd());
         return new RedirectView(String.format("/token/create/%d", stageId), false, false);
     }
 
     @GetMapping("/token/current")
     @PreAuthorize("hasAuthority('ManageToken')")
     public String currentTokens(Model model) {
-        model.addAttribute("tokens", tokenService.findByNotRevoked());
+        List<TokenListItem> tokens = tokenService.findNotRevokedListItems();
+        model.addAttribute("tokens", tokens);
+        if (tokenService.isAccessTokenEnabled()) {
+            Map<String, String> accessTokens = tokenService.issueAccessTokens(tokens);
+            model.addAttribute("accessLinks", tokens.stream().collect(Collectors.toMap(TokenListItem::getTokenValue,
+                    t -> accessLink(t.getTutorId(), accessTokens.get(t.getTokenValue())))));
+        }
         model.addAttribute("stages", stageService.findByEndAfter(Timestamp.from(Instant.now())));
-        model.addAttribute("adminId",  ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("adminId",  AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
 
         return "admin/tokenCurrent";
     }
 
+    @PostMapping(value = "/token/{tokenValue:[a-zA-Z0-9]+}/access", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ManageToken')")
+    public ResponseEntity<Map<String, String>> issueAccessLink(@PathVariable String tokenValue) {
+        if (!tokenService.isAccessTokenEnabled()) {
+            throw new ResourceNotFoundException("token.access.disabled", tokenValue);
+        }
+        Token token = tokenService.findById(tokenValue)
+                                  .filter(t -> !t.isRevoked())
+                                  .orElseThrow(() -> new ResourceNotFoundException("token.not_found", tokenValue));
+        Map<String, String> result = new HashMap<>();
+        Locale locale = LocaleContextHolder.getLocale();
+        result.put("status", messageSource.getMessage("response.ok", new Object[]{}, locale));
+        result.put("message", messageSource.getMessage("token.access.issue.ok", new Object[]{}, locale));
+        result.put("url", accessLink(token));
+        return ResponseEntity.ok(result);
+    }
+
+    @DeleteMapping(value = "/token/{tokenValue:[a-zA-Z0-9]+}/access", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ManageToken')")
+    public ResponseEntity<Map<String, String>> revokeAccessLinks(@PathVariable String tokenValue) {
+        if (!tokenService.isAccessTokenEnabled()) {
+            throw new ResourceNotFoundException("token.access.disabled", tokenValue);
+        }
+        try {
+            tokenService.revokeAccessTokensOf(tokenValue);
+        } catch (AuthenticationException e) {
+            throw new ResourceNotFoundException("token.not_found", tokenValue, e);
+        }
+        Map<String, String> result = new HashMap<>();
+        Locale locale = LocaleContextHolder.getLocale();
+        result.put("status", messageSource.getMessage("response.ok", new Object[]{}, locale));
+        result.put("message", messageSource.getMessage("token.access.revoke.ok", new Object[]{}, locale));
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping(value = "/token/revoke/stage/{stageId:\\d+}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ManageToken')")
+    public ResponseEntity<Map<String, String>> revokeStageTokens(@PathVariable int stageId) {
+        int count = tokenService.revokeTokensByStage(stageId);
+        Map<String, String> result = new HashMap<>();
+        Locale locale = LocaleContextHolder.getLocale();
+        result.put("status", messageSource.getMessage("response.ok", new Object[]{}, locale));
+        result.put("message", messageSource.getMessage("token.revoke.ok", new Object[]{count}, locale));
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping(value = "/token/revoke/tutor/{tutorId:\\d+}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ManageToken')")
+    public ResponseEntity<Map<String, String>> revokeTutorTokens(@PathVariable int tutorId) {
+        int count = tokenService.revokeTokensByTutor(tutorId);
+        Map<String, String> result = new HashMap<>();
+        Locale locale = LocaleContextHolder.getLocale();
+        result.put("status", messageSource.getMessage("response.ok", new Object[]{}, locale));
+        result.put("message", messageSource.getMessage("token.revoke.ok", new Object[]{count}, locale));
+        return ResponseEntity.ok(result);
+    }
+
     //TODO:获取所有已截止的token（OK）
     @GetMapping("/token/history")
     @PreAuthorize("hasAuthority('ManageToken')")
     public String allTokens(Model model) {
-        model.addAttribute("tokens", tokenService.findByRevoked());
-        model.addAttribute("adminId",  ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("tokens", tokenService.findRevokedPage(null, null, KeysetPage.DEFAULT_SIZE));
+        model.addAttribute("adminId",  AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
 
         return "admin/tokenHistory";
     }
 
+    @GetMapping(value = "/token/history/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ManageToken')")
+    public ResponseEntity<KeysetPage<TokenListItem>> tokenHistoryPage(@RequestParam(required = false) Long afterEnd,
+                                                                      @RequestParam(required = false) String afterToken,
+                                                                      @RequestParam(required = false) Integer size) {
+        Timestamp end = afterEnd == null ? null : new Timestamp(afterEnd);
+        return ResponseEntity.ok(tokenService.findRevokedPage(end, afterToken, size == null ? KeysetPage.DEFAULT_SIZE : size));
+    }
+
     @GetMapping("/result/current")
     @PreAuthorize("hasAuthority('ViewReview')")
     public String reportViewAndResult(Model model) {
-        List<Result> results = resultService.findBySubmittedFalse();
-        Map<Integer, String> stat = new HashMap<>();
-        results.stream()
-               .map(result -> Pair.of(result, reviewService.findByReport(result.getReport())))
-               .forEach(pair -> {
-                   String status = String.format("%d/%d", pair.getSecond().stream().filter(Review::isSubmitted).count(), pair.getSecond().size());
-                   stat.put(pair.getFirst().getId(), status);
-
-               });
+        List<ResultSummary> results = resultService.findSummariesBySubmittedFalse();
+        Map<Integer, String> stat = reviewService.findProgressOfOpenResults()
+                                                 .stream()
+                                                 .collect(Collectors.toMap(ReviewProgress::getResultId, ReviewProgress::getStatus));
         model.addAttribute("results", results);
         model.addAttribute("reviewStat", stat);
-        model.addAttribute("adminId",  ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("adminId",  AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
 
         return "admin/results";
     }
@@ -238,29 +294,36 @@ public class AdministratorController {
     @GetMapping("/result/history")
     @PreAuthorize("hasAuthority('ViewReport')")
     public String reportHistory(Model model) {
-        List<Result> results = resultService.findBySubmittedTrue();
-        model.addAttribute("results", results);
-        model.addAttribute("adminId",  ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("results", resultService.findSubmittedPage(null, KeysetPage.DEFAULT_SIZE));
+        model.addAttribute("adminId",  AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
 
         return "admin/reportHistory";
     }
 
+    @GetMapping(value = "/result/history/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ViewReport')")
+    public ResponseEntity<KeysetPage<ResultSummary>> reportHistoryPage(@RequestParam(required = false) Integer before,
+                                                                       @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(resultService.findSubmittedPage(before, size == null ? KeysetPage.DEFAULT_SIZE : size));
+    }
+
     @GetMapping("/result/{resultId:\\d+}")
     @PreAuthorize("hasAuthority('SetResult')")
     public String result(@PathVariable int resultId, Model model) {
-        Optional<Result> result = resultService.findById(resultId);
+        Optional<ResultDetail> result = resultService.findDetailById(resultId);
         if (!result.isPresent()) {
             throw new ResourceNotFoundException("result.id.not_found", resultId);
         }
 
-        List<Review> reviews = reviewService.findByReport(result.get().getReport()).stream().filter(Review::isSubmitted).collect(Collectors.toList());
+        ReportDetail report = result.get().getReport();
+        List<ReviewDetail> reviews = reviewService.findSubmittedByReport(report.getId());
 
         model.addAttribute("reviews", reviews);
         model.addAttribute("result", result.get());
-        model.addAttribute("report", result.get().getReport());
-        model.addAttribute("team", result.get().getTeam());
+        model.addAttribute("report", report);
+        model.addAttribute("team", report.getTeam());
         model.addAttribute("formAction", String.format("/result/%d", resultId));
-        model.addAttribute("adminId",  ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("adminId",  AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
 
         return "admin/result";
     }
@@ -287,20 +350,32 @@ public class AdministratorController {
 
     @GetMapping("/admin/tutor")
     public String adminTutors(Model model){
-        List<Tutor> tutors = tutorService.findAllTutors();
-        model.addAttribute("tutors",tutors);
-        model.addAttribute("adminId", ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("tutors", tutorService.findTutorPage(null, KeysetPage.DEFAULT_SIZE));
+        model.addAttribute("adminId", AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
         return "admin/tutorAdmin";
     }
 
+    @GetMapping(value = "/admin/tutor/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ManageTutor')")
+    public ResponseEntity<KeysetPage<TutorListItem>> adminTutorsPage(@RequestParam(required = false) Integer after,
+                                                                     @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(tutorService.findTutorPage(after, size == null ? KeysetPage.DEFAULT_SIZE : size));
+    }
+
     @GetMapping("/admin/team")
     public String adminTeams(Model model){
-        List<Team> teams = teamService.findAllTeams();
-        model.addAttribute("teams",teams);
-        model.addAttribute("adminId", ((Administrator) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
+        model.addAttribute("teams", teamService.findTeamPage(null, KeysetPage.DEFAULT_SIZE));
+        model.addAttribute("adminId", AdministratorService.asAdministrator(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
         return "admin/teamAdmin";
     }
 
+    @GetMapping(value = "/admin/team/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ManageTeam')")
+    public ResponseEntity<KeysetPage<TeamListItem>> adminTeamsPage(@RequestParam(required = false) Integer after,
+                                                                   @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(teamService.findTeamPage(after, size == null ? KeysetPage.DEFAULT_SIZE : size));
+    }
+
 
     @PostMapping(value = "/admin/{adminId:\\d+}/password", produces = MediaType.TEXT_HTML_VALUE)
     @PreAuthorize("hasAuthority('ManageAdministrator') " +
@@ -332,4 +407,12 @@ public class AdministratorController {
         model.addAttribute("formAction", String.format("/admin/%d/password", adminId));
         return "admin/password";
     }
+
+    private String accessLink(Token token) {
+        return accessLink(token.getTutorId(), tokenService.issueAccessToken(token));
+    }
+
+    private static String accessLink(int tutorId, String accessToken) {
+        return String.format("/tutor/%d/review?access_token=%s", tutorId, accessToken);
+    }
 }
@@ -1,6 +1,7 @@
 package cn.edu.xmu.yeahbuddy.web;
 
 import cn.edu.xmu.yeahbuddy.domain.Report;
+import cn.edu.xmu.yeahbuddy.model.ReportDetail;
 import cn.edu.xmu.yeahbuddy.model.ReportDto;
 import cn.edu.xmu.yeahbuddy.service.ReportService;
 import cn.edu.xmu.yeahbuddy.utils.ResourceNotFoundException;
@@ -45,7 +46,7 @@ public class ReportController {
     @GetMapping("/report/{reportId:\\d+}")
     @PreAuthorize("hasRole('TEAM') && @reportService.findById(#reportId).get().team.id == T(cn.edu.xmu.yeahbuddy.service.TeamService).asTeam(principal).id")
     public String report(@PathVariable int reportId, Model model) {
-        Optional<Report> report = reportService.findById(reportId);
+        Optional<ReportDetail> report = reportService.findDetailById(reportId);
         if (!report.isPresent()) {
             throw new ResourceNotFoundException("report.id.not_found", reportId);
         }
@@ -1,6 +1,8 @@
 package cn.edu.xmu.yeahbuddy.web;
 
 import cn.edu.xmu.yeahbuddy.domain.Review;
+import cn.edu.xmu.yeahbuddy.model.ReportDetail;
+import cn.edu.xmu.yeahbuddy.model.ReviewDetail;
 import cn.edu.xmu.yeahbuddy.model.ReviewDto;
 import cn.edu.xmu.yeahbuddy.service.ReportService;
 import cn.edu.xmu.yeahbuddy.service.ReviewService;
@@ -46,15 +48,16 @@ public class ReviewController {
     @GetMapping("/review/{reviewId:\\d+}")
     @PreAuthorize("hasRole('TUTOR') && @reviewService.findById(#reviewId).get().tutor.id == T(cn.edu.xmu.yeahbuddy.service.TutorService).asTutor(principal).id")
     public String review(@PathVariable int reviewId, Model model) {
-        Optional<Review> review = reviewService.findById(reviewId);
+        Optional<ReviewDetail> review = reviewService.findDetailById(reviewId);
         if (!review.isPresent()) {
             throw new ResourceNotFoundException("tutor.review.not_found", reviewId);
         }
 
-        model.addAttribute("team", review.get().getTeam());
-        model.addAttribute("report", review.get().getReport());
+        ReportDetail report = review.get().getReport();
+        model.addAttribute("team", report.getTeam());
+        model.addAttribute("report", report);
         model.addAttribute("review", review.get());
-        model.addAttribute("tutorId", review.get().getTutor().getId());
+        model.addAttribute("tutorId", review.get().getTutorId());
 
         if (review.get().isSubmitted()) {
             model.addAttribute("readOnly", true);
@@ -0,0 +1,63 @@
+package cn.edu.xmu.yeahbuddy.web;
+
+import cn.edu.xmu.yeahbuddy.service.EntityCacheService;
+import cn.edu.xmu.yeahbuddy.service.LockingUpdateService;
+import cn.edu.xmu.yeahbuddy.service.LoginThrottleService;
+import cn.edu.xmu.yeahbuddy.service.TokenService;
+import cn.edu.xmu.yeahbuddy.service.YbPasswordEncodeService;
+import cn.edu.xmu.yeahbuddy.utils.RecentWriters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行统计
+ */
+@Controller
+public class StatisticsController {
+
+    private final YbPasswordEncodeService ybPasswordEncodeService;
+
+    private final TokenService tokenService;
+
+    private final LoginThrottleService loginThrottleService;
+
+    private final LockingUpdateService lockingUpdateService;
+
+    private final RecentWriters recentWriters;
+
+    private final EntityCacheService entityCacheService;
+
+    @Autowired
+    public StatisticsController(YbPasswordEncodeService ybPasswordEncodeService, TokenService tokenService,
+                                LoginThrottleService loginThrottleService, LockingUpdateService lockingUpdateService,
+                                RecentWriters recentWriters, EntityCacheService entityCacheService) {
+        this.ybPasswordEncodeService = ybPasswordEncodeService;
+        this.tokenService = tokenService;
+        this.loginThrottleService = loginThrottleService;
+        this.lockingUpdateService = lockingUpdateService;
+        this.recentWriters = recentWriters;
+        this.entityCacheService = entityCacheService;
+    }
+
+    @GetMapping(value = "/admin/statistics", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ManageAdministrator')")
+    public ResponseEntity<Map<String, Object>> statistics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("passwordHash", ybPasswordEncodeService.getStatistics());
+        result.put("tokenIndex", tokenService.getTokenIndexStatistics());
+        result.put("accessToken", tokenService.getAccessTokenStatistics());
+        result.put("tokenExpiry", tokenService.getTokenExpiryStatistics());
+        result.put("loginThrottle", loginThrottleService.getStatistics());
+        result.put("locking", lockingUpdateService.getStatistics());
+        result.put("recentWriters", recentWriters.getStatistics());
+        result.put("entityCache", entityCacheService.getStatistics());
+        return ResponseEntity.ok(result);
+    }
+}
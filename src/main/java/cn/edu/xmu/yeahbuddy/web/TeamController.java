@@ -58,7 +58,7 @@ public class TeamController {
     @GetMapping({"/team", "/team/"})
     @PreAuthorize("hasRole('TEAM')")
     public RedirectView index() {
-        int id = ((Team) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId();
+        int id = TeamService.asTeam(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId();
         return new RedirectView(String.format("/team/%d", id), false, false);
     }
 
@@ -79,8 +79,8 @@ public class TeamController {
             throw new ResourceNotFoundException("team.id.not_found", teamId);
         }
 
-        if (SecurityContextHolder.getContext().getAuthentication().getPrincipal() instanceof Team) {
-            model.addAttribute("readOnly", ((Team) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId() != teamId);
+        if (TeamService.isTeam(SecurityContextHolder.getContext().getAuthentication().getPrincipal())) {
+            model.addAttribute("readOnly", TeamService.asTeam(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId() != teamId);
         }
 
         model.addAttribute("team", team.get());
@@ -1,9 +1,9 @@
 package cn.edu.xmu.yeahbuddy.web;
 
 import cn.edu.xmu.yeahbuddy.domain.Review;
-import cn.edu.xmu.yeahbuddy.domain.Token;
 import cn.edu.xmu.yeahbuddy.domain.Tutor;
 import cn.edu.xmu.yeahbuddy.model.TutorDto;
+import cn.edu.xmu.yeahbuddy.model.ValidatedToken;
 import cn.edu.xmu.yeahbuddy.service.ReviewService;
 import cn.edu.xmu.yeahbuddy.service.TutorService;
 import cn.edu.xmu.yeahbuddy.utils.ResourceNotFoundException;
@@ -57,7 +57,7 @@ public class TutorController {
     @GetMapping({"/tutor", "/tutor/"})
     @PreAuthorize("hasRole('TUTOR')")
     public RedirectView index() {
-        int id = ((Tutor) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId();
+        int id = TutorService.asTutor(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId();
         return new RedirectView(String.format("/tutor/%d", id), false, false);
     }
 
@@ -72,8 +72,8 @@ public class TutorController {
     @PreAuthorize("hasRole('TUTOR')")
     public String tokenReview(@PathVariable int tutorId, Model model) {
         try {
-            Token token = (Token) SecurityContextHolder.getContext().getAuthentication().getCredentials();
-            Collection<Review> reviews = token.getReviews();
+            ValidatedToken token = (ValidatedToken) SecurityContextHolder.getContext().getAuthentication().getCredentials();
+            Collection<Review> reviews = reviewService.findAllById(token.getReviewIds());
             model.addAttribute("reviews", reviews);
             model.addAttribute("tutorId", tutorId);
             return "tutor/reviews";
@@ -85,7 +85,7 @@ public class TutorController {
     @GetMapping("/tutor/{tutorId:\\d+}/reviews")
     @PreAuthorize("hasRole('TUTOR')")
     public String tutorReview(@PathVariable int tutorId, Model model) {
-        List<Review> reviews = reviewService.findByTutor((Tutor) SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        List<Review> reviews = reviewService.findByTutorId(TutorService.asTutor(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId());
         model.addAttribute("reviews", reviews);
         model.addAttribute("tutorId", tutorId);
         return "tutor/reviews";
@@ -100,8 +100,8 @@ public class TutorController {
             throw new ResourceNotFoundException("tutor.id.not_found", tutorId);
         }
 
-        if (SecurityContextHolder.getContext().getAuthentication().getPrincipal() instanceof Tutor) {
-            model.addAttribute("readOnly", ((Tutor) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId() != tutorId);
+        if (TutorService.isTutor(SecurityContextHolder.getContext().getAuthentication().getPrincipal())) {
+            model.addAttribute("readOnly", TutorService.asTutor(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getId() != tutorId);
         }
         model.addAttribute("tutor", tutor.get());
         model.addAttribute("tutorId", tutorId);
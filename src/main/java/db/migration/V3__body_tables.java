@@ -0,0 +1,130 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration;
+import org.jetbrains.annotations.NonNls;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 正文从项目报告, 评审报告与综合评审报告中拆出, 由各自的正文实体持有
+ * <p>
+ * 主键都取自同一个hibernate_sequence, 已有正文沿用所属实体的ID, 不会与之后分配的ID冲突.
+ * 正文段落表改为引用正文表, 段落不复制.
+ * <p>
+ * 以V1为基线的数据库由hbm2ddl建表, 外键名由Hibernate生成, 与V1中的不同,
+ * 因此原外键与其索引按元数据查找. 除MySQL外按H2的语法执行, 供测试使用.
+ */
+public class V3__body_tables implements JdbcMigration {
+
+    @NonNls
+    private static final String[] OWNERS = {"report", "review", "result"};
+
+    @Override
+    public void migrate(Connection connection) throws Exception {
+        boolean mySql = connection.getMetaData().getDatabaseProductName().startsWith("MySQL");
+        try (Statement statement = connection.createStatement()) {
+            for (String owner : OWNERS) {
+                migrate(connection, statement, owner, mySql);
+            }
+        }
+    }
+
+    @NonNls
+    private static void migrate(Connection connection, Statement statement, String owner, boolean mySql) throws SQLException {
+        String body = owner + "_body";
+        String bodyId = body + "_id";
+        String content = owner + "_content";
+        String ownerId = owner + "_" + owner + "_id";
+
+        statement.execute("create table " + body + " (" +
+                                  bodyId + " integer not null, " +
+                                  body + "_version integer not null, " +
+                                  "primary key (" + bodyId + "))" + (mySql ? " engine=InnoDB" : ""));
+        statement.execute("insert into " + body + " (" + bodyId + ", " + body + "_version) select " + owner + "_id, 0 from " + owner);
+
+        statement.execute("alter table " + owner + " add column " + bodyId + " integer");
+        statement.execute("update " + owner + " set " + bodyId + " = " + owner + "_id");
+        statement.execute(mySql ? "alter table " + owner + " modify " + bodyId + " integer not null"
+                                : "alter table " + owner + " alter column " + bodyId + " set not null");
+        statement.execute("alter table " + owner + " add constraint uk_" + body + " unique (" + bodyId + ")");
+        statement.execute("alter table " + owner + " add constraint fk_" + body +
+                                  " foreign key (" + bodyId + ") references " + body + " (" + bodyId + ")");
+
+        for (String foreignKey : foreignKeys(connection, content, owner)) {
+            statement.execute("alter table " + content + (mySql ? " drop foreign key " : " drop constraint ") + foreignKey);
+        }
+        // MySQL删除外键后保留其索引, 与V2的索引重复
+        String index = "idx_" + owner + "_content_" + owner;
+        for (String redundant : singleColumnIndexes(connection, content, ownerId)) {
+            if (!redundant.equalsIgnoreCase(index)) {
+                statement.execute(mySql ? "alter table " + content + " drop index " + redundant : "drop index " + redundant);
+            }
+        }
+
+        statement.execute(mySql ? "alter table " + content + " change " + ownerId + " " + bodyId + " integer not null"
+                                : "alter table " + content + " alter column " + ownerId + " rename to " + bodyId);
+        statement.execute(mySql ? "alter table " + content + " rename index " + index + " to idx_" + owner + "_content_body"
+                                : "alter index " + index + " rename to idx_" + owner + "_content_body");
+        statement.execute("alter table " + content + " add constraint fk_" + owner + "_content_body" +
+                                  " foreign key (" + bodyId + ") references " + body + " (" + bodyId + ")");
+    }
+
+    /**
+     * 表上引用另一张表的外键名
+     */
+    private static Set<String> foreignKeys(Connection connection, String table, String referenced) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        Set<String> names = new LinkedHashSet<>();
+        try (ResultSet keys = metaData.getImportedKeys(connection.getCatalog(), connection.getSchema(), identifier(metaData, table))) {
+            while (keys.next()) {
+                if (referenced.equalsIgnoreCase(keys.getString("PKTABLE_NAME"))) {
+                    names.add(keys.getString("FK_NAME"));
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 表上只含给定列的索引名
+     */
+    private static List<String> singleColumnIndexes(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        Map<String, List<String>> columns = new LinkedHashMap<>();
+        try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), identifier(metaData, table), false, false)) {
+            while (indexes.next()) {
+                String name = indexes.getString("INDEX_NAME");
+                if (name != null) {
+                    columns.computeIfAbsent(name, k -> new ArrayList<>()).add(indexes.getString("COLUMN_NAME"));
+                }
+            }
+        }
+        List<String> names = new ArrayList<>();
+        columns.forEach((name, list) -> {
+            if (list.size() == 1 && column.equalsIgnoreCase(list.get(0))) {
+                names.add(name);
+            }
+        });
+        return names;
+    }
+
+    private static String identifier(DatabaseMetaData metaData, String name) throws SQLException {
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return name.toUpperCase();
+        }
+        if (metaData.storesLowerCaseIdentifiers()) {
+            return name.toLowerCase();
+        }
+        return name;
+    }
+}
@@ -0,0 +1,8 @@
+-- 乐观锁的版本列, 已有行从0开始
+
+alter table administrator add column administrator_version integer not null default 0;
+alter table team add column team_version integer not null default 0;
+alter table tutor add column tutor_version integer not null default 0;
+alter table report add column report_version integer not null default 0;
+alter table review add column review_version integer not null default 0;
+alter table result add column result_version integer not null default 0;
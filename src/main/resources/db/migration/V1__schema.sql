@@ -0,0 +1,134 @@
+-- 引入迁移之前hbm2ddl.auto=update在MySQL 5.7上建立的结构, 已有数据库以此为基线, 不再执行
+-- 约束名与Hibernate生成的不同, 之后的迁移不能依赖V1中的约束名
+
+create table hibernate_sequence (
+    next_val bigint
+) engine=InnoDB;
+
+insert into hibernate_sequence values (1);
+
+create table administrator (
+    administrator_id integer not null,
+    administrator_password varchar(255) not null,
+    administrator_username varchar(255) not null,
+    administrator_display_name varchar(255) not null,
+    admin_phone varchar(255),
+    admin_email varchar(255),
+    primary key (administrator_id),
+    constraint uk_administrator_username unique (administrator_username)
+) engine=InnoDB;
+
+create table administrator_permissions (
+    administrator_id integer not null,
+    administrator_permission varchar(255) not null,
+    constraint fk_administrator_permissions_administrator foreign key (administrator_id) references administrator (administrator_id)
+) engine=InnoDB;
+
+create table team (
+    team_id integer not null,
+    team_password varchar(255) not null,
+    team_username varchar(255) not null,
+    team_display_name varchar(255) not null,
+    team_project_name varchar(255) not null,
+    team_phone varchar(255),
+    team_email varchar(255),
+    primary key (team_id),
+    constraint uk_team_username unique (team_username)
+) engine=InnoDB;
+
+create table tutor (
+    tutor_id integer not null,
+    tutor_password varchar(255) not null,
+    tutor_username varchar(255) not null,
+    tutor_display_name varchar(255) not null,
+    tutor_phone varchar(255),
+    tutor_email varchar(255),
+    primary key (tutor_id),
+    constraint uk_tutor_username unique (tutor_username)
+) engine=InnoDB;
+
+create table stage (
+    stage_id integer not null,
+    stage_start datetime(6) not null,
+    stage_end datetime(6) not null,
+    stage_description varchar(255),
+    stage_title varchar(255),
+    primary key (stage_id)
+) engine=InnoDB;
+
+create table report (
+    report_id integer not null,
+    report_team_id integer not null,
+    report_stage_id integer not null,
+    report_submitted bit not null,
+    report_title varchar(255) not null,
+    primary key (report_id),
+    constraint uk_report_team_stage unique (report_team_id, report_stage_id),
+    constraint fk_report_team foreign key (report_team_id) references team (team_id),
+    constraint fk_report_stage foreign key (report_stage_id) references stage (stage_id)
+) engine=InnoDB;
+
+create table report_content (
+    report_report_id integer not null,
+    content varchar(255),
+    constraint fk_report_content_report foreign key (report_report_id) references report (report_id)
+) engine=InnoDB;
+
+create table report_files (
+    report_report_id integer not null,
+    files varchar(255) not null,
+    primary key (report_report_id, files),
+    constraint fk_report_files_report foreign key (report_report_id) references report (report_id)
+) engine=InnoDB;
+
+create table review (
+    review_id integer not null,
+    review_report_id integer not null,
+    review_viewer integer not null,
+    review_rank integer not null,
+    review_submitted bit not null,
+    primary key (review_id),
+    constraint uk_review_report_viewer unique (review_report_id, review_viewer),
+    constraint fk_review_report foreign key (review_report_id) references report (report_id),
+    constraint fk_review_tutor foreign key (review_viewer) references tutor (tutor_id)
+) engine=InnoDB;
+
+create table review_content (
+    review_review_id integer not null,
+    content varchar(255),
+    constraint fk_review_content_review foreign key (review_review_id) references review (review_id)
+) engine=InnoDB;
+
+create table result (
+    result_id integer not null,
+    result_report_id integer not null,
+    result_brief varchar(255) not null,
+    result_submitted bit not null,
+    primary key (result_id),
+    constraint uk_result_report unique (result_report_id),
+    constraint fk_result_report foreign key (result_report_id) references report (report_id)
+) engine=InnoDB;
+
+create table result_content (
+    result_result_id integer not null,
+    content varchar(255),
+    constraint fk_result_content_result foreign key (result_result_id) references result (result_id)
+) engine=InnoDB;
+
+create table token (
+    token_value varchar(255) not null,
+    token_tutor_id integer not null,
+    token_start_time datetime(6) not null,
+    token_end_time datetime(6) not null,
+    primary key (token_value),
+    constraint fk_token_tutor foreign key (token_tutor_id) references tutor (tutor_id)
+) engine=InnoDB;
+
+create table token_reviews (
+    token_token_value varchar(255) not null,
+    reviews_review_id integer not null,
+    primary key (token_token_value, reviews_review_id),
+    constraint uk_token_reviews_review unique (reviews_review_id),
+    constraint fk_token_reviews_token foreign key (token_token_value) references token (token_value),
+    constraint fk_token_reviews_review foreign key (reviews_review_id) references review (review_id)
+) engine=InnoDB;
@@ -0,0 +1,21 @@
+-- 查找方法所需的二级索引, 名称与实体的@Table(indexes)一致
+
+-- findByEndAfter, findExpiriesAfter, 失效Token列表按(结束时间, Token值)翻页
+create index idx_token_end_time on token (token_end_time, token_value);
+
+-- findByEndAfter, findByEndBefore
+create index idx_stage_end on stage (stage_end);
+
+-- findByStage, 按阶段列出报告
+create index idx_report_stage on report (report_stage_id);
+
+-- findBySubmittedFalse, 已提交结果列表按主键翻页
+create index idx_result_submitted on result (result_submitted, result_id);
+
+-- findByTutor, 按导师吊销Token与统计进度
+create index idx_review_viewer on review (review_viewer);
+
+-- 正文集合按所属实体读取
+create index idx_report_content_report on report_content (report_report_id);
+create index idx_review_content_review on review_content (review_review_id);
+create index idx_result_content_result on result_content (result_result_id);
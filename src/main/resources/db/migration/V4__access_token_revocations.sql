@@ -0,0 +1,16 @@
+-- 签名访问Token的吊销记录, 启动时与定时从此读入内存中的吊销列表
+
+create table access_token_revocation (
+    access_token_revocation_id bigint not null,
+    access_token_revocation_expires_at datetime(6) not null,
+    primary key (access_token_revocation_id)
+) engine=InnoDB;
+
+-- findByExpiresAtAfter, 清理已过期的记录
+create index idx_access_token_revocation_expires_at on access_token_revocation (access_token_revocation_expires_at);
+
+create table tutor_access_revocation (
+    tutor_access_revocation_tutor_id integer not null,
+    tutor_access_revocation_before datetime(6) not null,
+    primary key (tutor_access_revocation_tutor_id)
+) engine=InnoDB;
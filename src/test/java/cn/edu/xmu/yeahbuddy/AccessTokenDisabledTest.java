@@ -0,0 +1,64 @@
+package cn.edu.xmu.yeahbuddy;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.test.context.support.WithSecurityContextTestExecutionListener;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.unauthenticated;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 未开启{@code yeahbuddy.access-token.enabled}时签名访问链接不可用
+ */
+@Rollback
+@TestPropertySource(properties = "yeahbuddy.access-token.enabled=false")
+@TestExecutionListeners(listeners = {WithSecurityContextTestExecutionListener.class})
+public class AccessTokenDisabledTest extends ApplicationTestBase {
+
+    @Test
+    @Transactional
+    public void signedAccessTokenRejectedTest() throws Exception {
+        String reviewUrl = String.format("/tutor/%d/review", tutor1.getId());
+        Timestamp end = Timestamp.from(Instant.now().plus(1, ChronoUnit.HOURS));
+        String accessToken = tokenService.issueAccessToken(tutor1.getId(), review.getStageId(), Collections.singleton(review.getId()), end);
+
+        // 按未登录的导师请求处理
+        mvc.perform(get(reviewUrl).header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken))
+           .andExpect(status().is3xxRedirection())
+           .andExpect(unauthenticated());
+        mvc.perform(get(reviewUrl + "?access_token=" + accessToken))
+           .andExpect(status().is3xxRedirection())
+           .andExpect(unauthenticated());
+
+        try {
+            tokenService.authenticateAccessToken(accessToken);
+            Assert.fail();
+        } catch (BadCredentialsException ignored) {
+        }
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void accessLinkEndpointsTest() throws Exception {
+        mvc.perform(post(String.format("/token/%s/access", token)))
+           .andExpect(status().isNotFound());
+        mvc.perform(delete(String.format("/token/%s/access", token)))
+           .andExpect(status().isNotFound());
+    }
+}
@@ -1,9 +1,11 @@
 package cn.edu.xmu.yeahbuddy;
 
 import cn.edu.xmu.yeahbuddy.domain.*;
+import cn.edu.xmu.yeahbuddy.domain.repo.AccessTokenRevocationRepository;
 import cn.edu.xmu.yeahbuddy.domain.repo.ResultRepository;
 import cn.edu.xmu.yeahbuddy.domain.repo.StageRepository;
 import cn.edu.xmu.yeahbuddy.domain.repo.TokenRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.TutorAccessRevocationRepository;
 import cn.edu.xmu.yeahbuddy.model.AdministratorDto;
 import cn.edu.xmu.yeahbuddy.model.StageDto;
 import cn.edu.xmu.yeahbuddy.model.TeamDto;
@@ -78,6 +80,12 @@ public abstract class ApplicationTestBase extends AbstractTransactionalJUnit4Spr
     @Autowired
     private TokenRepository tokenRepository;
 
+    @Autowired
+    private AccessTokenRevocationRepository accessTokenRevocationRepository;
+
+    @Autowired
+    private TutorAccessRevocationRepository tutorAccessRevocationRepository;
+
     @Autowired
     private StageRepository stageRepository;
 
@@ -87,8 +95,14 @@ public abstract class ApplicationTestBase extends AbstractTransactionalJUnit4Spr
     @Autowired
     private PlatformTransactionManager transactionManager;
 
+    @Autowired
+    private LoginThrottleService loginThrottleService;
+
     @BeforeTransaction
     public void setUp() throws Exception {
+        // 上下文在测试间共享, 且请求都来自127.0.0.1
+        loginThrottleService.reset();
+
         new TransactionTemplate(transactionManager).execute(status -> {
             Administrator ultimate = new Administrator();
             ultimate.setAuthorities(Arrays.asList(Administrator.AdministratorPermission.values()));
@@ -153,11 +167,15 @@ public abstract class ApplicationTestBase extends AbstractTransactionalJUnit4Spr
             SecurityContextHolder.getContext().setAuthentication(ultimate);
             resultRepository.deleteAll();
             tokenRepository.deleteAll();
+            accessTokenRevocationRepository.deleteAllInBatch();
+            tutorAccessRevocationRepository.deleteAllInBatch();
             reviewService.deleteReview(review.getId());
             reportService.deleteReport(report.getId());
             teamService.deleteTeam(teamService.loadUserByUsername("testteam").getId());
             teamService.deleteTeam(teamService.loadUserByUsername("test2team").getId());
             tutorService.deleteTutor(tutorService.loadUserByUsername("testtutor").getId());
+            // 批量删除不会自动写出其他表上待执行的删除
+            stageRepository.flush();
             stageRepository.deleteAllInBatch();
             administratorService.deleteAdministrator(administratorService.loadUserByUsername("some").getId());
             SecurityContextHolder.getContext().setAuthentication(null);
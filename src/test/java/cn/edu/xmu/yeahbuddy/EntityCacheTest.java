@@ -0,0 +1,139 @@
+package cn.edu.xmu.yeahbuddy;
+
+import cn.edu.xmu.yeahbuddy.domain.Administrator;
+import cn.edu.xmu.yeahbuddy.domain.Team;
+import cn.edu.xmu.yeahbuddy.domain.repo.AdministratorRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.StageRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.TeamRepository;
+import cn.edu.xmu.yeahbuddy.model.TeamDto;
+import cn.edu.xmu.yeahbuddy.service.EntityCacheService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithSecurityContextTestExecutionListener;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 二级缓存与自然主键缓存
+ * <p>
+ * 读取与修改都在独立的新事务中执行, 以便观察提交后缓存的内容.
+ */
+@TestExecutionListeners(listeners = {WithSecurityContextTestExecutionListener.class})
+public class EntityCacheTest extends ApplicationTestBase {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TeamRepository teamRepository;
+
+    @Autowired
+    private AdministratorRepository administratorRepository;
+
+    @Autowired
+    private StageRepository stageRepository;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    @Test
+    public void naturalIdCacheTest() {
+        // 权限集合在第一次读取时才放入缓存
+        inNewTransaction(() -> administratorRepository.findByUsername("some"));
+        Statistics statistics = clearStatistics();
+
+        Team team = inNewTransaction(() -> teamRepository.findByUsername("testteam")).orElseThrow(AssertionError::new);
+        Assert.assertEquals(team1.getId(), team.getId());
+        Administrator admin = inNewTransaction(() -> administratorRepository.findByUsername("some")).orElseThrow(AssertionError::new);
+        Assert.assertEquals(Administrator.AdministratorPermission.values().length, admin.getAuthorities().size());
+
+        Assert.assertEquals(0, statistics.getPrepareStatementCount());
+        Assert.assertEquals(2, statistics.getNaturalIdCacheHitCount());
+
+        Assert.assertFalse(inNewTransaction(() -> teamRepository.findByUsername("nobody")).isPresent());
+        Assert.assertEquals(1, statistics.getNaturalIdQueryExecutionCount());
+    }
+
+    @Test
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void updateTest() {
+        inNewTransaction(() -> teamService.updateTeam(team1.getId(), new TeamDto().setDisplayName("renamed").setUsername("renamedteam")));
+        Statistics statistics = clearStatistics();
+
+        Assert.assertFalse(inNewTransaction(() -> teamRepository.findByUsername("testteam")).isPresent());
+        Team team = inNewTransaction(() -> teamRepository.findByUsername("renamedteam")).orElseThrow(AssertionError::new);
+        Assert.assertEquals(team1.getId(), team.getId());
+        Assert.assertEquals("renamed", team.getDisplayName());
+        Assert.assertEquals(1, statistics.getNaturalIdCacheHitCount());
+
+        inNewTransaction(() -> teamService.updateTeam(team1.getId(), new TeamDto().setUsername("testteam")));
+        Assert.assertEquals(team1.getId(), inNewTransaction(() -> teamRepository.findByUsername("testteam")).orElseThrow(AssertionError::new).getId());
+        Assert.assertFalse(inNewTransaction(() -> teamRepository.findByUsername("renamedteam")).isPresent());
+    }
+
+    @Test
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void deleteTest() {
+        Team team = inNewTransaction(() -> teamService.registerNewTeam(
+                new TeamDto()
+                        .setUsername("cacheteam")
+                        .setPassword("cacheteam")
+                        .setDisplayName("cacheteam")
+                        .setEmail("c@b.com")
+                        .setPhone("18988888888")
+                        .setProjectName("cache")));
+        Assert.assertTrue(inNewTransaction(() -> teamRepository.findByUsername("cacheteam")).isPresent());
+
+        inNewTransaction(() -> {
+            teamService.deleteTeam(team.getId());
+            return null;
+        });
+        Statistics statistics = clearStatistics();
+
+        Assert.assertFalse(inNewTransaction(() -> teamRepository.findByUsername("cacheteam")).isPresent());
+        Assert.assertFalse(inNewTransaction(() -> teamRepository.findById(team.getId())).isPresent());
+        Assert.assertEquals(0, statistics.getNaturalIdCacheHitCount());
+        Assert.assertEquals(0, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    public void statisticsTest() {
+        clearStatistics();
+        Assert.assertTrue(inNewTransaction(() -> stageRepository.findById(report.getStageId())).isPresent());
+
+        Map<String, Object> stat = entityCacheService.getStatistics();
+        Assert.assertEquals(true, stat.get("enabled"));
+        Assert.assertEquals(1L, stat.get("hits"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> regions = (Map<String, Map<String, Object>>) stat.get("regions");
+        Assert.assertEquals(1L, regions.get("yeahbuddy.stage").get("hits"));
+        Assert.assertTrue(regions.containsKey("yeahbuddy.administrator.authorities"));
+        Assert.assertTrue(regions.containsKey("yeahbuddy.team.username"));
+    }
+
+    private Statistics clearStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private <T> T inNewTransaction(Supplier<T> action) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate.execute(status -> action.get());
+    }
+}
@@ -0,0 +1,296 @@
+package cn.edu.xmu.yeahbuddy;
+
+import cn.edu.xmu.yeahbuddy.domain.Report;
+import cn.edu.xmu.yeahbuddy.domain.Result;
+import cn.edu.xmu.yeahbuddy.domain.Review;
+import cn.edu.xmu.yeahbuddy.domain.Stage;
+import cn.edu.xmu.yeahbuddy.domain.Token;
+import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import cn.edu.xmu.yeahbuddy.model.KeysetPage;
+import cn.edu.xmu.yeahbuddy.model.ReportDetail;
+import cn.edu.xmu.yeahbuddy.model.ReportListItem;
+import cn.edu.xmu.yeahbuddy.model.ResultSummary;
+import cn.edu.xmu.yeahbuddy.model.ReviewDetail;
+import cn.edu.xmu.yeahbuddy.model.ReviewDto;
+import cn.edu.xmu.yeahbuddy.model.StageDto;
+import cn.edu.xmu.yeahbuddy.model.TeamListItem;
+import cn.edu.xmu.yeahbuddy.model.TeamSummary;
+import cn.edu.xmu.yeahbuddy.model.TokenListItem;
+import cn.edu.xmu.yeahbuddy.model.TutorDto;
+import cn.edu.xmu.yeahbuddy.service.ResultService;
+import cn.edu.xmu.yeahbuddy.service.ReviewAssignmentService;
+import cn.edu.xmu.yeahbuddy.utils.IdentifierAlreadyExistsException;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithSecurityContextTestExecutionListener;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 各页面的SQL语句数
+ * <p>
+ * 每次请求前清空持久化上下文与统计, 页面渲染中的延迟加载也计入.
+ * 不在事务中执行的测试, 渲染中的延迟加载会直接失败.
+ */
+@Rollback
+@TestExecutionListeners(listeners = {WithSecurityContextTestExecutionListener.class})
+public class FetchPlanTest extends ApplicationTestBase {
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ResultService resultService;
+
+    @Autowired
+    private ReviewAssignmentService reviewAssignmentService;
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void taskDetailTest() throws Exception {
+        Stage stage = stageService.loadById(report.getStageId());
+        reportService.createReport(team2, stage, "Report 2");
+
+        // 阶段由二级缓存读取, 报告列表1条
+        MvcResult result = perform(get(String.format("/task/%d/detail", stage.getId())), 1);
+
+        @SuppressWarnings("unchecked")
+        List<ReportListItem> reports = (List<ReportListItem>) result.getModelAndView().getModel().get("reports");
+        Assert.assertEquals(2, reports.size());
+        Assert.assertEquals(team1.getProjectName(), reports.get(0).getTeamProjectName());
+        Assert.assertEquals(team2.getDisplayName(), reports.get(1).getTeamDisplayName());
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "testtutor", userDetailsServiceBeanName = "tutorService")
+    public void tutorReviewsTest() throws Exception {
+        MvcResult result = perform(get(String.format("/tutor/%d/reviews", tutor1.getId())), 1);
+
+        @SuppressWarnings("unchecked")
+        List<Review> reviews = (List<Review>) result.getModelAndView().getModel().get("reviews");
+        Assert.assertEquals(1, reviews.size());
+        Assert.assertTrue(Hibernate.isInitialized(reviews.get(0).getReport()));
+        Assert.assertFalse(Hibernate.isInitialized(reviews.get(0).getReport().getBody()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void reviewDetailTest() throws Exception {
+        // 不在测试事务中执行, 渲染时的延迟加载会抛出LazyInitializationException
+        // 没有测试事务时不会执行@BeforeTransaction与@AfterTransaction, 数据与登录用户在此准备
+        setUp();
+        try {
+            // 权限检查1条, 评议与报告正文1条, 评议正文1条, 均在渲染前完成
+            MvcResult result = perform(get(String.format("/review/%d", review.getId()))
+                                               .with(user(tutorService.loadUserByUsername("testtutor"))), 3);
+
+            ReportDetail loaded = (ReportDetail) result.getModelAndView().getModel().get("report");
+            Assert.assertEquals(report.getBody().getContent(), loaded.getContent());
+            Assert.assertEquals(team1.getProjectName(), loaded.getTeam().getProjectName());
+            ReviewDetail detail = (ReviewDetail) result.getModelAndView().getModel().get("review");
+            Assert.assertEquals(2, detail.getContent().size());
+        } finally {
+            tearDown();
+        }
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void resultDetailTest() throws Exception {
+        Result res = resultService.findByReport(report).orElseThrow(AssertionError::new);
+
+        reviewService.updateReview(review.getId(), new ReviewDto().setSubmitted(true));
+
+        // 结果与报告正文1条, 结果正文1条, 已提交评议及其正文1条, 均在渲染前完成
+        MvcResult result = perform(get(String.format("/result/%d", res.getId())), 3);
+
+        ReportDetail loaded = (ReportDetail) result.getModelAndView().getModel().get("report");
+        Assert.assertEquals(report.getBody().getContent(), loaded.getContent());
+        @SuppressWarnings("unchecked")
+        List<ReviewDetail> reviews = (List<ReviewDetail>) result.getModelAndView().getModel().get("reviews");
+        Assert.assertEquals(1, reviews.size());
+        Assert.assertEquals(tutor1.getDisplayName(), reviews.get(0).getTutorName());
+        Assert.assertEquals(2, reviews.get(0).getContent().size());
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void resultProgressTest() throws Exception {
+        Stage stage = stageService.loadById(report.getStageId());
+        Report report2 = reportService.createReport(team2, stage, "Report 2");
+        reviewService.updateReview(review.getId(), new ReviewDto().setSubmitted(true));
+        int result1 = resultService.findByReport(report).orElseThrow(AssertionError::new).getId();
+        int result2 = resultService.findByReport(report2).orElseThrow(AssertionError::new).getId();
+
+        // 列表1条, 进度聚合1条, 与结果数量无关
+        MvcResult result = perform(get("/result/current"), 2);
+
+        @SuppressWarnings("unchecked")
+        Map<Integer, String> stat = (Map<Integer, String>) result.getModelAndView().getModel().get("reviewStat");
+        Assert.assertEquals("1/1", stat.get(result1));
+        Assert.assertEquals("0/0", stat.get(result2));
+        @SuppressWarnings("unchecked")
+        List<ResultSummary> results = (List<ResultSummary>) result.getModelAndView().getModel().get("results");
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals("Report", results.get(0).getReportTitle());
+        Assert.assertEquals(stage.getTitle(), results.get(0).getStageTitle());
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void tokenCreateTest() throws Exception {
+        Stage stage = stageService.loadById(report.getStageId());
+        reportService.createReport(team2, stage, "Report 2");
+
+        // 阶段由二级缓存读取, 待评审团队1条, 导师列表1条
+        MvcResult result = perform(get(String.format("/token/create/%d", stage.getId())), 2);
+
+        @SuppressWarnings("unchecked")
+        List<TeamSummary> teams = (List<TeamSummary>) result.getModelAndView().getModel().get("teams");
+        Assert.assertEquals(1, teams.size());
+        Assert.assertEquals(team2.getId(), teams.get(0).getId());
+        Assert.assertEquals(team2.getDisplayName(), teams.get(0).getDisplayName());
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void currentTokensTest() throws Exception {
+        // Token列表项1条, 阶段列表1条
+        MvcResult result = perform(get("/token/current"), 2);
+
+        @SuppressWarnings("unchecked")
+        List<TokenListItem> tokens = (List<TokenListItem>) result.getModelAndView().getModel().get("tokens");
+        tokens.forEach(t -> Assert.assertEquals(tutor1.getDisplayName(), t.getTutorDisplayName()));
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void teamPageTest() throws Exception {
+        // 团队列表项1条, 不加载团队实体
+        MvcResult result = perform(get("/admin/team"), 1);
+
+        @SuppressWarnings("unchecked")
+        KeysetPage<TeamListItem> page = (KeysetPage<TeamListItem>) result.getModelAndView().getModel().get("teams");
+        Assert.assertFalse(page.isHasNext());
+        Assert.assertTrue(page.getItems().stream().anyMatch(t -> t.getId() == team1.getId()));
+        Assert.assertTrue(page.getItems().stream().anyMatch(t -> t.getId() == team2.getId()));
+
+        // 从上一页最后一项之后继续
+        KeysetPage<TeamListItem> first = teamService.findTeamPage(null, 1);
+        Assert.assertTrue(first.isHasNext());
+        Assert.assertEquals(1, first.getItems().size());
+        KeysetPage<TeamListItem> second = teamService.findTeamPage(first.getItems().get(0).getId(), 1);
+        Assert.assertEquals(1, second.getItems().size());
+        Assert.assertTrue(second.getItems().get(0).getId() > first.getItems().get(0).getId());
+    }
+
+    @Test
+    @Transactional
+    public void bulkProvisioningTest() throws Exception {
+        Stage stage = stageService.createStage(201702, new StageDto()
+                                                               .setTitle("2017 02")
+                                                               .setStart(Timestamp.valueOf("2017-02-01 20:00:00"))
+                                                               .setEnd(Timestamp.valueOf("2017-09-01 20:00:00")));
+        entityManager.flush();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<Report> reports = reportService.createReports(Arrays.asList(team1.getId(), team2.getId()), stage, "Bulk");
+        entityManager.flush();
+
+        // 团队1条, 查重1条, 报告, 结果及其正文各1批, ID按块分配, 最多取1次
+        Assert.assertTrue(statistics.getPrepareStatementCount() <= 2 + 4 + 1);
+        Assert.assertEquals(2, reports.size());
+        Assert.assertEquals(2, reportService.findByStage(stage).size());
+        reports.forEach(r -> Assert.assertTrue(resultService.findByReport(r).isPresent()));
+
+        exception.expect(IdentifierAlreadyExistsException.class);
+        reportService.createReports(Collections.singletonList(team2.getId()), stage, "Bulk");
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void reviewAssignmentTest() throws Exception {
+        Stage stage = stageService.loadById(report.getStageId());
+        reportService.createReport(team2, stage, "Report 2");
+        Tutor tutor2 = tutorService.registerNewTutor(new TutorDto()
+                                                             .setUsername("test2tutor")
+                                                             .setPassword("test2tutor")
+                                                             .setDisplayName("test2tutor")
+                                                             .setEmail("c2@b.com")
+                                                             .setPhone("13288888888"));
+        entityManager.flush();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<Token> tokens = reviewAssignmentService.assign(stage, Arrays.asList(team1.getId(), team2.getId()),
+                Collections.singletonList(tutor2.getId()), Timestamp.valueOf("2099-09-01 20:00:00"));
+        entityManager.flush();
+
+        // 导师1条, 报告1条, 查重1条, 评议, 评议正文, Token及其评议各1批, ID按块分配, 最多取1次
+        Assert.assertTrue(statistics.getPrepareStatementCount() <= 3 + 4 + 1);
+        Assert.assertEquals(1, tokens.size());
+        Assert.assertTrue(tokens.get(0).getTokenValue().matches("[a-zA-Z0-9]{24}"));
+        Assert.assertEquals(2, tokens.get(0).getReviews().size());
+        Assert.assertEquals(2, reviewService.findByTutorId(tutor2.getId()).size());
+
+        exception.expect(IdentifierAlreadyExistsException.class);
+        reviewAssignmentService.assign(stage, Collections.singletonList(team1.getId()),
+                Arrays.asList(tutor1.getId(), tutor2.getId()), Timestamp.valueOf("2099-09-01 20:00:00"));
+    }
+
+    private MvcResult perform(RequestBuilder request, long expectedStatements) throws Exception {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.flush();
+            entityManager.clear();
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        MvcResult result = mvc.perform(request)
+                              .andExpect(status().isOk())
+                              .andReturn();
+
+        Assert.assertEquals(expectedStatements, statistics.getPrepareStatementCount());
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+package cn.edu.xmu.yeahbuddy;
+
+import cn.edu.xmu.yeahbuddy.config.MigrationConfig;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationVersion;
+import org.hibernate.dialect.MySQL57Dialect;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.boot.orm.jpa.hibernate.SpringPhysicalNamingStrategy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 数据库迁移
+ * <p>
+ * 在MySQL兼容模式的内存H2数据库上执行{@code db/migration}下的迁移,
+ * 再以与生产环境相同的方言与命名策略启动Hibernate, 由{@code hbm2ddl.auto=validate}比对实体.
+ */
+public class MigrationTest {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:migration" + databases.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    public void validateTest() {
+        migrate(null);
+        validate();
+    }
+
+    @Test
+    public void baselineTest() {
+        // 引入迁移之前由hbm2ddl建立, 没有迁移记录的数据库
+        migrate("1");
+        jdbcTemplate.execute("drop table schema_version");
+        jdbcTemplate.update("insert into team (team_id, team_password, team_username, team_display_name, team_project_name) " +
+                                    "values (1, 'p', 'team', 'team', 'project')");
+
+        migrate(null);
+
+        Assert.assertEquals(Integer.valueOf(0),
+                jdbcTemplate.queryForObject("select team_version from team where team_id = 1", Integer.class));
+        validate();
+    }
+
+    @Test
+    public void bodyTablesTest() {
+        migrate("2");
+        // 以V1为基线的数据库由hbm2ddl建表, 外键名由Hibernate生成
+        jdbcTemplate.execute("alter table report_content drop constraint fk_report_content_report");
+        jdbcTemplate.execute("alter table report_content add constraint FKrbx4h7ryrqcuf0mbmdhyt1d1h " +
+                                     "foreign key (report_report_id) references report (report_id)");
+
+        jdbcTemplate.update("insert into team (team_id, team_version, team_password, team_username, team_display_name, team_project_name) " +
+                                    "values (1, 0, 'p', 'team', 'team', 'project')");
+        jdbcTemplate.update("insert into tutor (tutor_id, tutor_version, tutor_password, tutor_username, tutor_display_name) " +
+                                    "values (2, 0, 'p', 'tutor', 'tutor')");
+        jdbcTemplate.update("insert into stage (stage_id, stage_start, stage_end) " +
+                                    "values (201701, '2017-01-01 20:00:00', '2017-09-01 20:00:00')");
+        jdbcTemplate.update("insert into report (report_id, report_version, report_team_id, report_stage_id, report_submitted, report_title) " +
+                                    "values (3, 0, 1, 201701, true, 'Report')");
+        jdbcTemplate.update("insert into review (review_id, review_version, review_report_id, review_viewer, review_rank, review_submitted) " +
+                                    "values (4, 0, 3, 2, 1, true)");
+        jdbcTemplate.update("insert into result (result_id, result_version, result_report_id, result_brief, result_submitted) " +
+                                    "values (5, 0, 3, 'Brief', false)");
+        for (String paragraph : Arrays.asList("report 1", "report 2", "report 3")) {
+            jdbcTemplate.update("insert into report_content (report_report_id, content) values (3, ?)", paragraph);
+        }
+        for (String paragraph : Arrays.asList("review 1", "review 2")) {
+            jdbcTemplate.update("insert into review_content (review_review_id, content) values (4, ?)", paragraph);
+        }
+        for (String paragraph : Arrays.asList("result 1", "result 2")) {
+            jdbcTemplate.update("insert into result_content (result_result_id, content) values (5, ?)", paragraph);
+        }
+
+        migrate(null);
+
+        Assert.assertEquals(Arrays.asList("report 1", "report 2", "report 3"), paragraphs("report", 3));
+        Assert.assertEquals(Arrays.asList("review 1", "review 2"), paragraphs("review", 4));
+        Assert.assertEquals(Arrays.asList("result 1", "result 2"), paragraphs("result", 5));
+        Assert.assertEquals(Integer.valueOf(0),
+                jdbcTemplate.queryForObject("select report_body_version from report_body where report_body_id = 3", Integer.class));
+    }
+
+    /**
+     * 执行迁移
+     *
+     * @param target 目标版本, 为null时迁移到最新
+     */
+    private void migrate(String target) {
+        Flyway flyway = new MigrationConfig().flyway(jdbcTemplate.getDataSource(), new String[]{"classpath:db/migration"}, true);
+        if (target != null) {
+            flyway.setTarget(MigrationVersion.fromVersion(target));
+        }
+        flyway.migrate();
+    }
+
+    /**
+     * 以{@code hbm2ddl.auto=validate}启动Hibernate, 结构与实体不一致时抛出异常
+     */
+    private void validate() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.hbm2ddl.auto", "validate");
+        properties.setProperty("hibernate.dialect", MySQL57Dialect.class.getName());
+        properties.setProperty("hibernate.physical_naming_strategy", SpringPhysicalNamingStrategy.class.getName());
+        properties.setProperty("hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName());
+        properties.setProperty("hibernate.cache.use_second_level_cache", "false");
+        properties.setProperty("javax.persistence.sharedCache.mode", "NONE");
+
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(jdbcTemplate.getDataSource());
+        factory.setPackagesToScan("cn.edu.xmu.yeahbuddy.domain");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaProperties(properties);
+        factory.afterPropertiesSet();
+        factory.destroy();
+    }
+
+    /**
+     * 经正文表读出的正文段落
+     */
+    private List<String> paragraphs(String owner, int id) {
+        return jdbcTemplate.queryForList(
+                String.format("select c.content from %1$s o join %1$s_body b on b.%1$s_body_id = o.%1$s_body_id " +
+                                      "join %1$s_content c on c.%1$s_body_id = b.%1$s_body_id where o.%1$s_id = ? order by c.content", owner),
+                String.class, id);
+    }
+}
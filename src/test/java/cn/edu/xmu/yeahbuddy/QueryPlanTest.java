@@ -0,0 +1,537 @@
+package cn.edu.xmu.yeahbuddy;
+
+import cn.edu.xmu.yeahbuddy.domain.AccessTokenRevocation;
+import cn.edu.xmu.yeahbuddy.domain.Administrator;
+import cn.edu.xmu.yeahbuddy.domain.Report;
+import cn.edu.xmu.yeahbuddy.domain.Review;
+import cn.edu.xmu.yeahbuddy.domain.Stage;
+import cn.edu.xmu.yeahbuddy.domain.Team;
+import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import cn.edu.xmu.yeahbuddy.domain.repo.AccessTokenRevocationRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.AdministratorRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.NaturalIdRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.ReportRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.ResultRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.ReviewRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.StageRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.TeamRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.TokenRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.TutorRepository;
+import cn.edu.xmu.yeahbuddy.model.KeysetPage;
+import cn.edu.xmu.yeahbuddy.model.StageDto;
+import cn.edu.xmu.yeahbuddy.service.ReviewAssignmentService;
+import org.hibernate.SessionFactory;
+import org.jetbrains.annotations.NonNls;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 仓库派生查询的执行计划
+ * <p>
+ * 先写入多个阶段的团队, 报告, 评审与Token, 再记录每个查找方法实际发出的SQL与绑定参数,
+ * 用EXPLAIN重放. H2计划出现tableScan或MySQL计划出现type为ALL的行即失败.
+ * 参数取有选择性的值(当前阶段, 很早的时间等), 这时只有走索引才是合理的计划.
+ * {@code domain.repo}下仓库接口的find与query方法都须有检查或列入{@link #EXCLUDED}.
+ * 以test-mysql配置运行即检查MySQL.
+ */
+@Rollback
+public class QueryPlanTest extends ApplicationTestBase {
+
+    private static final int STAGES = 24;
+
+    private static final int TEAMS = 100;
+
+    private static final int TUTORS = 20;
+
+    private static final int TEAMS_PER_TUTOR = TEAMS / TUTORS;
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * 不检查执行计划的查找方法, 均为列出全部行, 全表扫描是预期的计划
+     */
+    @NonNls
+    private static final Set<String> EXCLUDED = new TreeSet<>(Arrays.asList(
+            "TeamRepository.findAllSummaries",
+            "TutorRepository.findAllListItems"));
+
+    private static final ThreadLocal<List<RecordedStatement>> recorded = new ThreadLocal<>();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ReviewAssignmentService reviewAssignmentService;
+
+    @Autowired
+    private StageRepository stageRepository;
+
+    @Autowired
+    private TokenRepository tokenRepository;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private TeamRepository teamRepository;
+
+    @Autowired
+    private TutorRepository tutorRepository;
+
+    @Autowired
+    private AdministratorRepository administratorRepository;
+
+    @Autowired
+    private AccessTokenRevocationRepository accessTokenRevocationRepository;
+
+    private Timestamp now;
+
+    private Stage current;
+
+    private Team someTeam;
+
+    private Tutor someTutor;
+
+    private Report someReport;
+
+    private Review someReview;
+
+    @NonNls
+    private String someToken;
+
+    private int someResultId;
+
+    private int firstResultId;
+
+    private int administratorId;
+
+    @Before
+    public void seed() throws Exception {
+        Administrator ultimate = new Administrator();
+        ultimate.setAuthorities(Arrays.asList(Administrator.AdministratorPermission.values()));
+        SecurityContextHolder.getContext().setAuthentication(ultimate);
+
+        now = new Timestamp(System.currentTimeMillis());
+
+        List<Integer> teamIds = new ArrayList<>(TEAMS);
+        for (int i = 0; i < TEAMS; i++) {
+            Team team = new Team("planteam" + i, "planteam");
+            entityManager.persist(team);
+            teamIds.add(team.getId());
+        }
+        List<Integer> tutorIds = new ArrayList<>(TUTORS);
+        for (int i = 0; i < TUTORS; i++) {
+            Tutor tutor = new Tutor("plantutor" + i, "plantutor");
+            entityManager.persist(tutor);
+            tutorIds.add(tutor.getId());
+        }
+
+        // 每半年一个阶段, 只有最后一个尚未结束
+        for (int s = 0; s < STAGES; s++) {
+            long end = now.getTime() + (s - STAGES + 1) * 182 * DAY + 30 * DAY;
+            Stage stage = stageService.createStage(300001 + s, new StageDto()
+                                                                       .setTitle("Plan " + s)
+                                                                       .setStart(new Timestamp(end - 120 * DAY))
+                                                                       .setEnd(new Timestamp(end)));
+            reportService.createReports(teamIds, stage, "Plan " + s);
+            for (int t = 0; t < TUTORS; t++) {
+                reviewAssignmentService.assign(stage,
+                        teamIds.subList(t * TEAMS_PER_TUTOR, (t + 1) * TEAMS_PER_TUTOR),
+                        Collections.singletonList(tutorIds.get(t)),
+                        stage.getEnd());
+            }
+            current = stage;
+        }
+
+        // 已过期的访问Token吊销记录, 清理之前留在表中
+        for (int i = 0; i < TEAMS; i++) {
+            entityManager.persist(new AccessTokenRevocation(i + 1, new Timestamp(now.getTime() - i * DAY)));
+        }
+
+        entityManager.createQuery("update Result res set res.submitted = true where res.report.id in " +
+                                          "(select rep.id from Report rep where rep.stage.end < :now)")
+                     .setParameter("now", now)
+                     .executeUpdate();
+        entityManager.flush();
+        entityManager.clear();
+
+        // 第TUTORS / 2个导师评审的团队中包含第TEAMS / 2个团队
+        someTeam = teamRepository.findById(teamIds.get(TEAMS / 2)).orElseThrow(AssertionError::new);
+        someTutor = tutorRepository.findById(tutorIds.get(TUTORS / 2)).orElseThrow(AssertionError::new);
+        someReport = reportRepository.findByTeamAndStage(someTeam, current).orElseThrow(AssertionError::new);
+        someReview = reviewRepository.findByReportAndTutor(someReport, someTutor).orElseThrow(AssertionError::new);
+        someToken = tokenRepository.findByTutor(someTutor).get(0).getTokenValue();
+        someResultId = resultRepository.findByReport(someReport).orElseThrow(AssertionError::new).getId();
+        Stage first = stageRepository.findById(300001).orElseThrow(AssertionError::new);
+        firstResultId = resultRepository.findByReport(reportRepository.findByTeamAndStage(someTeam, first).orElseThrow(AssertionError::new))
+                                        .orElseThrow(AssertionError::new).getId();
+        administratorId = administratorRepository.findByUsername("some").orElseThrow(AssertionError::new).getId();
+        SecurityContextHolder.getContext().setAuthentication(null);
+    }
+
+    @After
+    public void clearAuthentication() {
+        SecurityContextHolder.getContext().setAuthentication(null);
+    }
+
+    @Test
+    @Transactional
+    public void stageQueriesTest() {
+        assertIndexed(StageRepository.class);
+    }
+
+    @Test
+    @Transactional
+    public void tokenQueriesTest() {
+        assertIndexed(TokenRepository.class);
+    }
+
+    @Test
+    @Transactional
+    public void reportQueriesTest() {
+        assertIndexed(ReportRepository.class);
+    }
+
+    @Test
+    @Transactional
+    public void resultQueriesTest() {
+        assertIndexed(ResultRepository.class);
+    }
+
+    @Test
+    @Transactional
+    public void reviewQueriesTest() {
+        assertIndexed(ReviewRepository.class);
+    }
+
+    @Test
+    @Transactional
+    public void userQueriesTest() {
+        assertIndexed(NaturalIdRepository.class);
+        assertIndexed(TeamRepository.class);
+        assertIndexed(TutorRepository.class);
+        assertIndexed(AdministratorRepository.class);
+    }
+
+    @Test
+    @Transactional
+    public void coverageTest() throws Exception {
+        Set<String> finders = finders();
+        Set<String> planned = plans().keySet();
+
+        List<String> missing = finders.stream()
+                                      .filter(f -> !planned.contains(f) && !EXCLUDED.contains(f))
+                                      .collect(Collectors.toList());
+        Assert.assertTrue("No plan check for " + missing, missing.isEmpty());
+
+        List<String> stale = Stream.concat(planned.stream(), EXCLUDED.stream())
+                                   .filter(f -> !finders.contains(f))
+                                   .collect(Collectors.toList());
+        Assert.assertTrue("No such finder " + stale, stale.isEmpty());
+    }
+
+    /**
+     * 各查找方法的执行计划检查, 以"仓库接口名.方法名"为键
+     * <p>
+     * 参数在{@link #seed()}中准备好, 查询本身只发出被检查的语句.
+     */
+    private Map<String, Runnable> plans() {
+        Timestamp early = Timestamp.valueOf("2001-01-01 00:00:00");
+        Map<String, Runnable> plans = new LinkedHashMap<>();
+
+        plans.put("StageRepository.findByEndAfter", () -> stageRepository.findByEndAfter(now));
+        plans.put("StageRepository.findByEndBefore", () -> stageRepository.findByEndBefore(early));
+        plans.put("StageRepository.queryById", () -> stageRepository.queryById(current.getId()));
+
+        plans.put("TokenRepository.findByTutor", () -> tokenRepository.findByTutor(someTutor));
+        plans.put("TokenRepository.findByEndAfter", () -> tokenRepository.findByEndAfter(now));
+        plans.put("TokenRepository.findDetailByTokenValue", () -> tokenRepository.findDetailByTokenValue(someToken));
+        plans.put("TokenRepository.queryByTokenValue", () -> tokenRepository.queryByTokenValue(someToken));
+        plans.put("TokenRepository.findExpiriesAfter", () -> tokenRepository.findExpiriesAfter(now));
+        plans.put("TokenRepository.findExpiriesByTutorIdAfter", () -> tokenRepository.findExpiriesByTutorIdAfter(someTutor.getId(), now));
+        plans.put("TokenRepository.findExpiriesByStageIdAfter", () -> tokenRepository.findExpiriesByStageIdAfter(current.getId(), now));
+        plans.put("TokenRepository.findTokenValuesByTutorIdAndEnd",
+                () -> tokenRepository.findTokenValuesByTutorIdAndEnd(someTutor.getId(), current.getEnd()));
+        plans.put("TokenRepository.findTokenValuesByStageIdAndEnd",
+                () -> tokenRepository.findTokenValuesByStageIdAndEnd(current.getId(), current.getEnd()));
+        plans.put("TokenRepository.findActiveListItems", () -> tokenRepository.findActiveListItems(now));
+        plans.put("TokenRepository.findReviewStagesByTokenValueIn",
+                () -> tokenRepository.findReviewStagesByTokenValueIn(Collections.singletonList(someToken)));
+        plans.put("TokenRepository.findRevokedListItems",
+                () -> tokenRepository.findRevokedListItems(early, KeysetPage.pageable(10)));
+        plans.put("TokenRepository.findRevokedListItemsAfter",
+                () -> tokenRepository.findRevokedListItemsAfter(early, someToken, KeysetPage.pageable(10)));
+
+        plans.put("AccessTokenRevocationRepository.findByExpiresAtAfter", () -> accessTokenRevocationRepository.findByExpiresAtAfter(now));
+
+        plans.put("ReportRepository.findByStage", () -> reportRepository.findByStage(current));
+        plans.put("ReportRepository.findListItemsByStageId", () -> reportRepository.findListItemsByStageId(current.getId()));
+        plans.put("ReportRepository.findByStageAndTeam_IdIn",
+                () -> reportRepository.findByStageAndTeam_IdIn(current, Collections.singletonList(someTeam.getId())));
+        plans.put("ReportRepository.findDetailById", () -> reportRepository.findDetailById(someReport.getId()));
+        plans.put("ReportRepository.findTeamsAwaitingReview", () -> reportRepository.findTeamsAwaitingReview(current.getId()));
+        plans.put("ReportRepository.findTeamIdsByStage",
+                () -> reportRepository.findTeamIdsByStage(current, Collections.singletonList(someTeam.getId())));
+        plans.put("ReportRepository.findByTeamAndStage", () -> reportRepository.findByTeamAndStage(someTeam, current));
+        plans.put("ReportRepository.find", () -> reportRepository.find(someTeam, current));
+        plans.put("ReportRepository.queryById", () -> reportRepository.queryById(someReport.getId()));
+
+        plans.put("ResultRepository.findByReport", () -> resultRepository.findByReport(someReport));
+        plans.put("ResultRepository.findByReport_Team", () -> resultRepository.findByReport_Team(someTeam));
+        plans.put("ResultRepository.findBySubmittedFalse", () -> resultRepository.findBySubmittedFalse());
+        plans.put("ResultRepository.findSummariesBySubmittedFalse", () -> resultRepository.findSummariesBySubmittedFalse());
+        plans.put("ResultRepository.findSummariesBySubmittedTrueBefore",
+                () -> resultRepository.findSummariesBySubmittedTrueBefore(firstResultId, KeysetPage.pageable(10)));
+        plans.put("ResultRepository.findDetailById", () -> resultRepository.findDetailById(someResultId));
+        plans.put("ResultRepository.findByTeam", () -> resultRepository.findByTeam(someTeam));
+        plans.put("ResultRepository.queryById", () -> resultRepository.queryById(someResultId));
+
+        plans.put("ReviewRepository.findByReport", () -> reviewRepository.findByReport(someReport));
+        plans.put("ReviewRepository.findByTutor", () -> reviewRepository.findByTutor(someTutor));
+        plans.put("ReviewRepository.findByTutorId", () -> reviewRepository.findByTutorId(someTutor.getId()));
+        plans.put("ReviewRepository.findDetailById", () -> reviewRepository.findDetailById(someReview.getId()));
+        plans.put("ReviewRepository.findByIdIn", () -> reviewRepository.findByIdIn(Collections.singletonList(someReview.getId())));
+        plans.put("ReviewRepository.findSubmittedByReportId", () -> reviewRepository.findSubmittedByReportId(someReport.getId()));
+        plans.put("ReviewRepository.findReportAndTutorIds",
+                () -> reviewRepository.findReportAndTutorIds(Collections.singletonList(someReport), Collections.singletonList(someTutor)));
+        plans.put("ReviewRepository.findByReportAndTutor", () -> reviewRepository.findByReportAndTutor(someReport, someTutor));
+        plans.put("ReviewRepository.find", () -> reviewRepository.find(someReport, someTutor));
+        plans.put("ReviewRepository.findProgressOfOpenResults", () -> reviewRepository.findProgressOfOpenResults());
+        plans.put("ReviewRepository.queryById", () -> reviewRepository.queryById(someReview.getId()));
+
+        plans.put("NaturalIdRepository.findBySimpleNaturalId", () -> teamRepository.findBySimpleNaturalId(someTeam.getUsername()));
+        plans.put("TeamRepository.findByUsername", () -> teamRepository.findByUsername(someTeam.getUsername()));
+        plans.put("TeamRepository.queryById", () -> teamRepository.queryById(someTeam.getId()));
+        plans.put("TeamRepository.findListItemsAfter", () -> teamRepository.findListItemsAfter(someTeam.getId(), KeysetPage.pageable(10)));
+        plans.put("TutorRepository.findByUsername", () -> tutorRepository.findByUsername(someTutor.getUsername()));
+        plans.put("TutorRepository.queryById", () -> tutorRepository.queryById(someTutor.getId()));
+        plans.put("TutorRepository.findListItemsAfter", () -> tutorRepository.findListItemsAfter(someTutor.getId(), KeysetPage.pageable(10)));
+        plans.put("AdministratorRepository.findByUsername", () -> administratorRepository.findByUsername("some"));
+        plans.put("AdministratorRepository.queryById", () -> administratorRepository.queryById(administratorId));
+        return plans;
+    }
+
+    /**
+     * {@code domain.repo}下各仓库接口自身声明的find与query方法, 以"仓库接口名.方法名"表示
+     */
+    private static Set<String> finders() throws ClassNotFoundException {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                return beanDefinition.getMetadata().isInterface();
+            }
+        };
+        scanner.addIncludeFilter(new AssignableTypeFilter(org.springframework.data.repository.Repository.class));
+
+        Set<String> finders = new TreeSet<>();
+        for (BeanDefinition candidate : scanner.findCandidateComponents(StageRepository.class.getPackage().getName())) {
+            Class<?> repository = Class.forName(candidate.getBeanClassName());
+            for (Method method : repository.getDeclaredMethods()) {
+                if (!method.isSynthetic() && (method.getName().startsWith("find") || method.getName().startsWith("query"))) {
+                    finders.add(repository.getSimpleName() + "." + method.getName());
+                }
+            }
+        }
+        Assert.assertFalse(finders.isEmpty());
+        return finders;
+    }
+
+    /**
+     * 检查仓库接口的各查找方法
+     *
+     * @param repository 仓库接口
+     */
+    private void assertIndexed(Class<?> repository) {
+        String prefix = repository.getSimpleName() + ".";
+        plans().forEach((name, query) -> {
+            if (name.startsWith(prefix)) {
+                assertIndexed(name, query);
+            }
+        });
+    }
+
+    /**
+     * 执行查询并检查其发出的每条SELECT的执行计划
+     *
+     * @param name  查询名, 用于失败信息
+     * @param query 查询
+     */
+    private void assertIndexed(@NonNls String name, Runnable query) {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        Assume.assumeTrue("H2".equals(database) || "MySQL".equals(database));
+
+        List<RecordedStatement> statements = new ArrayList<>();
+        entityManager.clear();
+        // 二级缓存命中时不发出查询
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+        recorded.set(statements);
+        try {
+            query.run();
+        } finally {
+            recorded.remove();
+        }
+        List<RecordedStatement> selects = statements.stream()
+                                                    .filter(s -> s.sql.trim().toLowerCase().startsWith("select"))
+                                                    .collect(Collectors.toList());
+        Assert.assertFalse(name + " issued no query", selects.isEmpty());
+
+        for (RecordedStatement statement : selects) {
+            List<Map<String, Object>> plan = jdbcTemplate.query("EXPLAIN " + statement.sql, ps -> {
+                for (Map.Entry<Integer, Object> parameter : statement.parameters.entrySet()) {
+                    if (parameter.getValue() == null) {
+                        ps.setNull(parameter.getKey(), Types.NULL);
+                    } else {
+                        ps.setObject(parameter.getKey(), parameter.getValue());
+                    }
+                }
+            }, new ColumnMapRowMapper());
+
+            List<String> scans = "H2".equals(database) ? h2Scans(plan) : mySqlScans(plan);
+            Assert.assertTrue(String.format("%s scans %s: %s", name, scans, statement.sql), scans.isEmpty());
+        }
+    }
+
+    /**
+     * H2计划中以tableScan访问的表
+     */
+    private static List<String> h2Scans(List<Map<String, Object>> plan) {
+        return plan.stream()
+                   .flatMap(row -> Arrays.stream(String.valueOf(row.get("PLAN")).split("\n")))
+                   .filter(line -> line.contains(".tableScan"))
+                   .map(String::trim)
+                   .collect(Collectors.toList());
+    }
+
+    /**
+     * MySQL计划中全表扫描的表
+     */
+    private static List<String> mySqlScans(List<Map<String, Object>> plan) {
+        return plan.stream()
+                   .filter(row -> "ALL".equals(row.get("type")))
+                   .map(row -> String.valueOf(row.get("table")))
+                   .collect(Collectors.toList());
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 记录中的一条预编译语句
+     */
+    private static final class RecordedStatement {
+
+        private final String sql;
+
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+
+        private RecordedStatement(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    /**
+     * 包装数据源, 记录预编译语句的SQL与绑定参数
+     */
+    @TestConfiguration
+    static class StatementRecorderConfig {
+
+        @Bean
+        static BeanPostProcessor statementRecorder() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource && "dataSource".equals(beanName)) {
+                        return recording((DataSource) bean);
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        private static DataSource recording(DataSource dataSource) {
+            return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(dataSource, method, args);
+                        return result instanceof Connection ? recording((Connection) result) : result;
+                    });
+        }
+
+        private static Connection recording(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if ("prepareStatement".equals(method.getName()) && recorded.get() != null) {
+                            return recording((PreparedStatement) result, (String) args[0]);
+                        }
+                        return result;
+                    });
+        }
+
+        private static PreparedStatement recording(PreparedStatement statement, String sql) {
+            RecordedStatement record = new RecordedStatement(sql);
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                            record.parameters.put((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+                        } else if (name.startsWith("execute")) {
+                            List<RecordedStatement> statements = recorded.get();
+                            if (statements != null) {
+                                statements.add(record);
+                            }
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+    }
+}
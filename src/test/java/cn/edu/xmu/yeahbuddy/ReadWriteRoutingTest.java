@@ -0,0 +1,122 @@
+package cn.edu.xmu.yeahbuddy;
+
+import cn.edu.xmu.yeahbuddy.config.ReadWriteRoutingDataSource;
+import cn.edu.xmu.yeahbuddy.domain.Team;
+import cn.edu.xmu.yeahbuddy.domain.Tutor;
+import cn.edu.xmu.yeahbuddy.utils.RecentWriters;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写分离
+ * <p>
+ * 主库与从库为两个内存H2数据库, 各有一行不同的数据, 由读到的值判断使用了哪个库.
+ */
+public class ReadWriteRoutingTest {
+
+    private final Team team = new Team("rwteam", "rwteam");
+
+    private final Tutor tutor = new Tutor("rwtutor", "rwtutor");
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readOnly;
+
+    private TransactionTemplate readWrite;
+
+    private RecentWriters recentWriters;
+
+    private ReadWriteRoutingDataSource routing;
+
+    @Before
+    public void setUp() {
+        recentWriters = new RecentWriters(200, 16);
+        routing = new ReadWriteRoutingDataSource(database("primary"),
+                Collections.singletonList(database("replica")), recentWriters);
+        routing.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void routeByReadOnlyTest() {
+        Assert.assertEquals("replica", read(readOnly));
+        Assert.assertEquals("primary", read(readWrite));
+        Assert.assertEquals("primary", jdbcTemplate.queryForObject("SELECT name FROM site", String.class));
+    }
+
+    @Test
+    public void readYourWritesTest() throws Exception {
+        login(team);
+        recentWriters.recordCurrent();
+        Assert.assertEquals("primary", read(readOnly));
+
+        login(tutor);
+        Assert.assertEquals("replica", read(readOnly));
+
+        SecurityContextHolder.clearContext();
+        Assert.assertEquals("replica", read(readOnly));
+
+        login(team);
+        Thread.sleep(300);
+        Assert.assertEquals("replica", read(readOnly));
+        Assert.assertEquals(1L, recentWriters.getStatistics().get("pinnedReads"));
+    }
+
+    @Test
+    public void usePrimaryTest() {
+        AtomicInteger replicaReads = new AtomicInteger();
+        routing.setReplicaListener(replicaReads::incrementAndGet);
+
+        Assert.assertEquals("primary", ReadWriteRoutingDataSource.usePrimary(() -> read(readOnly)));
+        Assert.assertEquals(0, replicaReads.get());
+        Assert.assertEquals("replica", read(readOnly));
+        Assert.assertEquals(1, replicaReads.get());
+
+        // 事务已经取得从库连接时沿用
+        Assert.assertEquals("replica", readOnly.execute(status -> {
+            read(readOnly);
+            return ReadWriteRoutingDataSource.usePrimary(() -> read(readOnly));
+        }));
+    }
+
+    private String read(TransactionTemplate transactionTemplate) {
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM site", String.class));
+    }
+
+    private static void login(Object principal) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, null));
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS site (name VARCHAR(16))");
+        jdbc.update("DELETE FROM site");
+        jdbc.update("INSERT INTO site VALUES (?)", name);
+        return dataSource;
+    }
+}
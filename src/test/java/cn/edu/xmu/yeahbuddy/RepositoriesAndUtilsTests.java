@@ -8,7 +8,12 @@ import cn.edu.xmu.yeahbuddy.domain.repo.AdministratorRepository;
 import cn.edu.xmu.yeahbuddy.domain.repo.ReportRepository;
 import cn.edu.xmu.yeahbuddy.domain.repo.StageRepository;
 import cn.edu.xmu.yeahbuddy.domain.repo.TeamRepository;
+import cn.edu.xmu.yeahbuddy.model.ValidatedToken;
+import cn.edu.xmu.yeahbuddy.utils.HashedTimingWheel;
 import cn.edu.xmu.yeahbuddy.utils.PasswordUtils;
+import cn.edu.xmu.yeahbuddy.utils.TokenBucketLimiter;
+import cn.edu.xmu.yeahbuddy.utils.TokenIndex;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -20,8 +25,16 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.junit4.AbstractTransactionalJUnit4SpringContextTests;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -81,6 +94,107 @@ public class RepositoriesAndUtilsTests extends AbstractTransactionalJUnit4Spring
         Assert.assertTrue(PasswordUtils.isExpectedPassword("password".toCharArray(), salt, hash));
     }
 
+    @Test
+    public void passwordUtilsCompatibilityTest() throws Exception {
+        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512");
+        for (String password : new String[]{"password", "", "密码😀", StringUtils.repeat("long", 50)}) {
+            byte[] salt = PasswordUtils.generateSalt();
+            byte[] expected = skf.generateSecret(new PBEKeySpec(password.toCharArray(), salt, 10000, 256)).getEncoded();
+
+            Assert.assertArrayEquals(expected, PasswordUtils.hash(password.toCharArray(), salt));
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void tokenIndexTest() throws Exception {
+        TokenIndex index = new TokenIndex(2, 2, 60);
+        Timestamp future = Timestamp.from(Instant.now().plusSeconds(3600));
+
+        Assert.assertEquals(TokenIndex.State.UNKNOWN, index.lookup("a"));
+        index.put(new ValidatedToken("a", 1, Collections.singleton(2), future), index.stamp());
+        Assert.assertEquals(TokenIndex.State.VALID, index.lookup("a"));
+        Assert.assertEquals(1, index.get("a").getTutorId());
+
+        // 吊销后进入负缓存
+        index.revoke("a");
+        Assert.assertEquals(TokenIndex.State.REVOKED, index.lookup("a"));
+
+        // 查询期间发生失效, 放弃写入
+        long stamp = index.stamp();
+        index.invalidate("b");
+        index.put(new ValidatedToken("b", 1, Collections.emptySet(), future), stamp);
+        Assert.assertEquals(TokenIndex.State.UNKNOWN, index.lookup("b"));
+
+        index.putNotFound("c");
+        Assert.assertEquals(TokenIndex.State.NOT_FOUND, index.lookup("c"));
+
+        // 已过期的Token不进入索引
+        index.put(new ValidatedToken("d", 1, Collections.emptySet(), Timestamp.from(Instant.now().minusSeconds(1))), index.stamp());
+        Assert.assertEquals(TokenIndex.State.UNKNOWN, index.lookup("d"));
+
+        // 负缓存已满时清空
+        index.putNotFound("e");
+        Assert.assertEquals(TokenIndex.State.NOT_FOUND, index.lookup("e"));
+        Assert.assertEquals(TokenIndex.State.UNKNOWN, index.lookup("c"));
+    }
+
+    @Test
+    public void hashedTimingWheelTest() throws Exception {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 6, 0);
+        Assert.assertEquals(8, wheel.getWheelSize());
+
+        wheel.schedule("a", 15);
+        wheel.schedule("b", 25);
+        // 超过一圈
+        wheel.schedule("c", 205);
+        wheel.schedule("d", 30);
+        wheel.schedule("d", 35);
+        Assert.assertEquals(4, wheel.size());
+
+        Assert.assertEquals(Collections.emptyList(), wheel.advance(14));
+        Assert.assertEquals(Collections.singletonList("a"), wheel.advance(15));
+        Assert.assertEquals(Long.valueOf(25), wheel.cancel("b"));
+        Assert.assertNull(wheel.cancel("b"));
+        Assert.assertEquals(Collections.emptyList(), wheel.advance(34));
+        Assert.assertEquals(Collections.singletonList("d"), wheel.advance(100));
+        Assert.assertEquals(Collections.emptyList(), wheel.advance(200));
+
+        // 已过期的键在下次推进时取出
+        wheel.schedule("e", 0);
+        List<String> expired = wheel.advance(1000);
+        Collections.sort(expired);
+        Assert.assertEquals(Arrays.asList("c", "e"), expired);
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void tokenBucketLimiterTest() throws Exception {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(64, 2, 3, 60);
+        Assert.assertEquals(1, limiter.getRetryAfterSeconds());
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(limiter.tryAcquire("user", 1));
+        }
+        Assert.assertFalse(limiter.tryAcquire("user", 1));
+        Assert.assertFalse(limiter.tryAcquire("user", 999));
+        Assert.assertTrue(limiter.tryAcquire("other", 999));
+
+        // 每秒恢复一个令牌
+        Assert.assertTrue(limiter.tryAcquire("user", 1001));
+        Assert.assertFalse(limiter.tryAcquire("user", 1001));
+
+        // 不超过容量
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(limiter.tryAcquire("user", 100000));
+        }
+        Assert.assertFalse(limiter.tryAcquire("user", 100000));
+        Assert.assertEquals(4L, limiter.getStatistics().get("rejected"));
+
+        limiter.reset();
+        Assert.assertTrue(limiter.tryAcquire("user", 100000));
+    }
+
     @Test
     public void reportRepositoryTest() throws Exception {
         Team team1 = new Team("Team1", "Team2");
@@ -2,6 +2,7 @@ package cn.edu.xmu.yeahbuddy;
 
 import cn.edu.xmu.yeahbuddy.domain.Administrator;
 import cn.edu.xmu.yeahbuddy.domain.repo.AdministratorRepository;
+import cn.edu.xmu.yeahbuddy.service.LockingUpdateService;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jetbrains.annotations.NonNls;
@@ -14,8 +15,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.test.annotation.Repeat;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionTemplate;
@@ -24,8 +27,10 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.Optional;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 @RunWith(SpringRunner.class)
@@ -45,6 +50,9 @@ public class RepositoriesConcurrentTests {
     @Autowired
     private TransactionTemplate transactionTemplate;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Autowired
     private Environment environment;
 
@@ -117,4 +125,72 @@ public class RepositoriesConcurrentTests {
         Assert.assertEquals(2, counter.get());
         log.info("==================End================\n\n");
     }
+
+    @Test
+    public void optimisticRetryTest() throws Exception {
+        LockingUpdateService updates = new LockingUpdateService(transactionManager, "optimistic", 3, 10);
+        int version = administratorRepository.findById(id).orElseThrow(AssertionError::new).getVersion();
+        Assert.assertEquals(0, runOptimisticUpdates(updates));
+
+        Administrator administrator = administratorRepository.findById(id).orElseThrow(AssertionError::new);
+        Assert.assertEquals("AAA+++", administrator.getDisplayName());
+        Assert.assertEquals(version + 3, (int) administrator.getVersion());
+        Assert.assertTrue((Long) updates.getStatistics().get("conflicts") >= 2);
+        Assert.assertEquals(0L, updates.getStatistics().get("failures"));
+    }
+
+    @Test
+    public void optimisticNoRetryTest() throws Exception {
+        LockingUpdateService updates = new LockingUpdateService(transactionManager, "optimistic", 1, 0);
+        int version = administratorRepository.findById(id).orElseThrow(AssertionError::new).getVersion();
+        Assert.assertEquals(2, runOptimisticUpdates(updates));
+
+        Administrator administrator = administratorRepository.findById(id).orElseThrow(AssertionError::new);
+        Assert.assertEquals("AAA+", administrator.getDisplayName());
+        Assert.assertEquals(version + 1, (int) administrator.getVersion());
+        Assert.assertEquals(2L, updates.getStatistics().get("failures"));
+    }
+
+    /**
+     * 三个线程读到同一版本后同时修改
+     *
+     * @return 失败的线程数
+     */
+    private int runOptimisticUpdates(LockingUpdateService updates) throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger(0);
+        final CountDownLatch loaded = new CountDownLatch(3);
+        Runnable r = () -> updates.update(() -> {
+            Administrator administrator = updates.load(() -> administratorRepository.queryById(id), () -> administratorRepository.findById(id))
+                                                 .orElseThrow(AssertionError::new);
+            loaded.countDown();
+            try {
+                loaded.await();
+            } catch (InterruptedException ignored) {
+            }
+            administrator.setDisplayName(administrator.getDisplayName() + "+");
+            return administratorRepository.save(administrator);
+        });
+
+        AtomicReference<Throwable> unexpected = new AtomicReference<>();
+        Thread.UncaughtExceptionHandler handler = (t, e) -> {
+            if (e instanceof ConcurrencyFailureException) {
+                counter.incrementAndGet();
+            } else {
+                unexpected.set(e);
+            }
+        };
+
+        Thread[] threads = {new Thread(r), new Thread(r), new Thread(r)};
+        for (Thread t : threads) {
+            t.setUncaughtExceptionHandler(handler);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (unexpected.get() != null) {
+            throw new AssertionError(unexpected.get());
+        }
+        return counter.get();
+    }
 }
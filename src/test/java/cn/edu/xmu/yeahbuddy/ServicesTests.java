@@ -5,6 +5,7 @@ import cn.edu.xmu.yeahbuddy.model.AdministratorDto;
 import cn.edu.xmu.yeahbuddy.service.AdministratorService;
 import cn.edu.xmu.yeahbuddy.service.YbPasswordEncodeService;
 import cn.edu.xmu.yeahbuddy.utils.IdentifierAlreadyExistsException;
+import cn.edu.xmu.yeahbuddy.utils.RecentWriters;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -16,9 +17,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.junit4.AbstractTransactionalJUnit4SpringContextTests;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -39,6 +45,12 @@ public class ServicesTests extends AbstractTransactionalJUnit4SpringContextTests
     @Autowired
     private AdministratorService administratorService;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RecentWriters recentWriters;
+
     @Test
     public void administratorServiceTest1() throws Exception {
         Administrator ultimate = new Administrator();
@@ -88,4 +100,55 @@ public class ServicesTests extends AbstractTransactionalJUnit4SpringContextTests
         exception.expect(AccessDeniedException.class);
         administratorService.registerNewAdministrator(new AdministratorDto().setUsername("EEE").setPassword("BBB").setDisplayName("EEE").setAuthorities(Arrays.asList(Administrator.AdministratorPermission.ManageTask.getAuthority(), Administrator.AdministratorPermission.ManageAdministrator.getAuthority())));
     }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void principalCacheTest() throws Exception {
+        Administrator ultimate = new Administrator();
+        ultimate.setAuthorities(Arrays.asList(Administrator.AdministratorPermission.values()));
+        SecurityContextHolder.getContext().setAuthentication(ultimate);
+        int id = administratorService.registerNewAdministrator(new AdministratorDto().setUsername("GGG").setPassword("GGG").setDisplayName("GGG").setAuthorities(new HashSet<>())).getId();
+        try {
+            // 用户由二级缓存提供, 每次加载得到各自的实体, 不在线程间共享
+            Administrator loaded = administratorService.loadUserByUsername("GGG");
+            Assert.assertNotSame(loaded, administratorService.loadUserByUsername("GGG"));
+            Assert.assertNotSame(loaded, administratorService.findById(id).orElseThrow(AssertionError::new));
+
+            // 修改提交后读到新数据
+            administratorService.updateAdministrator(id, new AdministratorDto().setDisplayName("HHH"));
+            Administrator reloaded = administratorService.loadUserByUsername("GGG");
+            Assert.assertNotSame(loaded, reloaded);
+            Assert.assertEquals("HHH", reloaded.getDisplayName());
+
+            administratorService.resetAdministratorPassword(id, "III");
+            Assert.assertTrue(ybPasswordEncodeService.matches("III", administratorService.loadUserByUsername("GGG").getPassword()));
+        } finally {
+            administratorService.deleteAdministrator(id);
+        }
+
+        exception.expect(UsernameNotFoundException.class);
+        administratorService.loadUserByUsername("GGG");
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void recentWritersTest() throws Exception {
+        Administrator ultimate = new Administrator();
+        ultimate.setAuthorities(Arrays.asList(Administrator.AdministratorPermission.values()));
+        SecurityContextHolder.getContext().setAuthentication(ultimate);
+        try {
+            long writes = (long) recentWriters.getStatistics().get("writes");
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+
+            // 只读事务不记录, 任何读写事务提交后都记录
+            readOnly.execute(status -> administratorService.findByUsername("JJJ"));
+            Assert.assertEquals(writes, (long) recentWriters.getStatistics().get("writes"));
+            new TransactionTemplate(transactionManager).execute(status -> administratorService.findByUsername("JJJ"));
+            Assert.assertEquals(writes + 1, (long) recentWriters.getStatistics().get("writes"));
+            Assert.assertTrue(recentWriters.isCurrentRecent());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
 }
@@ -1,21 +1,53 @@
 package cn.edu.xmu.yeahbuddy;
 
+import cn.edu.xmu.yeahbuddy.domain.Administrator;
+import cn.edu.xmu.yeahbuddy.domain.Team;
+import cn.edu.xmu.yeahbuddy.domain.repo.TeamRepository;
+import cn.edu.xmu.yeahbuddy.model.SessionPrincipal;
+import cn.edu.xmu.yeahbuddy.service.AdministratorService;
+import cn.edu.xmu.yeahbuddy.service.TeamService;
+import cn.edu.xmu.yeahbuddy.service.YbPasswordEncodeService;
+import cn.edu.xmu.yeahbuddy.utils.PasswordUtils;
 import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Locale;
+
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.logout;
 import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
 import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.unauthenticated;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @Rollback
 public class TeamFormLoginTest extends ApplicationTestBase {
 
+    @Autowired
+    private TeamRepository teamRepository;
+
+    @Autowired
+    private YbPasswordEncodeService ybPasswordEncodeService;
+
     @Test
     @Transactional
     public void teamFormLoginTest() throws Exception {
@@ -28,7 +60,7 @@ public class TeamFormLoginTest extends ApplicationTestBase {
         mvc.perform(formLogin("/team/login").user("testteam").password("testteam"))
            .andExpect(status().is3xxRedirection())
            .andExpect(redirectedUrl("/team"))
-           .andExpect(authenticated().withAuthenticationPrincipal(teamService.findByUsername("testteam").get()));
+           .andExpect(authenticated().withAuthenticationPrincipal(SessionPrincipal.of(teamService.findByUsername("testteam").get())));
 
         mvc.perform(logout("/team/logout"))
            .andExpect(status().is3xxRedirection())
@@ -40,4 +72,128 @@ public class TeamFormLoginTest extends ApplicationTestBase {
            .andExpect(redirectedUrl("/team/login?error"))
            .andExpect(unauthenticated());
     }
+
+    @Test
+    @Transactional
+    public void legacyPasswordUpgradeTest() throws Exception {
+        byte[] salt = PasswordUtils.generateSalt();
+        byte[] hash = PasswordUtils.hash("testteam".toCharArray(), salt);
+        Base64.Encoder base64e = Base64.getEncoder();
+        String legacy = base64e.encodeToString(salt) + "$" + base64e.encodeToString(hash);
+
+        Team team = teamRepository.findByUsername("testteam").get();
+        team.setPassword(legacy);
+        teamRepository.save(team);
+        Assert.assertTrue(ybPasswordEncodeService.needsUpgrade(legacy));
+
+        mvc.perform(formLogin("/team/login").user("testteam").password("testteam"))
+           .andExpect(status().is3xxRedirection())
+           .andExpect(redirectedUrl("/team"))
+           .andExpect(authenticated());
+
+        String upgraded = teamRepository.findByUsername("testteam").get().getPassword();
+        Assert.assertTrue(upgraded.startsWith("$pbkdf2-sha512$" + ybPasswordEncodeService.getIterations() + "$"));
+        Assert.assertFalse(ybPasswordEncodeService.needsUpgrade(upgraded));
+        Assert.assertTrue(ybPasswordEncodeService.matches("testteam", upgraded));
+
+        mvc.perform(logout("/team/logout"))
+           .andExpect(unauthenticated());
+
+        mvc.perform(formLogin("/team/login").user("testteam").password("testteam"))
+           .andExpect(redirectedUrl("/team"))
+           .andExpect(authenticated());
+        Assert.assertEquals(upgraded, teamRepository.findByUsername("testteam").get().getPassword());
+    }
+
+    @Test
+    @Transactional
+    public void sessionPrincipalTest() throws Exception {
+        MvcResult result = mvc.perform(formLogin("/team/login").user("testteam").password("testteam"))
+                              .andExpect(authenticated().withAuthorities(Collections.singletonList(new SimpleGrantedAuthority("ROLE_TEAM"))))
+                              .andReturn();
+        MockHttpSession session = (MockHttpSession) result.getRequest().getSession(false);
+        SecurityContext context = (SecurityContext) session.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+        Object principal = context.getAuthentication().getPrincipal();
+        Assert.assertEquals(SessionPrincipal.class, principal.getClass());
+        Assert.assertEquals(team1.getId(), ((SessionPrincipal) principal).getId());
+        Assert.assertEquals("testteam", ((SessionPrincipal) principal).getUsername());
+
+        ByteArrayOutputStream principalBytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(principalBytes)) {
+            out.writeObject(principal);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(principalBytes.toByteArray()))) {
+            Assert.assertEquals(principal, in.readObject());
+        }
+
+        mvc.perform(get("/team").session(session))
+           .andExpect(redirectedUrl(String.format("/team/%d", team1.getId())));
+
+        SessionPrincipal admin = SessionPrincipal.of(administratorService.findByUsername("some").get());
+        Assert.assertEquals(SessionPrincipal.Role.ADMINISTRATOR, admin.getRole());
+        Assert.assertEquals(Administrator.AdministratorPermission.values().length, admin.getAuthorities().size());
+        Assert.assertTrue(admin.hasPermission(Administrator.AdministratorPermission.ManageToken));
+        Assert.assertTrue(AdministratorService.isAdministrator(admin));
+        Assert.assertFalse(TeamService.isTeam(admin));
+    }
+
+    @Test
+    @Transactional
+    public void loginThrottleTest() throws Exception {
+        // 同一用户名
+        for (int i = 0; i < 10; i++) {
+            mvc.perform(login("nosuchteam", "wrong", "10.0.0." + i))
+               .andExpect(redirectedUrl("/team/login?error"));
+        }
+        mvc.perform(login("nosuchteam", "wrong", "10.0.0.10").locale(Locale.ENGLISH))
+           .andExpect(status().isTooManyRequests())
+           .andExpect(header().string(HttpHeaders.RETRY_AFTER, "12"))
+           .andExpect(status().reason("Too many sign-in attempts, please try again in 12 seconds"))
+           .andExpect(unauthenticated());
+
+        // 同一地址
+        for (int i = 0; i < 30; i++) {
+            mvc.perform(login("nosuchteam" + i, "wrong", "10.0.1.1"))
+               .andExpect(redirectedUrl("/team/login?error"));
+        }
+        mvc.perform(login("testteam", "testteam", "10.0.1.1"))
+           .andExpect(status().isTooManyRequests())
+           .andExpect(unauthenticated());
+
+        mvc.perform(login("testteam", "testteam", "10.0.1.2"))
+           .andExpect(redirectedUrl("/team"))
+           .andExpect(authenticated());
+    }
+
+    @Test
+    @Transactional
+    public void loginThrottleForwardedForTest() throws Exception {
+        // 经受信任的代理转发, 按X-Forwarded-For中最右侧的非代理地址限流
+        for (int i = 0; i < 30; i++) {
+            mvc.perform(login("nosuchteam" + i, "wrong", "10.9.9.1").header("X-Forwarded-For", "10.0.2.1, 10.9.9.2"))
+               .andExpect(redirectedUrl("/team/login?error"));
+        }
+        mvc.perform(login("testteam", "testteam", "10.9.9.1").header("X-Forwarded-For", "10.0.2.1"))
+           .andExpect(status().isTooManyRequests())
+           .andExpect(unauthenticated());
+        mvc.perform(login("testteam", "testteam", "10.9.9.1").header("X-Forwarded-For", "10.0.2.2"))
+           .andExpect(redirectedUrl("/team"))
+           .andExpect(authenticated());
+
+        // 不受信任的地址发送的X-Forwarded-For被忽略
+        for (int i = 0; i < 30; i++) {
+            mvc.perform(login("nosuchteam" + i, "wrong", "10.0.3.1").header("X-Forwarded-For", "10.0.3." + (i + 2)))
+               .andExpect(redirectedUrl("/team/login?error"));
+        }
+        mvc.perform(login("testteam", "testteam", "10.0.3.1").header("X-Forwarded-For", "10.0.4.1"))
+           .andExpect(status().isTooManyRequests())
+           .andExpect(unauthenticated());
+    }
+
+    private static MockHttpServletRequestBuilder login(String username, String password, String address) {
+        return post("/team/login").param("username", username).param("password", password).with(request -> {
+            request.setRemoteAddr(address);
+            return request;
+        });
+    }
 }
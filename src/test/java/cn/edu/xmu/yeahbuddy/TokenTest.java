@@ -3,24 +3,46 @@ package cn.edu.xmu.yeahbuddy;
 import cn.edu.xmu.yeahbuddy.domain.Report;
 import cn.edu.xmu.yeahbuddy.domain.Review;
 import cn.edu.xmu.yeahbuddy.domain.Stage;
+import cn.edu.xmu.yeahbuddy.domain.Team;
 import cn.edu.xmu.yeahbuddy.domain.Token;
+import cn.edu.xmu.yeahbuddy.domain.repo.AccessTokenRevocationRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.TokenRepository;
+import cn.edu.xmu.yeahbuddy.domain.repo.TutorAccessRevocationRepository;
 import cn.edu.xmu.yeahbuddy.model.StageDto;
+import cn.edu.xmu.yeahbuddy.service.TokenService;
+import cn.edu.xmu.yeahbuddy.utils.PasswordUtils;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.test.context.support.WithSecurityContextTestExecutionListener;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
 @Rollback
 @TestExecutionListeners(listeners = {WithSecurityContextTestExecutionListener.class})
 public class TokenTest extends ApplicationTestBase {
@@ -28,6 +50,21 @@ public class TokenTest extends ApplicationTestBase {
     @Rule
     public final ExpectedException exception = ExpectedException.none();
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TokenRepository tokenRepository;
+
+    @Autowired
+    private AccessTokenRevocationRepository accessTokenRevocationRepository;
+
+    @Autowired
+    private TutorAccessRevocationRepository tutorAccessRevocationRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Test
     @Transactional
     public void tokenReadTest() throws Exception {
@@ -67,4 +104,148 @@ public class TokenTest extends ApplicationTestBase {
         exception.expect(BadCredentialsException.class);
         tokenService.loadAndValidateToken(t.getTokenValue());
     }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void tokenBulkRevokeTest() throws Exception {
+        Timestamp end = Timestamp.from(Instant.now().plusSeconds(3600));
+        Review review1 = newReview(201703, team1);
+        Review review2 = reviewService.createReview(reportService.createReport(team2, review1.getStage(), "Report"), tutor1);
+        Token t1 = tokenService.createToken(tutor1, Collections.singleton(review1), end);
+        Token t2 = tokenService.createToken(tutor1, Collections.singleton(review2), end);
+        Assert.assertEquals(tutor1.getId(), tokenService.validateToken(t1.getTokenValue()).getTutorId());
+
+        Assert.assertEquals(2, tokenService.revokeTokensByStage(review1.getStageId()));
+        Assert.assertEquals(0, tokenService.revokeTokensByStage(review1.getStageId()));
+        for (Token t : new Token[]{t1, t2}) {
+            try {
+                tokenService.validateToken(t.getTokenValue());
+                Assert.fail();
+            } catch (AuthenticationException e) {
+                Assert.assertTrue(tokenService.findById(t.getTokenValue()).orElseThrow(AssertionError::new).isRevoked());
+            }
+        }
+
+        Token t3 = tokenService.createToken(tutor1, Collections.singleton(newReview(201704, team1)), end);
+        long active = tokenService.findByNotRevoked().stream().filter(t -> t.getTutorId() == tutor1.getId()).count();
+        Assert.assertEquals(active, tokenService.revokeTokensByTutor(tutor1.getId()));
+        Assert.assertEquals(0, tokenService.revokeTokensByTutor(tutor1.getId()));
+        exception.expect(BadCredentialsException.class);
+        tokenService.validateToken(t3.getTokenValue());
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void tokenListTest() throws Exception {
+        Timestamp end = Timestamp.from(Instant.now().plusSeconds(3600));
+        Review review1 = newReview(201706, team1);
+        Review review2 = reviewService.createReview(reportService.createReport(team2, review1.getStage(), "Report"), tutor1);
+        Set<Review> reviews = new HashSet<>(Arrays.asList(review1, review2));
+        Token t = tokenService.createToken(tutor1, reviews, end);
+
+        // 有多个评议的Token只出现一次
+        List<Token> tokens = tokenService.findByNotRevoked();
+        Assert.assertEquals(1, tokens.stream().filter(token -> token.getTokenValue().equals(t.getTokenValue())).count());
+        Assert.assertEquals(tokens.size(), tokens.stream().map(Token::getTokenValue).distinct().count());
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void tokenRevokeRollbackTest() throws Exception {
+        String accessToken = tokenService.issueAccessToken(tokenService.findById(token).orElseThrow(AssertionError::new));
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        requiresNew.execute(status -> {
+            tokenService.revokeToken(tokenService.findById(token).orElseThrow(AssertionError::new));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        // 回滚后内存中的索引与吊销列表不变
+        Assert.assertEquals(tutor1.getId(), tokenService.validateToken(token).getTutorId());
+        Assert.assertEquals(tutor1, tokenService.authenticateAccessToken(accessToken).getFirst());
+    }
+
+    @Test
+    @Transactional
+    public void accessTokenRevocationRestartTest() throws Exception {
+        String secret = Base64.getEncoder().encodeToString(PasswordUtils.generateSalt(32));
+        TokenService before = newTokenService(secret);
+        Token t = tokenService.findById(token).orElseThrow(AssertionError::new);
+        String ofToken = before.issueAccessToken(t);
+        Timestamp end = Timestamp.from(Instant.now().plusSeconds(3600));
+        String single = before.issueAccessToken(tutor1.getId(), review.getStageId(), Collections.singleton(review.getId()), end);
+        String ofTutor = before.issueAccessToken(tutor1.getId(), review.getStageId(), Collections.singleton(review.getId()), end);
+
+        // 同一密钥的新实例接受之前签发的链接
+        TokenService restarted = newTokenService(secret);
+        restarted.loadRevocationList();
+        for (String accessToken : new String[]{ofToken, single, ofTutor}) {
+            Assert.assertEquals(tutor1, restarted.authenticateAccessToken(accessToken).getFirst());
+        }
+
+        // 签名Token保留原结束时间, 吊销记录须在重启后仍然有效
+        before.revokeToken(t);
+        before.revokeAccessToken(single);
+        before.revokeAccessTokens(tutor1.getId());
+        Assert.assertTrue(t.isRevoked());
+
+        restarted = newTokenService(secret);
+        restarted.loadRevocationList();
+        for (String accessToken : new String[]{ofToken, single, ofTutor}) {
+            try {
+                restarted.authenticateAccessToken(accessToken);
+                Assert.fail();
+            } catch (BadCredentialsException ignored) {
+            }
+        }
+        // 按导师吊销精确到秒, 之后签发的链接不受影响
+        Thread.sleep(1000);
+        String issuedAfter = restarted.issueAccessToken(tutor1.getId(), review.getStageId(), Collections.singleton(review.getId()), end);
+        Assert.assertEquals(tutor1, restarted.authenticateAccessToken(issuedAfter).getFirst());
+    }
+
+    @Test
+    @Transactional
+    @WithUserDetails(value = "some", userDetailsServiceBeanName = "administratorService")
+    public void tokenExpirySessionTest() throws Exception {
+        // 提交后才放入到期时间轮, 因此在新事务中创建; 测试结束时由tearDown删除
+        Timestamp end = Timestamp.from(Instant.now().plusMillis(1500));
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Token t = requiresNew.execute(status -> tokenService.createToken(tutor1, Collections.emptySet(), end));
+
+        MockHttpSession session = (MockHttpSession) mvc.perform(get("/tutor/token?auth_token=" + t.getTokenValue()))
+                                                       .andExpect(status().is3xxRedirection())
+                                                       .andExpect(redirectedUrl(String.format("/tutor/%d/review", tutor1.getId())))
+                                                       .andReturn().getRequest().getSession(false);
+        Assert.assertNotNull(session);
+        Assert.assertFalse(session.isInvalid());
+
+        // 到期时间轮在Token到期后使会话失效
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!session.isInvalid() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(session.isInvalid());
+    }
+
+    private Review newReview(int stageId, Team team) {
+        Stage stage = stageService.createStage(stageId, new StageDto()
+                                                                .setTitle(String.valueOf(stageId))
+                                                                .setStart(Timestamp.from(Instant.now()))
+                                                                .setEnd(Timestamp.from(Instant.now().plusSeconds(3600))));
+        return reviewService.createReview(reportService.createReport(team, stage, "Report"), tutor1);
+    }
+
+    /**
+     * 以给定签名密钥新建Token服务, 模拟重启后的实例
+     */
+    private TokenService newTokenService(String secret) {
+        return new TokenService(tokenRepository, tutorService, accessTokenRevocationRepository, tutorAccessRevocationRepository,
+                10000, 10000, 60, true, secret, 10000, 1000, 512, eventPublisher);
+    }
 }
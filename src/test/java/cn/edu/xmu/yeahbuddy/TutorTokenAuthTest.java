@@ -1,18 +1,34 @@
 package cn.edu.xmu.yeahbuddy;
 
+import cn.edu.xmu.yeahbuddy.model.SessionPrincipal;
 import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
 
 import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 
 @Rollback
 public class TutorTokenAuthTest extends ApplicationTestBase {
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Test
     @Transactional
     public void tutorTokenAuthTest() throws Exception {
@@ -21,6 +37,51 @@ public class TutorTokenAuthTest extends ApplicationTestBase {
         mvc.perform(get("/tutor/token?auth_token=" + token))
            .andExpect(status().is3xxRedirection())
            .andExpect(redirectedUrl(String.format("/tutor/%d/review", tutor1.getId())))
-           .andExpect(authenticated().withAuthenticationPrincipal(tutorService.findByUsername("testtutor").get()));
+           .andExpect(authenticated().withAuthenticationPrincipal(SessionPrincipal.of(tutorService.findByUsername("testtutor").get())));
+    }
+
+    @Test
+    @Transactional
+    public void signedAccessTokenTest() throws Exception {
+        String reviewUrl = String.format("/tutor/%d/review", tutor1.getId());
+        Timestamp end = Timestamp.from(Instant.now().plus(1, ChronoUnit.HOURS));
+        String accessToken = tokenService.issueAccessToken(tutor1.getId(), review.getStageId(), Collections.singleton(review.getId()), end);
+
+        mvc.perform(get(reviewUrl).header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken))
+           .andExpect(status().isOk())
+           .andExpect(view().name("tutor/reviews"))
+           .andExpect(model().attribute("tutorId", tutor1.getId()))
+           .andExpect(result -> Assert.assertNull(result.getRequest().getSession(false)));
+
+        mvc.perform(get(reviewUrl + "?access_token=" + accessToken))
+           .andExpect(status().isOk());
+
+        String tampered = accessToken.substring(0, accessToken.length() - 2) + (accessToken.endsWith("AA") ? "BB" : "AA");
+        mvc.perform(get(reviewUrl).header(HttpHeaders.AUTHORIZATION, "Bearer " + tampered))
+           .andExpect(status().isUnauthorized());
+
+        String expired = tokenService.issueAccessToken(tutor1.getId(), review.getStageId(), Collections.singleton(review.getId()), Timestamp.from(Instant.now().minusSeconds(1)));
+        mvc.perform(get(reviewUrl).header(HttpHeaders.AUTHORIZATION, "Bearer " + expired))
+           .andExpect(status().isUnauthorized());
+
+        // 吊销列表在提交后更新, 因此在新事务中吊销; 吊销记录由tearDown删除
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        requiresNew.execute(status -> {
+            tokenService.revokeAccessToken(accessToken);
+            return null;
+        });
+        mvc.perform(get(reviewUrl).header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken))
+           .andExpect(status().isUnauthorized());
+
+        String another = tokenService.issueAccessToken(tutor1.getId(), review.getStageId(), Collections.singleton(review.getId()), end);
+        mvc.perform(get(reviewUrl).header(HttpHeaders.AUTHORIZATION, "Bearer " + another))
+           .andExpect(status().isOk());
+        requiresNew.execute(status -> {
+            tokenService.revokeAccessTokens(tutor1.getId());
+            return null;
+        });
+        mvc.perform(get(reviewUrl).header(HttpHeaders.AUTHORIZATION, "Bearer " + another))
+           .andExpect(status().isUnauthorized());
     }
 }